@@ -0,0 +1,1119 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteJob;
+import com.almworks.sqlite4java.SQLiteQueue;
+import com.almworks.sqlite4java.SQLiteStatement;
+
+/**
+ *
+ * The local database of the application. It owns a single connection to "browserdb"
+ * that lives on its own thread for the lifetime of the application. The tables are
+ * created once when the connection is opened, and every statement is prepared with
+ * bound parameters so that the connection can cache and reuse it.
+ * <p>
+ * Most reads block the caller until their result is ready, so they are made from background
+ * threads; the settings and filters, which are loaded on the event dispatch thread, are read
+ * with a {@link Callback} instead. Writes are queued and return their {@link SQLiteJob}
+ * right away, so they never block the event dispatch thread.
+ * Consecutive queued writes share a single transaction, and each of them completes only
+ * once that transaction is committed.
+ * <p>
+ * The database runs in WAL mode, and reads go through a second connection on their own
+ * thread. That way a large refresh being written never holds up a friend lookup or a
+ * favorites refresh. Reads see only committed writes.
+ *
+ */
+public class BrowserDatabase extends SQLiteQueue {
+
+	/** The name of the database file. */
+	public static final String DATABASE_FILE = "browserdb";
+	/** The server filter tables for each of the server list tabs. */
+	public static final String[] FILTER_TABLES = {"filters", "filters_beta", "filters_fav", "filters_hist"};
+	/** The schema version this build of the browser expects. See {@link #applyMigration(SQLiteConnection, int)}. */
+	public static final int SCHEMA_VERSION = 4;
+	/** The most writes that are committed together in one transaction. */
+	public static final int MAX_WRITE_BATCH = 500;
+	/** The default journal mode. */
+	public static final String DEFAULT_JOURNAL_MODE = "WAL";
+	/** The default synchronous level. NORMAL is safe from corruption in WAL mode and only syncs at checkpoints. */
+	public static final String DEFAULT_SYNCHRONOUS = "NORMAL";
+	/** How much of the database file may be memory mapped. This needs SQLite 3.7.17 or newer, older versions ignore it. */
+	public static final long MMAP_SIZE = 64L * 1024 * 1024;
+	/** The least time between checkpoints of the write-ahead log in milliseconds. */
+	public static final long CHECKPOINT_INTERVAL = 60000;
+	/** How long a connection waits on a lock held by the other connection in milliseconds. */
+	public static final int BUSY_TIMEOUT = 5000;
+
+	/** The journal mode: DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF. */
+	private final String journalMode;
+	/** The synchronous level: OFF, NORMAL or FULL. */
+	private final String synchronous;
+	/** The queue of the connection that is used for reads. */
+	private final SQLiteQueue readQueue;
+	/** When the write-ahead log was last checkpointed. */
+	private long lastCheckpoint = System.currentTimeMillis();
+
+	/** The connection of the database thread. */
+	private SQLiteConnection connection;
+
+	/**
+	 * Creates a new BrowserDatabase. It must be started with {@link #start()} before it
+	 * can be used.
+	 */
+	public BrowserDatabase() {
+		this(new File(DATABASE_FILE));
+	}
+
+	/**
+	 * Creates a new BrowserDatabase backed by a specific file. It must be started with
+	 * {@link #start()} before it can be used.
+	 *
+	 * @param file the database file
+	 */
+	public BrowserDatabase(File file) {
+		this(file, DEFAULT_JOURNAL_MODE, DEFAULT_SYNCHRONOUS);
+	}
+
+	/**
+	 * Creates a new BrowserDatabase with a specific journal mode and synchronous level. It
+	 * must be started with {@link #start()} before it can be used.
+	 *
+	 * @param file the database file
+	 * @param journalMode the journal mode: DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF
+	 * @param synchronous the synchronous level: OFF, NORMAL or FULL
+	 */
+	public BrowserDatabase(File file, String journalMode, String synchronous) {
+		super(file);
+		this.journalMode = checkPragmaValue(journalMode, "DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+		this.synchronous = checkPragmaValue(synchronous, "OFF", "NORMAL", "FULL");
+		readQueue = new SQLiteQueue(file) {
+			@Override
+			protected void initConnection(SQLiteConnection connection) throws SQLiteException {
+				connection.setBusyTimeout(BUSY_TIMEOUT);
+				connection.exec("PRAGMA mmap_size = " + MMAP_SIZE);
+			}
+		};
+	}
+
+	/**
+	 * Starts the database threads. This waits until the schema is up to date so that reads
+	 * never see a database that is still being migrated.
+	 */
+	@Override
+	public SQLiteQueue start() {
+		super.start();
+		execute(new DatabaseJob<Boolean>() {
+			@Override
+			protected Boolean job(SQLiteConnection db) {
+				return true;
+			}
+		}).complete();
+		readQueue.start();
+		return this;
+	}
+
+	/**
+	 * Stops the database threads.
+	 */
+	@Override
+	public SQLiteQueue stop(boolean gracefully) {
+		readQueue.stop(gracefully);
+		return super.stop(gracefully);
+	}
+
+	/**
+	 * Waits for the database threads to stop.
+	 */
+	@Override
+	public SQLiteQueue join() throws InterruptedException {
+		readQueue.join();
+		return super.join();
+	}
+
+	/**
+	 * Brings the schema up to date once when the connection is opened.
+	 *
+	 * @see #migrate(SQLiteConnection)
+	 */
+	@Override
+	protected void initConnection(SQLiteConnection connection) throws SQLiteException {
+		this.connection = connection;
+		connection.setBusyTimeout(BUSY_TIMEOUT);
+		connection.exec("PRAGMA journal_mode = " + journalMode);
+		connection.exec("PRAGMA synchronous = " + synchronous);
+		connection.exec("PRAGMA mmap_size = " + MMAP_SIZE);
+		migrate(connection);
+	}
+
+	/**
+	 * Uses a concurrent queue so the database thread can look at the next job without
+	 * holding the queue's lock.
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	protected Collection<SQLiteJob> createJobCollection() {
+		return new ConcurrentLinkedQueue<SQLiteJob>();
+	}
+
+	/**
+	 * Writes a batch of queued writes in one transaction before any of them completes. The
+	 * first write of a batch applies itself and the writes queued right behind it, each in a
+	 * savepoint so that a failed write only undoes its own changes, and commits them. Only
+	 * then does each write's job run and complete with the result it already has, so anyone
+	 * waiting on a write, or called back by it, can read what it wrote.
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	protected void executeJob(SQLiteJob job) throws Throwable {
+		if ( job instanceof WriteJob && !((WriteJob<?>) job).applied && !job.isCancelled() ) {
+			writeBatch((WriteJob<?>) job);
+		}
+		super.executeJob(job);
+	}
+
+	/**
+	 * Leaves cancelled writes alone; a write that was cancelled before it ran never wrote
+	 * anything.
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	protected void afterExecute(SQLiteJob job) throws Throwable {
+		if ( !(job instanceof WriteJob) ) {
+			super.afterExecute(job);
+		}
+	}
+
+	/**
+	 * Leaves failed writes alone; their changes were already undone in
+	 * {@link #writeBatch(WriteJob)}.
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	protected void handleJobException(SQLiteJob job, Throwable e) throws Throwable {
+		if ( job instanceof WriteJob && !(e instanceof ThreadDeath) ) {
+			return;
+		}
+		super.handleJobException(job, e);
+	}
+
+	/**
+	 * Applies a write and the writes queued right behind it, up to {@link #MAX_WRITE_BATCH},
+	 * in one transaction and commits it. A write that is cancelled once its batch has been
+	 * committed stays written. If the transaction is lost, every write of it fails.
+	 *
+	 * @param first the first write of the batch
+	 */
+	private void writeBatch(WriteJob<?> first) {
+		List<WriteJob<?>> batch = new ArrayList<WriteJob<?>>();
+		batch.add(first);
+		if ( myJobs != null ) {
+			// The jobs are in a ConcurrentLinkedQueue, which can be walked in order while jobs are added.
+			for ( SQLiteJob<?> next : myJobs ) {
+				if ( !(next instanceof WriteJob) || batch.size() >= MAX_WRITE_BATCH ) {
+					break;
+				}
+				if ( !next.isCancelled() ) {
+					batch.add((WriteJob<?>) next);
+				}
+			}
+		}
+		try {
+			connection.exec("BEGIN IMMEDIATE");
+			for ( int i = 0; i < batch.size(); i++ ) {
+				if ( !batch.get(i).apply(connection) && connection.getAutoCommit() ) {
+					// SQLite rolled the whole transaction back; the writes after this one wait for the next batch.
+					fail(batch.subList(0, i), batch.get(i).error);
+					return;
+				}
+			}
+			connection.exec("COMMIT");
+		} catch (SQLiteException e) {
+			rollback();
+			fail(batch, e);
+			return;
+		}
+		try {
+			checkpoint();
+		} catch (SQLiteException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Fails writes whose changes were lost.
+	 *
+	 * @param writes the writes
+	 * @param error why their changes were lost
+	 */
+	private static void fail(List<WriteJob<?>> writes, Throwable error) {
+		for ( WriteJob<?> write : writes ) {
+			write.applied = true;
+			write.error = error;
+		}
+	}
+
+	/**
+	 * Applies every migration newer than the version recorded in the schema_version table.
+	 * Each migration runs in its own transaction together with the version bump, so an
+	 * interrupted upgrade resumes from the last migration that completed.
+	 *
+	 * @param db the database connection
+	 * @throws SQLiteException
+	 */
+	protected void migrate(SQLiteConnection db) throws SQLiteException {
+		db.exec("CREATE TABLE IF NOT EXISTS schema_version (version int not null)");
+		int version = 0;
+		SQLiteStatement st = db.prepare("SELECT MAX(version) FROM schema_version");
+		try {
+			if ( st.step() && !st.columnNull(0) ) {
+				version = st.columnInt(0);
+			}
+		} finally {
+			st.dispose();
+		}
+
+		for ( int next = version + 1; next <= SCHEMA_VERSION; next++ ) {
+			db.exec("BEGIN IMMEDIATE");
+			try {
+				applyMigration(db, next);
+				st = db.prepare("INSERT INTO schema_version (version) VALUES (?)");
+				try {
+					st.bind(1, next);
+					st.step();
+				} finally {
+					st.dispose();
+				}
+				db.exec("COMMIT");
+			} catch (SQLiteException e) {
+				db.exec("ROLLBACK");
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Applies a single schema migration.
+	 * <ol>
+	 * <li>The original tables. Databases from before schema versioning already have them.</li>
+	 * <li>A unique index on the endpoint of the servers table, dropping duplicate rows first.</li>
+	 * <li>Integer port columns, and indexes for the server and favorite/history lookups.</li>
+	 * <li>The Steam Web API key setting.</li>
+	 * </ol>
+	 *
+	 * @param db the database connection
+	 * @param version the version to migrate to
+	 * @throws SQLiteException
+	 */
+	protected void applyMigration(SQLiteConnection db, int version) throws SQLiteException {
+		switch ( version ) {
+		case 1:
+			createTables(db);
+			break;
+		case 2:
+			db.exec("DELETE FROM servers WHERE id NOT IN " +
+					"(SELECT MIN(id) FROM servers GROUP BY ip, queryport, gameport)");
+			db.exec("CREATE UNIQUE INDEX IF NOT EXISTS servers_endpoint ON servers (ip, queryport, gameport)");
+			break;
+		case 3:
+			db.exec("CREATE TABLE servers_new" +
+					"(" +
+					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
+					"ip varchar(255) not null default ''," +
+					"queryport int not null default 0," +
+					"gameport int not null default 0" +
+					")");
+			db.exec("INSERT INTO servers_new (id, ip, queryport, gameport) " +
+					"SELECT id, ip, CAST(queryport AS INTEGER), CAST(gameport AS INTEGER) FROM servers " +
+					"WHERE id IN (SELECT MIN(id) FROM servers " +
+					"GROUP BY ip, CAST(queryport AS INTEGER), CAST(gameport AS INTEGER))");
+			db.exec("DROP TABLE servers");
+			db.exec("ALTER TABLE servers_new RENAME TO servers");
+			// Leading with gameport lets getQueryPort's (ip, gameport) lookup use the same index.
+			db.exec("CREATE UNIQUE INDEX servers_endpoint ON servers (ip, gameport, queryport)");
+			for ( String table : new String[] {"favorite_servers", "server_history"} ) {
+				db.exec("CREATE TABLE " + table + "_new" +
+						"(" +
+						"id INTEGER PRIMARY KEY AUTOINCREMENT," +
+						"name varchar(255) not null default ''," +
+						"ip varchar(255) not null default ''," +
+						"port int not null default 0 )");
+				db.exec("INSERT INTO " + table + "_new (id, name, ip, port) " +
+						"SELECT id, name, ip, CAST(port AS INTEGER) FROM " + table + " " +
+						"WHERE id IN (SELECT MIN(id) FROM " + table + " GROUP BY ip, CAST(port AS INTEGER))");
+				db.exec("DROP TABLE " + table);
+				db.exec("ALTER TABLE " + table + "_new RENAME TO " + table);
+				db.exec("CREATE UNIQUE INDEX " + table + "_endpoint ON " + table + " (ip, port)");
+			}
+			break;
+		case 4:
+			db.exec("ALTER TABLE settings ADD COLUMN steam_api_key varchar(255) not null default ''");
+			break;
+		default:
+			throw new SQLiteException(-1, "Unknown schema version " + version);
+		}
+	}
+
+	/**
+	 * Creates the original tables if they do not exist yet. This is the first migration;
+	 * later changes to the schema are made in {@link #applyMigration(SQLiteConnection, int)}.
+	 *
+	 * @param db the database connection
+	 * @throws SQLiteException
+	 */
+	protected void createTables(SQLiteConnection db) throws SQLiteException {
+		db.exec("CREATE TABLE IF NOT EXISTS servers" +
+				"(" +
+				"id INTEGER PRIMARY KEY AUTOINCREMENT," +
+				"ip varchar(255) not null default ''," +
+				"queryport varchar(255) not null default ''," +
+				"gameport varchar(255) not null default ''" +
+				")");
+		db.exec("CREATE TABLE IF NOT EXISTS favorite_servers" +
+				"(" +
+				"id INTEGER PRIMARY KEY AUTOINCREMENT," +
+				"name varchar(255) not null default ''," +
+				"ip varchar(255) not null default ''," +
+				"port varchar(255) not null default '' )");
+		db.exec("CREATE TABLE IF NOT EXISTS server_history" +
+				"(" +
+				"id INTEGER PRIMARY KEY AUTOINCREMENT," +
+				"name varchar(255) not null default ''," +
+				"ip varchar(255) not null default ''," +
+				"port varchar(255) not null default '' )");
+		db.exec("CREATE TABLE IF NOT EXISTS settings" +
+				"(" +
+				"id INTEGER PRIMARY KEY AUTOINCREMENT," +
+				"steam_url varchar(255) not null default ''," +
+				"show_chiv_only int not null default 1," +
+				"servers_beta_visible int not null default 1," +
+				"servers_fav_visible int not null default 1," +
+				"servers_hist_visible int not null default 1," +
+				"friends_visible int not null default 1," +
+				"map_visible int not null default 1," +
+				"map_normal_chckbox int not null default 1," +
+				"map_beta_chckbox int not null default 1," +
+				"map_favorite_chckbox int not null default 1," +
+				"map_history_chckbox int not null default 1," +
+				"settings_visible int not null default 1," +
+				"launch_opt_window int not null default 0," +
+				"launch_opt_resx varchar (255) not null default ''," +
+				"launch_opt_resy varchar (255) not null default ''," +
+				"launch_opt_enable int not null default 0," +
+				"gamepad_visible int not null default 1" +
+				")");
+		for ( String filterTableName : FILTER_TABLES ) {
+			db.exec("CREATE TABLE IF NOT EXISTS " + filterTableName +
+					"(" +
+					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
+					"name varchar(255) not null default ''," +
+					"type varchar(255) not null default ''," +
+					"minrank int not null default -1," +
+					"maxrank int not null default -1," +
+					"maxping int not null default -1," +
+					"hidepassword int not null default 0," +
+					"hideempty int not null default 0," +
+					"hidefull int not null default 0," +
+					"officialonly int not null default 0," +
+					"perspective int not null default 0," +
+					"numthreads int not null default 0" +
+					")");
+		}
+	}
+
+	/**
+	 * Checkpoints the write-ahead log if it has not been checkpointed for a while. The
+	 * checkpoint is passive so it never waits on readers; SQLite's own automatic checkpoint
+	 * still runs whenever the log grows past 1000 pages.
+	 *
+	 * @throws SQLiteException
+	 */
+	private void checkpoint() throws SQLiteException {
+		long now = System.currentTimeMillis();
+		if ( !"WAL".equals(journalMode) || now - lastCheckpoint < CHECKPOINT_INTERVAL ) {
+			return;
+		}
+		lastCheckpoint = now;
+		connection.exec("PRAGMA wal_checkpoint(PASSIVE)");
+	}
+
+	/**
+	 * Adds a {@link ChivServer} as a favorite server. If the server is already a favorite,
+	 * its name is updated.
+	 *
+	 * @param cs the {@link ChivServer} to add
+	 * @param callback called with true if the server was added, or false if it was already
+	 * a favorite; may be null
+	 * @return the queued write
+	 */
+	public SQLiteJob<Boolean> addFavorite(final ChivServer cs, Callback<Boolean> callback) {
+		return execute(new WriteJob<Boolean>(callback) {
+			@Override
+			protected Boolean write(SQLiteConnection db) throws SQLiteException {
+				return upsertServerEntry(db, "favorite_servers", cs);
+			}
+		});
+	}
+
+	/**
+	 * Removes a {@link ChivServer} from the favorite servers.
+	 *
+	 * @param cs the {@link ChivServer} to remove
+	 * @param callback called with true if the server was found and removed; may be null
+	 * @return the queued write
+	 */
+	public SQLiteJob<Boolean> removeFavorite(final ChivServer cs, Callback<Boolean> callback) {
+		return execute(new WriteJob<Boolean>(callback) {
+			@Override
+			protected Boolean write(SQLiteConnection db) throws SQLiteException {
+				return deleteServerEntry(db, "favorite_servers", cs);
+			}
+		});
+	}
+
+	/**
+	 * Gets the favorite servers.
+	 *
+	 * @return a {@link Vector} of the favorite {@link ChivServer}
+	 */
+	public Vector<ChivServer> getFavorites() {
+		return run(new DatabaseJob<Vector<ChivServer>>() {
+			@Override
+			protected Vector<ChivServer> job(SQLiteConnection db) throws SQLiteException {
+				return selectServerEntries(db, "favorite_servers");
+			}
+		}, new Vector<ChivServer>());
+	}
+
+	/**
+	 * Adds a {@link ChivServer} to the server history. If the server is already in the
+	 * history, its name is updated.
+	 *
+	 * @param cs the {@link ChivServer} to add
+	 * @return the queued write; its result is true if the server was new to the history
+	 */
+	public SQLiteJob<Boolean> addServerToHistory(final ChivServer cs) {
+		return execute(new WriteJob<Boolean>(null) {
+			@Override
+			protected Boolean write(SQLiteConnection db) throws SQLiteException {
+				return upsertServerEntry(db, "server_history", cs);
+			}
+		});
+	}
+
+	/**
+	 * Removes a {@link ChivServer} from the server history.
+	 *
+	 * @param cs the {@link ChivServer} to remove
+	 * @param callback called with true if the server was found and removed; may be null
+	 * @return the queued write
+	 */
+	public SQLiteJob<Boolean> removeServerFromHistory(final ChivServer cs, Callback<Boolean> callback) {
+		return execute(new WriteJob<Boolean>(callback) {
+			@Override
+			protected Boolean write(SQLiteConnection db) throws SQLiteException {
+				return deleteServerEntry(db, "server_history", cs);
+			}
+		});
+	}
+
+	/**
+	 * Gets the server history.
+	 *
+	 * @return a {@link Vector} of the {@link ChivServer} in the server history
+	 */
+	public Vector<ChivServer> getHistory() {
+		return run(new DatabaseJob<Vector<ChivServer>>() {
+			@Override
+			protected Vector<ChivServer> job(SQLiteConnection db) throws SQLiteException {
+				return selectServerEntries(db, "server_history");
+			}
+		}, new Vector<ChivServer>());
+	}
+
+	/**
+	 * Adds a server found during a refresh to the servers table. If the server already
+	 * exists, this does nothing.
+	 *
+	 * @param cs the {@link ChivServer} to add
+	 * @return the queued write; its result is true if the server was new
+	 */
+	public SQLiteJob<Boolean> addServer(final ChivServer cs) {
+		return execute(new WriteJob<Boolean>(null) {
+			@Override
+			protected Boolean write(SQLiteConnection db) throws SQLiteException {
+				return insertServer(db, cs);
+			}
+		});
+	}
+
+	/**
+	 * Adds all of the servers found during a refresh to the servers table in a single
+	 * write, so they are committed in one transaction. Servers that already exist are
+	 * skipped. The servers are copied before this returns.
+	 *
+	 * @param servers the {@link ChivServer} to add
+	 * @return the queued write; its result is the number of servers that were new
+	 */
+	public SQLiteJob<Integer> addServers(Collection<ChivServer> servers) {
+		final ArrayList<ChivServer> batch = new ArrayList<ChivServer>(servers);
+		return execute(new WriteJob<Integer>(null) {
+			@Override
+			protected Integer write(SQLiteConnection db) throws SQLiteException {
+				int added = 0;
+				for ( ChivServer cs : batch ) {
+					if ( insertServer(db, cs) ) {
+						added++;
+					}
+				}
+				return added;
+			}
+		});
+	}
+
+	/**
+	 * Gets the endpoints of all of the servers found during refreshes. Only the IP address,
+	 * queryport and gameport of the returned servers are set.
+	 *
+	 * @return a {@link Vector} of the {@link ChivServer} in the servers table
+	 */
+	public Vector<ChivServer> getServers() {
+		return run(new DatabaseJob<Vector<ChivServer>>() {
+			@Override
+			protected Vector<ChivServer> job(SQLiteConnection db) throws SQLiteException {
+				Vector<ChivServer> result = new Vector<ChivServer>();
+				SQLiteStatement st = db.prepare("SELECT ip, queryport, gameport FROM servers");
+				try {
+					while ( st.step() ) {
+						ChivServer cs = new ChivServer("", st.columnString(0), st.columnString(1));
+						cs.mGamePort = st.columnString(2);
+						result.add(cs);
+					}
+				} finally {
+					st.dispose();
+				}
+				return result;
+			}
+		}, new Vector<ChivServer>());
+	}
+
+	/**
+	 * Looks up the queryport of a server from its IP address and gameport. This waits for the
+	 * read, so it is only called from background threads, through
+	 * {@link MainWindow#getServerFromDB(String, String)}.
+	 *
+	 * @param ip the IP address of the server
+	 * @param gameport the gameport of the server
+	 * @return the queryport of the server; or an empty string if not found
+	 */
+	public String getQueryPort(final String ip, final String gameport) {
+		return run(new DatabaseJob<String>() {
+			@Override
+			protected String job(SQLiteConnection db) throws SQLiteException {
+				SQLiteStatement st = db.prepare("SELECT queryport FROM servers WHERE ip = ? AND gameport = ?");
+				try {
+					st.bind(1, ip);
+					st.bind(2, port(gameport));
+					if ( st.step() ) {
+						return st.columnString(0);
+					}
+				} finally {
+					st.dispose();
+				}
+				return "";
+			}
+		}, "");
+	}
+
+	/**
+	 * Loads the application settings without blocking the caller.
+	 *
+	 * @param callback called on the event dispatch thread with the saved {@link BrowserSettings};
+	 * or with null if none have been saved
+	 * @return the queued read
+	 */
+	public SQLiteJob<BrowserSettings> loadSettings(Callback<? super BrowserSettings> callback) {
+		return runLater(new DatabaseJob<BrowserSettings>() {
+			@Override
+			protected BrowserSettings job(SQLiteConnection db) throws SQLiteException {
+				SQLiteStatement st = db.prepare("SELECT steam_url, show_chiv_only, servers_beta_visible, " +
+						"servers_fav_visible, servers_hist_visible, friends_visible, map_visible, " +
+						"map_normal_chckbox, map_beta_chckbox, map_favorite_chckbox, map_history_chckbox, " +
+						"settings_visible, launch_opt_window, launch_opt_resx, launch_opt_resy, " +
+						"launch_opt_enable, gamepad_visible, steam_api_key FROM settings WHERE id = 1");
+				try {
+					if ( !st.step() ) {
+						return null;
+					}
+					BrowserSettings s = new BrowserSettings();
+					s.steamUrl = st.columnString(0);
+					s.showChivOnly = st.columnInt(1) == 1;
+					s.serversBetaVisible = st.columnInt(2) == 1;
+					s.serversFavVisible = st.columnInt(3) == 1;
+					s.serversHistVisible = st.columnInt(4) == 1;
+					s.friendsVisible = st.columnInt(5) == 1;
+					s.mapVisible = st.columnInt(6) == 1;
+					s.mapNormalChckbox = st.columnInt(7) == 1;
+					s.mapBetaChckbox = st.columnInt(8) == 1;
+					s.mapFavoriteChckbox = st.columnInt(9) == 1;
+					s.mapHistoryChckbox = st.columnInt(10) == 1;
+					s.settingsVisible = st.columnInt(11) == 1;
+					s.launchOptWindow = st.columnInt(12);
+					s.launchOptResX = st.columnString(13);
+					s.launchOptResY = st.columnString(14);
+					s.launchOptEnable = st.columnInt(15) == 1;
+					s.gamepadVisible = st.columnInt(16) == 1;
+					s.steamApiKey = st.columnString(17);
+					return s;
+				} finally {
+					st.dispose();
+				}
+			}
+		}, null, callback);
+	}
+
+	/**
+	 * Saves the application settings.
+	 *
+	 * @param s the {@link BrowserSettings} to save
+	 * @return the queued write
+	 */
+	public SQLiteJob<Boolean> saveSettings(final BrowserSettings s) {
+		return execute(new WriteJob<Boolean>(null) {
+			@Override
+			protected Boolean write(SQLiteConnection db) throws SQLiteException {
+				SQLiteStatement st = db.prepare("INSERT OR REPLACE INTO settings (id, steam_url, show_chiv_only, " +
+						"servers_beta_visible, servers_fav_visible, servers_hist_visible, friends_visible, " +
+						"map_visible, map_normal_chckbox, map_beta_chckbox, map_favorite_chckbox, " +
+						"map_history_chckbox, settings_visible, launch_opt_window, launch_opt_resx, " +
+						"launch_opt_resy, launch_opt_enable, gamepad_visible, steam_api_key) " +
+						"VALUES (1, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+				try {
+					st.bind(1, str(s.steamUrl));
+					st.bind(2, flag(s.showChivOnly));
+					st.bind(3, flag(s.serversBetaVisible));
+					st.bind(4, flag(s.serversFavVisible));
+					st.bind(5, flag(s.serversHistVisible));
+					st.bind(6, flag(s.friendsVisible));
+					st.bind(7, flag(s.mapVisible));
+					st.bind(8, flag(s.mapNormalChckbox));
+					st.bind(9, flag(s.mapBetaChckbox));
+					st.bind(10, flag(s.mapFavoriteChckbox));
+					st.bind(11, flag(s.mapHistoryChckbox));
+					st.bind(12, flag(s.settingsVisible));
+					st.bind(13, s.launchOptWindow);
+					st.bind(14, str(s.launchOptResX));
+					st.bind(15, str(s.launchOptResY));
+					st.bind(16, flag(s.launchOptEnable));
+					st.bind(17, flag(s.gamepadVisible));
+					st.bind(18, str(s.steamApiKey));
+					st.step();
+				} finally {
+					st.dispose();
+				}
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Loads the server filters of a server list tab without blocking the caller.
+	 *
+	 * @param filterTableName the name of the server list tab's filter table
+	 * @param callback called on the event dispatch thread with the saved {@link ServerFilters};
+	 * or with null if none have been saved
+	 * @return the queued read
+	 */
+	public SQLiteJob<ServerFilters> loadFilters(final String filterTableName, Callback<? super ServerFilters> callback) {
+		return runLater(new DatabaseJob<ServerFilters>() {
+			@Override
+			protected ServerFilters job(SQLiteConnection db) throws SQLiteException {
+				SQLiteStatement st = db.prepare("SELECT name, type, minrank, maxrank, maxping, hidepassword, " +
+						"hideempty, hidefull, officialonly, perspective, numthreads FROM " + filterTableName +
+						" WHERE id = 1");
+				try {
+					if ( !st.step() ) {
+						return null;
+					}
+					return new ServerFilters(st.columnString(0), st.columnString(1), st.columnInt(5) == 1,
+							st.columnInt(2), st.columnInt(3), st.columnInt(4), st.columnInt(6) == 1,
+							st.columnInt(7) == 1, st.columnInt(8) == 1, st.columnInt(9), st.columnInt(10));
+				} finally {
+					st.dispose();
+				}
+			}
+		}, null, callback);
+	}
+
+	/**
+	 * Saves the server filters of a server list tab.
+	 *
+	 * @param filterTableName the name of the server list tab's filter table
+	 * @param sf the {@link ServerFilters} to save
+	 * @return the queued write
+	 */
+	public SQLiteJob<Boolean> saveFilters(final String filterTableName, final ServerFilters sf) {
+		return execute(new WriteJob<Boolean>(null) {
+			@Override
+			protected Boolean write(SQLiteConnection db) throws SQLiteException {
+				SQLiteStatement st = db.prepare("INSERT OR REPLACE INTO " + filterTableName + " (id, name, type, " +
+						"minrank, maxrank, maxping, hidepassword, hideempty, hidefull, officialonly, perspective, " +
+						"numthreads) VALUES (1, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+				try {
+					st.bind(1, str(sf.name));
+					st.bind(2, str(sf.type));
+					st.bind(3, sf.minRank);
+					st.bind(4, sf.maxRank);
+					st.bind(5, sf.maxPing);
+					st.bind(6, flag(sf.hidePassword));
+					st.bind(7, flag(sf.hideEmpty));
+					st.bind(8, flag(sf.hideFull));
+					st.bind(9, flag(sf.officialservers));
+					st.bind(10, sf.perspective);
+					st.bind(11, sf.numThreads);
+					st.step();
+				} finally {
+					st.dispose();
+				}
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Inserts a server into the servers table unless its endpoint is already there.
+	 *
+	 * @param db the database connection
+	 * @param cs the {@link ChivServer} to add
+	 * @return true if the server was new
+	 * @throws SQLiteException
+	 */
+	private boolean insertServer(SQLiteConnection db, ChivServer cs) throws SQLiteException {
+		SQLiteStatement st = db.prepare("INSERT OR IGNORE INTO servers (ip, queryport, gameport) VALUES (?, ?, ?)");
+		try {
+			st.bind(1, str(cs.mIP));
+			st.bind(2, port(cs.mQueryPort));
+			st.bind(3, port(cs.mGamePort));
+			st.step();
+		} finally {
+			st.dispose();
+		}
+		return db.getChanges() > 0;
+	}
+
+	/**
+	 * Adds a server to a table of named servers (favorites or history), or updates
+	 * its name if it already exists.
+	 *
+	 * @param db the database connection
+	 * @param table the table to add the server to
+	 * @param cs the {@link ChivServer} to add
+	 * @return true if the server was added; false if it was updated
+	 * @throws SQLiteException
+	 */
+	private boolean upsertServerEntry(SQLiteConnection db, String table, ChivServer cs) throws SQLiteException {
+		long id = -1;
+		SQLiteStatement st = db.prepare("SELECT id FROM " + table + " WHERE ip = ? AND port = ?");
+		try {
+			st.bind(1, str(cs.mIP));
+			st.bind(2, port(cs.mQueryPort));
+			if ( st.step() ) {
+				id = st.columnLong(0);
+			}
+		} finally {
+			st.dispose();
+		}
+
+		if ( id > -1 ) {
+			st = db.prepare("UPDATE " + table + " SET name = ? WHERE id = ?");
+			try {
+				st.bind(1, str(cs.mName));
+				st.bind(2, id);
+				st.step();
+			} finally {
+				st.dispose();
+			}
+			return false;
+		}
+
+		st = db.prepare("INSERT INTO " + table + " (name, ip, port) VALUES (?, ?, ?)");
+		try {
+			st.bind(1, str(cs.mName));
+			st.bind(2, str(cs.mIP));
+			st.bind(3, port(cs.mQueryPort));
+			st.step();
+		} finally {
+			st.dispose();
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a server from a table of named servers (favorites or history).
+	 *
+	 * @param db the database connection
+	 * @param table the table to remove the server from
+	 * @param cs the {@link ChivServer} to remove
+	 * @return true if the server was found and removed
+	 * @throws SQLiteException
+	 */
+	private boolean deleteServerEntry(SQLiteConnection db, String table, ChivServer cs) throws SQLiteException {
+		SQLiteStatement st = db.prepare("DELETE FROM " + table + " WHERE ip = ? AND port = ?");
+		try {
+			st.bind(1, str(cs.mIP));
+			st.bind(2, port(cs.mQueryPort));
+			st.step();
+		} finally {
+			st.dispose();
+		}
+		return db.getChanges() > 0;
+	}
+
+	/**
+	 * Gets all of the servers from a table of named servers (favorites or history).
+	 *
+	 * @param db the database connection
+	 * @param table the table to read the servers from
+	 * @return a {@link Vector} of the {@link ChivServer}
+	 * @throws SQLiteException
+	 */
+	private Vector<ChivServer> selectServerEntries(SQLiteConnection db, String table) throws SQLiteException {
+		Vector<ChivServer> result = new Vector<ChivServer>();
+		SQLiteStatement st = db.prepare("SELECT name, ip, port FROM " + table);
+		try {
+			while ( st.step() ) {
+				result.add(new ChivServer(st.columnString(0), st.columnString(1), st.columnString(2)));
+			}
+		} finally {
+			st.dispose();
+		}
+		return result;
+	}
+
+	/**
+	 * Queues a read on the read thread without waiting for its result.
+	 *
+	 * @param job the job to run
+	 * @param fallback the value to call back with if the job failed or was cancelled
+	 * @param callback called on the event dispatch thread with the result of the job; or the fallback
+	 * @return the queued read
+	 */
+	private <T> SQLiteJob<T> runLater(DatabaseJob<T> job, T fallback, Callback<? super T> callback) {
+		job.callback = callback;
+		job.fallback = fallback;
+		return readQueue.execute(job);
+	}
+
+	/**
+	 * Runs a read on the read thread and waits for its result. It must not be called on the
+	 * event dispatch thread.
+	 *
+	 * @param job the job to run
+	 * @param fallback the value to return if the job failed or was cancelled
+	 * @return the result of the job; or the fallback
+	 */
+	private <T> T run(DatabaseJob<T> job, T fallback) {
+		T result = readQueue.execute(job).complete();
+		if ( result == null ) {
+			return fallback;
+		}
+		return result;
+	}
+
+	/**
+	 * Checks a value that is put into a PRAGMA statement, which cannot take bound parameters.
+	 *
+	 * @param value the value to check
+	 * @param allowed the allowed values
+	 * @return the value in upper case
+	 * @throws IllegalArgumentException if the value is not allowed
+	 */
+	private static String checkPragmaValue(String value, String... allowed) {
+		for ( String a : allowed ) {
+			if ( a.equalsIgnoreCase(value) ) {
+				return a;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported value: " + value);
+	}
+
+	/**
+	 * Converts a boolean into the integer flag stored in the database.
+	 *
+	 * @param b the boolean
+	 * @return 1 if true; 0 otherwise
+	 */
+	private static int flag(boolean b) {
+		return b ? 1 : 0;
+	}
+
+	/**
+	 * Converts a port into the integer stored in the database.
+	 *
+	 * @param s the port
+	 * @return the port number; or 0 if it is missing or not a number
+	 */
+	private static int port(String s) {
+		if ( s == null ) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(s.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Guards against binding nulls to the not null text columns.
+	 *
+	 * @param s the string
+	 * @return the string; or an empty string if it is null
+	 */
+	private static String str(String s) {
+		return s == null ? "" : s;
+	}
+
+	/**
+	 *
+	 * A job for the database thread that prints its errors instead of silently dropping them.
+	 *
+	 */
+	private abstract static class DatabaseJob<T> extends SQLiteJob<T> {
+
+		/** Called on the event dispatch thread with the result of a read queued by {@link BrowserDatabase#runLater}; or null. */
+		private Callback<? super T> callback;
+		/** The result the callback gets if the job failed or was cancelled. */
+		private T fallback;
+
+		@Override
+		protected void jobError(Throwable error) throws Throwable {
+			error.printStackTrace();
+		}
+
+		@Override
+		protected void jobFinished(final T result) throws Throwable {
+			final Callback<? super T> c = callback;
+			if ( c != null ) {
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						c.done(result == null ? fallback : result);
+					}
+				});
+			}
+		}
+
+	}
+
+	/**
+	 *
+	 * A queued write. The database thread batches consecutive writes into one transaction, and
+	 * a write only completes once its batch has been committed.
+	 *
+	 */
+	private abstract static class WriteJob<T> extends DatabaseJob<T> {
+
+		/** Called with the result once the write has been committed; may be null. */
+		private final Callback<? super T> callback;
+		/** Whether the write has been applied, or has failed, as part of a batch. This is only used on the database thread. */
+		private boolean applied = false;
+		/** The result of the write once it has been applied. */
+		private T result;
+		/** Why the write failed; or null if it did not. */
+		private Throwable error;
+
+		/**
+		 * Creates a new WriteJob.
+		 *
+		 * @param callback called with the result once the write has been committed; may be null
+		 */
+		WriteJob(Callback<? super T> callback) {
+			this.callback = callback;
+		}
+
+		/**
+		 * Completes with the result the write got when its batch was applied.
+		 */
+		@Override
+		protected T job(SQLiteConnection db) throws Throwable {
+			if ( error != null ) {
+				throw error;
+			}
+			return result;
+		}
+
+		/**
+		 * Applies the write in its own savepoint of the open transaction, and undoes it if it fails.
+		 *
+		 * @param db the database connection
+		 * @return true if the write was applied; false if it failed
+		 */
+		private boolean apply(SQLiteConnection db) {
+			applied = true;
+			try {
+				db.exec("SAVEPOINT write");
+				result = write(db);
+				db.exec("RELEASE write");
+				return true;
+			} catch (SQLiteException e) {
+				error = e;
+				try {
+					if ( !db.getAutoCommit() ) {
+						db.exec("ROLLBACK TO write");
+						db.exec("RELEASE write");
+					}
+				} catch (SQLiteException e2) {
+					e2.printStackTrace();
+				}
+				return false;
+			}
+		}
+
+		@Override
+		protected void jobFinished(T result) throws Throwable {
+			if ( callback != null ) {
+				callback.done(result);
+			}
+		}
+
+		/**
+		 * Applies the write. It runs inside the batch's transaction, and its job completes
+		 * once the batch is committed.
+		 *
+		 * @param db the database connection
+		 * @return the result of the write
+		 * @throws SQLiteException
+		 */
+		protected abstract T write(SQLiteConnection db) throws SQLiteException;
+
+	}
+
+	/**
+	 *
+	 * Receives the result of a queued job. Writes call it on the database thread, and reads
+	 * call it on the event dispatch thread.
+	 *
+	 */
+	public interface Callback<T> {
+
+		/**
+		 * Called with the result of the job. A write calls it once it has been committed, and
+		 * not at all if it failed.
+		 *
+		 * @param result the result of the job
+		 */
+		void done(T result);
+
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.tranek.chivalryserverbrowser;
+
+/**
+ *
+ * A data structure class that holds the application settings saved in the
+ * settings table of the local database.
+ *
+ */
+public class BrowserSettings {
+
+	/** The URL to the user's Steam Community page. */
+	protected String steamUrl = "";
+	/** Show only friends currently in Chivalry: Medieval Warfare. */
+	protected boolean showChivOnly = true;
+	/** Whether or not the beta server list tab is open. */
+	protected boolean serversBetaVisible = true;
+	/** Whether or not the favorite servers tab is open. */
+	protected boolean serversFavVisible = true;
+	/** Whether or not the server history tab is open. */
+	protected boolean serversHistVisible = true;
+	/** Whether or not the friends tab is open. */
+	protected boolean friendsVisible = true;
+	/** Whether or not the map tab is open. */
+	protected boolean mapVisible = true;
+	/** Show normal server markers on the map. */
+	protected boolean mapNormalChckbox = true;
+	/** Show beta server markers on the map. */
+	protected boolean mapBetaChckbox = true;
+	/** Show favorite server markers on the map. */
+	protected boolean mapFavoriteChckbox = true;
+	/** Show server history markers on the map. */
+	protected boolean mapHistoryChckbox = true;
+	/** Whether or not the settings tab is open. */
+	protected boolean settingsVisible = true;
+	/** The selected index of the screen launch option. */
+	protected int launchOptWindow = 0;
+	/** The X resolution launch option. */
+	protected String launchOptResX = "";
+	/** The Y resolution launch option. */
+	protected String launchOptResY = "";
+	/** Whether or not the launch options are enabled. */
+	protected boolean launchOptEnable = false;
+	/** Whether or not the gamepad keybinds tab is open. */
+	protected boolean gamepadVisible = true;
+	/** The user's Steam Web API key for looking up friends in batches. */
+	protected String steamApiKey = "";
+
+	/**
+	 * Creates a new BrowserSettings with default values.
+	 */
+	public BrowserSettings() {}
+
+}
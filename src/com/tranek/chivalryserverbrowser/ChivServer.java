@@ -140,7 +140,7 @@ public class ChivServer {
 		String location = "";
 		String lat = "";
 		String lon = "";		
-		HashMap<String, String> loc = getLocation(mw, ip);
+		HashMap<String, String> loc = getLocation(mw, ip, queryport);
 		location = loc.get("location");
 		lat = loc.get("latitude");
 		lon = loc.get("longitude");
@@ -166,12 +166,14 @@ public class ChivServer {
 	/**
 	 * Gets the location for an IP address. It also adds a slight bit of randomness to its
 	 * latitude and longitude so that multiple servers in a single data center don't overlap
-	 * their markers on the map.
+	 * their markers on the map. The randomness is seeded from the server's address, so a server
+	 * is put in the same place every time it is queried and its marker does not move.
 	 * 
 	 * @param ip the IP address for the server
+	 * @param queryport the server's queryport
 	 * @return a HashMap of the location, latitude, and longitude
 	 */
-	public static HashMap<String, String> getLocation(MainWindow mw, String ip) {
+	public static HashMap<String, String> getLocation(MainWindow mw, String ip, int queryport) {
 		HashMap<String, String> result = new HashMap<String, String>();
 		
 		String location = "";
@@ -237,7 +239,7 @@ public class ChivServer {
 			double latd = Double.parseDouble(lat);
 			double lond = Double.parseDouble(lon);
 			
-			Random generator = new Random(System.currentTimeMillis());
+			Random generator = new Random((ip + ":" + queryport).hashCode());
 			int signlat = generator.nextInt(1);
 			int signlon = generator.nextInt(1);
 			double latran = (generator.nextDouble() * 999 + 1) / 10000;
@@ -25,6 +25,9 @@ import javax.swing.JSpinner;
 import javax.swing.JTextField;
 import javax.swing.LayoutStyle.ComponentPlacement;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.AbstractDocument;
 import javax.swing.text.Document;
 
@@ -36,6 +39,9 @@ import javax.swing.text.Document;
 @SuppressWarnings("serial")
 public class FiltersPanel extends JPanel {
 	
+	/** How long in milliseconds typing in a text filter must pause before the servers are filtered again. */
+	public static final int TYPING_DELAY = 250;
+	
 	/** MainWindow for its utility functions. */
 	private MainWindow mw;
 	/** The server name filter. It converts everything to lowercase and matches
@@ -55,6 +61,8 @@ public class FiltersPanel extends JPanel {
 	protected JCheckBox chckbxHideEmptyServers;
 	/** Hide full servers filter. */
 	protected JCheckBox chckbxHideFullServers;
+	/** Match the server name fuzzily: ignoring punctuation and allowing typos, which suits clan tags. */
+	protected JCheckBox chckbxFuzzyName;
 	/** Only show Official Servers filter. This just does some string matching based
 	 * on the naming convention used for the Official Servers.
 	 */
@@ -121,8 +129,8 @@ public class FiltersPanel extends JPanel {
 				if ( sl.isRefreshing() ) {
 					mw.stopAllRefreshing();
 				}
+				mw.beginMarkerRefresh(sl);
 				sl.RefreshServers();
-				mw.removeMarkers(sl);
 			}
 		});
 		
@@ -138,6 +146,8 @@ public class FiltersPanel extends JPanel {
 		chckbxHideEmptyServers = new JCheckBox("Hide Empty Servers");
 		
 		chckbxHideFullServers = new JCheckBox("Hide Full Servers");
+		chckbxFuzzyName = new JCheckBox("Fuzzy Name Match");
+		chckbxFuzzyName.setToolTipText("Match the server name ignoring spaces, punctuation and small typos, such as a clan tag written as [ABC] or -=ABC=-.");
 		
 		JLabel lblMaxPing = new JLabel("Max Ping");
 		
@@ -220,7 +230,9 @@ public class FiltersPanel extends JPanel {
 								.addGroup(gl_serverListFilters.createSequentialGroup()
 									.addComponent(chckbxHideEmptyServers)
 									.addGap(87)
-									.addComponent(chckbxHideFullServers))
+									.addComponent(chckbxHideFullServers)
+									.addGap(87)
+									.addComponent(chckbxFuzzyName))
 								.addGroup(gl_serverListFilters.createSequentialGroup()
 									.addGroup(gl_serverListFilters.createParallelGroup(Alignment.LEADING, false)
 										.addComponent(minRankFilter, 0, 0, Short.MAX_VALUE)
@@ -280,7 +292,8 @@ public class FiltersPanel extends JPanel {
 					.addGroup(gl_serverListFilters.createParallelGroup(Alignment.BASELINE)
 						.addComponent(chckbxHidePasswordedServers)
 						.addComponent(chckbxHideEmptyServers)
-						.addComponent(chckbxHideFullServers))
+						.addComponent(chckbxHideFullServers)
+						.addComponent(chckbxFuzzyName))
 					.addPreferredGap(ComponentPlacement.RELATED, 61, Short.MAX_VALUE)
 					.addGroup(gl_serverListFilters.createParallelGroup(Alignment.BASELINE)
 						.addComponent(btnRefreshServerList)
@@ -288,5 +301,56 @@ public class FiltersPanel extends JPanel {
 					.addContainerGap())
 		);
 		this.setLayout(gl_serverListFilters);
+		
+		listenForChanges(sl);
+	}
+	
+	/**
+	 * Filters the server list again whenever any of the filters change. This only filters the
+	 * servers already queried; "Refresh Server List" queries them again. Typing in the text
+	 * filters only filters the servers once it has paused for {@link #TYPING_DELAY}.
+	 * 
+	 * @param sl the {@link ServerListInterface} to filter
+	 * @see ServerListInterface#applyFilters()
+	 */
+	private void listenForChanges(final ServerListInterface sl) {
+		final Timer typingTimer = new Timer(TYPING_DELAY, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				sl.applyFilters();
+			}
+		});
+		typingTimer.setRepeats(false);
+		
+		ActionListener filterChanged = new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				// This applies any text still waiting on the timer as well
+				typingTimer.stop();
+				sl.applyFilters();
+			}
+		};
+		gameModeList.addActionListener(filterChanged);
+		cBPerspective.addActionListener(filterChanged);
+		chckbxHidePasswordedServers.addActionListener(filterChanged);
+		chckbxHideEmptyServers.addActionListener(filterChanged);
+		chckbxHideFullServers.addActionListener(filterChanged);
+		chckbxOfficialServersOnly.addActionListener(filterChanged);
+		chckbxFuzzyName.addActionListener(filterChanged);
+		
+		DocumentListener textChanged = new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				typingTimer.restart();
+			}
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				typingTimer.restart();
+			}
+			@Override
+			public void changedUpdate(DocumentEvent e) {}
+		};
+		serverNameFilter.getDocument().addDocumentListener(textChanged);
+		maxPingFilter.getDocument().addDocumentListener(textChanged);
+		minRankFilter.getDocument().addDocumentListener(textChanged);
+		maxRankFilter.getDocument().addDocumentListener(textChanged);
 	}
 }
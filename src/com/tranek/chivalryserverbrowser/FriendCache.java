@@ -0,0 +1,229 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * The last fetched presence of each of the user's Steam friends, keyed by Steam ID. A friend
+ * is only fetched again once its presence is older than the time to live for its state, so
+ * friends in a game are refreshed often and offline friends rarely. Offline and private
+ * friends that stay unchanged are fetched less and less often, up to {@link #MAX_IDLE_TTL}.
+ * <p>
+ * When a friend's Chivalry server changes from one fetch to the next, the
+ * {@link PresenceListener} is told.
+ *
+ */
+public class FriendCache {
+
+	/** How long in milliseconds the presence of a friend in a game is kept. */
+	public static final long IN_GAME_TTL = 20 * 1000;
+	/** How long in milliseconds the presence of an online friend is kept. */
+	public static final long ONLINE_TTL = 60 * 1000;
+	/** How long in milliseconds the presence of an offline friend is kept. */
+	public static final long OFFLINE_TTL = 5 * 60 * 1000;
+	/** How long in milliseconds the presence of a friend with a private profile is kept. */
+	public static final long PRIVATE_TTL = 15 * 60 * 1000;
+	/** The longest time in milliseconds an unchanged offline or private friend is kept. */
+	public static final long MAX_IDLE_TTL = 30 * 60 * 1000;
+
+	/** The cached presences by Steam ID. */
+	private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<Long, Entry>();
+	/** Told about friends joining and leaving Chivalry servers; or null. */
+	private volatile PresenceListener listener;
+
+	/**
+	 * Creates a new empty FriendCache.
+	 */
+	public FriendCache() {}
+
+	/**
+	 * Sets the listener that is told about friends joining and leaving Chivalry servers.
+	 *
+	 * @param listener the listener; or null for none
+	 */
+	public void setListener(PresenceListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Gets the profile of a friend if it was fetched from the Steam Community XML and is still fresh.
+	 *
+	 * @param id the Steam ID of the friend
+	 * @return the profile; or null if there is none or it has expired
+	 */
+	public SteamProfile getProfile(Long id) {
+		Entry e = getFresh(id);
+		return e == null ? null : e.profile;
+	}
+
+	/**
+	 * Gets the summary of a friend if it was fetched from the Steam Web API and is still fresh.
+	 *
+	 * @param id the Steam ID of the friend
+	 * @return the summary; or null if there is none or it has expired
+	 */
+	public SteamPlayerSummaries.PlayerSummary getSummary(Long id) {
+		Entry e = getFresh(id);
+		return e == null ? null : e.summary;
+	}
+
+	/**
+	 * Caches a profile fetched from the Steam Community XML.
+	 *
+	 * @param id the Steam ID of the friend
+	 * @param profile the profile with the friend's state message
+	 */
+	public void put(Long id, SteamProfile profile) {
+		put(id, profile.nickname, new Entry(profile, null, profile.onlineStatus,
+				chivalryServer(profile.onlineStatus), ttl(profile.onlineStatus)));
+	}
+
+	/**
+	 * Caches a summary fetched from the Steam Web API.
+	 *
+	 * @param summary the summary
+	 */
+	public void put(SteamPlayerSummaries.PlayerSummary summary) {
+		long ttl;
+		if ( !summary.isPublic ) {
+			ttl = PRIVATE_TTL;
+		} else if ( summary.isInGame() ) {
+			ttl = IN_GAME_TTL;
+		} else if ( summary.personaState > 0 ) {
+			ttl = ONLINE_TTL;
+		} else {
+			ttl = OFFLINE_TTL;
+		}
+		String server = summary.isInChivalry() && !summary.gameServerIp.equals("") ? summary.gameServerIp : null;
+		put(summary.steamId, summary.personaName, new Entry(null, summary,
+				summary.isPublic + summary.getStatus() + summary.gameServerIp, server, ttl));
+	}
+
+	/**
+	 * Caches a new entry. If the state of the friend has not changed since the last fetch
+	 * an offline or private friend's time to live is doubled, and if the friend's server
+	 * changed the listener is told.
+	 *
+	 * @param id the Steam ID of the friend
+	 * @param nickname the Steam nickname of the friend
+	 * @param e the new entry
+	 */
+	private void put(Long id, String nickname, Entry e) {
+		Entry previous = entries.get(id);
+		if ( previous != null && previous.state.equals(e.state) ) {
+			e.streak = previous.streak + 1;
+			if ( e.ttl >= OFFLINE_TTL ) {
+				e.ttl = Math.min(e.ttl << Math.min(e.streak, 4), MAX_IDLE_TTL);
+			}
+		}
+		entries.put(id, e);
+		if ( previous == null ) {
+			return;
+		}
+		PresenceListener l = listener;
+		if ( l != null && (previous.server == null ? e.server != null : !previous.server.equals(e.server)) ) {
+			l.presenceChanged(id, nickname, previous.server, e.server);
+		}
+	}
+
+	/**
+	 * Gets the number of cached friends, fresh or not.
+	 *
+	 * @return the number of cached friends
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the entry of a friend if it has not expired.
+	 *
+	 * @param id the Steam ID of the friend
+	 * @return the entry; or null
+	 */
+	private Entry getFresh(Long id) {
+		Entry e = entries.get(id);
+		if ( e == null || System.currentTimeMillis() - e.fetched > e.ttl ) {
+			return null;
+		}
+		return e;
+	}
+
+	/**
+	 * Gets the Chivalry server of a Steam Community state message.
+	 *
+	 * @param stateMessage the state message
+	 * @return the IP address and gameport of the server; or null if the friend is not on a Chivalry server
+	 */
+	static String chivalryServer(String stateMessage) {
+		SteamStateMessage state = SteamStateMessage.parse(stateMessage);
+		return state.isInChivalry() ? state.getEndpoint() : null;
+	}
+
+	/**
+	 * Gets the time to live of a Steam Community state message.
+	 *
+	 * @param stateMessage the state message
+	 * @return the time to live in milliseconds
+	 */
+	static long ttl(String stateMessage) {
+		switch ( SteamStateMessage.parse(stateMessage).getState() ) {
+		case SteamStateMessage.PRIVATE:
+			return PRIVATE_TTL;
+		case SteamStateMessage.IN_GAME:
+			return IN_GAME_TTL;
+		case SteamStateMessage.OFFLINE:
+			return OFFLINE_TTL;
+		default:
+			return ONLINE_TTL;
+		}
+	}
+
+	/**
+	 *
+	 * The cached presence of one friend. Exactly one of profile and summary is set.
+	 *
+	 */
+	private static class Entry {
+		/** The profile from the Steam Community XML. */
+		final SteamProfile profile;
+		/** The summary from the Steam Web API. */
+		final SteamPlayerSummaries.PlayerSummary summary;
+		/** The state of the friend, used to tell whether it changed between fetches. */
+		final String state;
+		/** The IP address and gameport of the friend's Chivalry server; or null. */
+		final String server;
+		/** When the presence was fetched in milliseconds. */
+		final long fetched = System.currentTimeMillis();
+		/** How long the presence is kept in milliseconds. */
+		long ttl;
+		/** How many fetches in a row the state has not changed. */
+		int streak = 0;
+
+		Entry(SteamProfile profile, SteamPlayerSummaries.PlayerSummary summary, String state, String server, long ttl) {
+			this.profile = profile;
+			this.summary = summary;
+			this.state = state;
+			this.server = server;
+			this.ttl = ttl;
+		}
+	}
+
+	/**
+	 *
+	 * Listens for friends joining and leaving Chivalry servers.
+	 *
+	 */
+	public interface PresenceListener {
+		/**
+		 * Called when the Chivalry server of a friend changed between two fetches.
+		 *
+		 * @param id the Steam ID of the friend
+		 * @param nickname the Steam nickname of the friend
+		 * @param left the IP address and gameport of the server the friend was on; or null
+		 * @param joined the IP address and gameport of the server the friend is on now; or null
+		 */
+		void presenceChanged(Long id, String nickname, String left, String joined);
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ *
+ * Keeps the user's Steam friends up to date in the background after the friends list has
+ * been loaded once by a {@link FriendQuery}, starting with the friends list it read. Every {@link #POLL_INTERVAL} it fetches the friends whose presence in the
+ * {@link FriendCache} has expired. Friends in a game expire quickly and unchanged offline
+ * friends slowly, so the cost of a poll follows how many friends are active rather than how
+ * many friends the user has. Friends joining and leaving servers are reported through the
+ * cache's {@link FriendCache.PresenceListener}.
+ *
+ */
+public class FriendPoller extends Thread {
+
+	/** How often in milliseconds the poller looks for friends that are due. */
+	public static final long POLL_INTERVAL = 5000;
+	/** How often in milliseconds the friends list itself is fetched again. */
+	public static final long FRIENDS_LIST_INTERVAL = 10 * 60 * 1000;
+
+	/** The MainWindow. */
+	private final MainWindow mw;
+	/** The {@link FriendsTab} whose rows are kept up to date. */
+	private final FriendsTab ft;
+	/** The URL of the user's Steam Community profile. */
+	private final String url;
+	/** The state of the "Show friends only in Chivalry" checkbox when the friends were loaded. */
+	private final boolean inChiv;
+	/** The user's Steam Web API key when the friends were loaded; or empty. */
+	private final String apiKey;
+	/** Whether or not the poller should keep running. */
+	private volatile boolean running = true;
+	/** The Steam IDs of the user's friends. This is only used on the poller's thread after it starts. */
+	private List<Long> friends;
+	/** When the friends list was last read. */
+	private long listed;
+
+	/**
+	 * Creates a new FriendPoller for the friends of a Steam Community profile.
+	 *
+	 * @param mw the MainWindow
+	 * @param ft the FriendsTab
+	 * @param url the URL of the user's Steam Community profile
+	 * @param friends the Steam IDs of the user's friends, as they were just read
+	 * @param inChiv whether only friends in Chivalry are shown
+	 * @param apiKey the user's Steam Web API key; or empty to query each friend's profile on its own
+	 */
+	public FriendPoller(MainWindow mw, FriendsTab ft, String url, List<Long> friends, boolean inChiv, String apiKey) {
+		super("FriendPoller");
+		this.mw = mw;
+		this.ft = ft;
+		this.url = url;
+		this.inChiv = inChiv;
+		this.apiKey = apiKey;
+		setFriends(friends);
+		setDaemon(true);
+	}
+	
+	/**
+	 * Sets the friends list once it has been read, so the poller does not read it again until
+	 * {@link #FRIENDS_LIST_INTERVAL} has passed.
+	 * 
+	 * @param friends the Steam IDs of the user's friends
+	 */
+	private void setFriends(List<Long> friends) {
+		listed = System.currentTimeMillis();
+		this.friends = friends;
+	}
+
+	/**
+	 * Polls the friends until {@link #stopPolling()} is called.
+	 *
+	 * @see FriendUpdater#update(List, boolean)
+	 */
+	@Override
+	public void run() {
+		while ( running ) {
+			try {
+				Thread.sleep(POLL_INTERVAL);
+			} catch (InterruptedException e) {
+				break;
+			}
+			try {
+				List<Long> friends = this.friends;
+				if ( System.currentTimeMillis() - listed > FRIENDS_LIST_INTERVAL ) {
+					friends = SteamXmlReader.readFriendIds(url);
+					setFriends(friends);
+					ft.retainFriendRows(new HashSet<Long>(friends));
+				}
+				if ( !running ) {
+					break;
+				}
+				// Only the friends whose presence has expired are fetched, so a poll costs nothing when none are due
+				FriendUpdater updater = new FriendUpdater(mw, ft, inChiv, apiKey, null, new ArrayList<SteamProfile>());
+				try {
+					updater.update(friends, false);
+				} finally {
+					updater.shutdown();
+				}
+			} catch (IOException | XMLStreamException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Stops polling.
+	 */
+	public void stopPolling() {
+		running = false;
+		interrupt();
+	}
+
+}
@@ -0,0 +1,397 @@
+package com.tranek.chivalryserverbrowser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.table.DefaultTableModel;
+import javax.xml.stream.XMLStreamException;
+
+import org.json.JSONException;
+
+/**
+ * 
+ * Fetches the presence of the user's Steam friends and sets their rows in the table of the
+ * {@link FriendsTab}. It is used by the {@link FriendQuery} that loads the friends and by the
+ * {@link FriendPoller} that keeps them up to date. The state of the "Show friends only in
+ * Chivalry" checkbox and the Steam Web API key are read on the event dispatch thread by
+ * whoever makes the FriendUpdater.
+ *
+ */
+public class FriendUpdater {
+	
+	/** {@link FriendsTab} whose rows are set. */
+	private final FriendsTab ft;
+	/** {@link MainWindow} reference for its utility methods. */
+	private final MainWindow mw;
+	/** Pool of threads for querying the user's friends; or null until one is needed. */
+	private ExecutorService pool;
+	/** Synchronizing object to manage the threads' access to shared data. */
+	private final Synchronizer synch;
+	/** The state of the "Show friends only in Chivalry" checkbox from {@link FriendsTab}. */
+	private final boolean inChiv;
+	/** The user's Steam Web API key; or empty to query each friend's profile on its own. */
+	private final String apiKey;
+	/** The last fetched presence of the user's friends, shared by all FriendUpdaters of the {@link FriendsTab}. */
+	private final FriendCache cache;
+	
+	/**
+	 * Creates a new FriendUpdater.
+	 * 
+	 * @param mw the MainWindow
+	 * @param ft the {@link FriendsTab} whose rows are set
+	 * @param inChiv whether only friends in Chivalry are shown
+	 * @param apiKey the user's Steam Web API key; or empty to query each friend's profile on its own
+	 * @param pool the pool of threads for querying the friends; or null to make one when it is needed
+	 * @param friends the list the queried friends are added to
+	 */
+	public FriendUpdater(MainWindow mw, FriendsTab ft, boolean inChiv, String apiKey, ExecutorService pool,
+			ArrayList<SteamProfile> friends) {
+		this.mw = mw;
+		this.ft = ft;
+		this.inChiv = inChiv;
+		this.apiKey = apiKey;
+		this.pool = pool;
+		cache = ft.friendCache;
+		synch = new Synchronizer((DefaultTableModel) ft.dataModel, friends);
+	}
+	
+	/**
+	 * Updates the rows of the given friends. Friends whose presence has expired are fetched,
+	 * through the Steam Web API if the user has a key and one profile at a time otherwise.
+	 * 
+	 * @param friends the Steam IDs of the friends
+	 * @param all whether to also update the rows of friends whose cached presence is still fresh
+	 * @return how many friends were fetched
+	 * @see FriendCache
+	 * @see SteamPlayerSummaries
+	 */
+	public int update(List<Long> friends, boolean all) {
+		Set<Future<?>> set = new HashSet<Future<?>>();
+        List<Long> remaining = new ArrayList<Long>();
+        for ( Long id : friends ) {
+        	SteamPlayerSummaries.PlayerSummary ps = cache.getSummary(id);
+        	SteamProfile profile = ps == null ? cache.getProfile(id) : null;
+        	if ( ps == null && profile == null ) {
+        		remaining.add(id);
+        	} else if ( !all ) {
+        		continue;
+        	} else if ( ps != null ) {
+        		set.add(submit(new SummaryWorker(ps)));
+        	} else {
+        		set.add(submit(new FriendWorker(id, profile)));
+        	}
+        }
+        int fetched = remaining.size();
+        if ( !apiKey.equals("") && !remaining.isEmpty() ) {
+        	try {
+        		HashMap<Long, SteamPlayerSummaries.PlayerSummary> summaries =
+        				new SteamPlayerSummaries(apiKey).getSummaries(remaining);
+        		List<Long> missing = new ArrayList<Long>();
+        		for ( Long id : remaining ) {
+        			SteamPlayerSummaries.PlayerSummary ps = summaries.get(id);
+        			if ( ps != null ) {
+        				cache.put(ps);
+        				set.add(submit(new SummaryWorker(ps)));
+        			} else {
+        				missing.add(id);
+        			}
+        		}
+        		remaining = missing;
+        	} catch ( IOException | JSONException e ) {
+        		e.printStackTrace();
+        		mw.printlnMC("Steam Web API request failed. Check your API key in the settings tab. " +
+        				"Getting friends one at a time instead.");
+        	}
+        }
+        for ( Long id : remaining ) {
+            set.add(submit(new FriendWorker(id, null)));
+        }
+        for (Future<?> future : set) {
+            try {
+            	future.get();
+            } catch ( StringIndexOutOfBoundsException | ExecutionException e1 ) {
+            	
+            } catch ( InterruptedException e1 ) {
+            	break;
+            }
+        }
+        return fetched;
+	}
+	
+	/**
+	 * Submits a worker to the pool, creating the pool first if there is none yet.
+	 * 
+	 * @param worker the worker
+	 * @return the worker's future
+	 */
+	private synchronized Future<?> submit(Callable<String> worker) {
+		if ( pool == null ) {
+			pool = Executors.newFixedThreadPool(32);
+		}
+		return pool.submit(worker);
+	}
+	
+	/**
+	 * Gets how many friends have been shown in the table.
+	 * 
+	 * @return the number of friends shown
+	 * @see Synchronizer#getShownRows()
+	 */
+	public int getShownRows() {
+		return synch.getShownRows();
+	}
+	
+	/**
+	 * Lets the workers finish and then stops the pool, if one was made.
+	 */
+	public synchronized void shutdown() {
+		if ( pool != null ) {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Gets the text of the IP address:port column for a server. It is blue and underlined
+	 * like a link.
+	 * 
+	 * @param endpoint the IP address and gameport of the server
+	 * @return the HTML for the column
+	 */
+	private static String serverLink(String endpoint) {
+		return "<html><U><FONT COLOR=BLUE>" + endpoint + "</FONT></U></html>";
+	}
+	
+	/**
+	 * Fills in the server columns of a friend's row from the Chivalry server the friend is on.
+	 * 
+	 * @param rowData the friend's row
+	 * @param ip the IP address of the server
+	 * @param gameport the gameport of the server
+	 * @see MainWindow#getServerFromDB(String, String)
+	 */
+	private void addServerDetails(Object[] rowData, String ip, String gameport) {
+		ChivServer cs = mw.getServerFromDB(ip, gameport);
+		if ( cs != null ) {
+			Vector<ChivServer> friendServers = mw.serversFriends;
+			synchronized ( friendServers ) {
+				if ( mw.findChivServer(ip, gameport, friendServers) == null ) {
+					friendServers.add(cs);
+				}
+			}
+			rowData[2] = cs.mName;
+			rowData[4] = NumberCell.players(cs.mCurrentPlayers, cs.mMaxPlayers);
+			rowData[5] = NumberCell.of(cs.mPing);
+			if ( cs.mHasPassword.equals("1") ) {
+				rowData[6] = "Yes";
+			}
+		} else {
+			mw.printlnMC("Could not find the queryport of friend's Chivalry server " + ip + ":" + gameport + ". Please refresh all servers to update database!");
+		}
+	}
+	
+	/**
+	 * 
+	 * Synchronizes access to shared data between the threads that query the user's
+	 * Steam friends.
+	 *
+	 */
+	public class Synchronizer {
+		/** Data model for the friend table. */
+		private final DefaultTableModel dataModel;
+		/** List of queried Steam friends. */
+		private final ArrayList<SteamProfile> friends;
+		/** How many friends have been shown in the table. */
+		private final AtomicInteger shownRows = new AtomicInteger();
+		
+		/**
+		 * Creates a new Synchronizer for a given table data model and a list of friends.
+		 * 
+		 * @param datamodel the table data model for the Steam friends
+		 * @param friends the list of queried friends
+		 */
+		public Synchronizer(DefaultTableModel datamodel, ArrayList<SteamProfile> friends) {
+			dataModel = datamodel;
+			this.friends = friends;
+		}
+		
+		/**
+		 * Sets the row corresponding to a Steam friend in the table of Steam friends.
+		 * Unchanged rows are left alone.
+		 * <p>
+		 * This method is thread safe.
+		 * 
+		 * @param id the Steam ID of the friend
+		 * @param rowData the row data; or null to remove the friend from the table
+		 * @see FriendsTab#setFriendRow(Long, Object[])
+		 */
+		public void setRow(Long id, Object[] rowData) {
+			if ( rowData != null ) {
+				shownRows.incrementAndGet();
+			}
+			ft.setFriendRow(id, rowData);
+		}
+		
+		/**
+		 * Gets how many friends have been shown in the table. The rows themselves are added
+		 * to the table later on the event dispatch thread.
+		 * 
+		 * @return the number of friends shown
+		 */
+		public int getShownRows() {
+			return shownRows.get();
+		}
+		
+		/**
+		 * Adds a Steam friend to the list of Steam friends.
+		 * <p>
+		 * This method is thread safe.
+		 * 
+		 * @param friend the Steam friend to add to the list
+		 */
+		public synchronized void addToList(SteamProfile friend) {
+			friends.add(friend);
+		}
+	}
+	
+	/**
+	 * 
+	 * The thread responsible for adding a Steam friend looked up through the Steam Web API.
+	 * Only the server lookup of friends on a Chivalry server goes over the network.
+	 *
+	 */
+	private class SummaryWorker implements Callable<String> {
+		/** The summary of the Steam friend. */
+		private final SteamPlayerSummaries.PlayerSummary summary;
+		
+		/**
+		 * Creates a new SummaryWorker for the given summary.
+		 * 
+		 * @param summary the summary of the friend
+		 */
+		public SummaryWorker(SteamPlayerSummaries.PlayerSummary summary) {
+			super();
+			this.summary = summary;
+		}
+		
+		/**
+		 * Adds the Steam friend to the list of friends and, unless it is filtered out, to the
+		 * table with the information of the Chivalry server the friend is on.
+		 * 
+		 * @see SteamPlayerSummaries.PlayerSummary
+		 * @see Synchronizer
+		 */
+		@Override
+		public String call() {
+			String nickname = summary.personaName;
+			String status = summary.isPublic ? summary.getStatus() : "Private profile";
+			synch.addToList(new SteamProfile(FriendQuery.PROFILE_URL + summary.steamId, nickname, status));
+			if ( inChiv && !summary.isInChivalry() ) {
+				if ( !pool.isShutdown() ) {
+					synch.setRow(summary.steamId, null);
+				}
+				return nickname;
+			}
+			Object[] rowData = {nickname, status, "", "", NumberCell.EMPTY, NumberCell.EMPTY, ""};
+			if ( summary.isInChivalry() && !summary.gameServerIp.equals("") ) {
+				rowData[3] = serverLink(summary.gameServerIp);
+				String[] ipaddress = summary.gameServerIp.split(":");
+				if ( ipaddress.length == 2 ) {
+					addServerDetails(rowData, ipaddress[0], ipaddress[1]);
+				}
+			}
+			if ( pool.isShutdown() ) {
+				return null;
+			}
+			synch.setRow(summary.steamId, rowData);
+			return nickname;
+		}
+	}
+	
+	/**
+	 * 
+	 * The thread responsible for querying information about a Steam friend.
+	 *
+	 */
+	private class FriendWorker implements Callable<String> {
+		/** The Steam ID of the Steam friend. */
+		private Long friendID;
+		/** The cached profile of the Steam friend; or null to fetch it. */
+		private SteamProfile cached;
+		
+		/**
+		 * Creates a new FriendWorker with the given Steam ID.
+		 * 
+		 * @param friendID the Steam ID of the friend
+		 * @param cached the friend's fresh profile from the {@link FriendCache}; or null to fetch it
+		 */
+		public FriendWorker(Long friendID, SteamProfile cached) {
+			super();
+			this.friendID = friendID;
+			this.cached = cached;
+		}
+		
+		/**
+		 * Queries the Steam friend's profile, unless it is cached, to get their status and the
+		 * information of the Chivalry server if they are currently in one.
+		 * 
+		 * @see SteamXmlReader
+		 * @see SteamProfile
+		 * @see SteamStateMessage
+		 * @see Synchronizer
+		 * @see IOException
+		 * @see XMLStreamException
+		 */
+		@Override
+		public String call() {
+			String nickname = "";
+			try {
+	            String friendURL = FriendQuery.PROFILE_URL + friendID;
+	            SteamProfile friendProfile = cached;
+	            if ( friendProfile == null ) {
+	            	friendProfile = SteamXmlReader.readProfile(friendURL);
+	            	if ( friendProfile == null || friendProfile.nickname.equals("") ) {
+	            		return "";
+	            	}
+	            	cache.put(friendID, friendProfile);
+	            }
+	            nickname = friendProfile.nickname;
+	            String stateMessage = friendProfile.onlineStatus;
+	            synch.addToList(friendProfile);
+	            //System.out.println(nickname + ": " + stateMessage);
+	            if ( nickname.equals("ia. | Sir Clayton Bigsby") ) {
+	            	System.out.println(nickname + ": " + stateMessage);
+	            }
+	            
+	            SteamStateMessage state = SteamStateMessage.parse(stateMessage);
+	            Object[] rowData = {nickname, state.getStatus(), "", "", NumberCell.EMPTY, NumberCell.EMPTY, ""};
+	            boolean shown = !inChiv || state.isInChivalry();
+	            if ( shown && state.isInChivalry() && state.getEndpoint() != null ) {
+	            	// Currently playing on a Chivalry server
+	            	rowData[3] = serverLink(state.getEndpoint());
+	            	addServerDetails(rowData, state.getIp(), state.getPort());
+	            }
+	            
+	            if ( pool.isShutdown() ) {
+	            	return null;
+	            }
+	            synch.setRow(friendID, shown ? rowData : null);
+	            
+			} catch ( IOException | XMLStreamException e ) {
+				e.printStackTrace();
+			}
+			
+			return nickname;
+		}
+	}
+	
+}
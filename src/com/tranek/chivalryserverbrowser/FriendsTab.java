@@ -1,6 +1,7 @@
 package com.tranek.chivalryserverbrowser;
 import java.awt.BorderLayout;
 import java.awt.Cursor;
+import java.awt.EventQueue;
 import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.ClipboardOwner;
@@ -14,6 +15,10 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import javax.swing.JButton;
@@ -58,6 +63,23 @@ public class FriendsTab extends JPanel {
 	protected JCheckBox chckbxInChiv;
 	/** The FriendQuery that parses and queries all of the user's Steam friends from his/her Steam Community profile page. */
 	protected FriendQuery fq;
+	/** The last fetched presence of the user's friends. It is kept across refreshes. */
+	protected final FriendCache friendCache = new FriendCache();
+	/** The Steam ID of the friend in each row of the data model, in the same order. */
+	private final ArrayList<Long> rowIds = new ArrayList<Long>();
+	/** Gathers the rows set by the friend query workers and applies them once per frame. */
+	private final RowPublisher<FriendRow> rowPublisher = new RowPublisher<FriendRow>(new RowPublisher.Sink<FriendRow>() {
+		@Override
+		public void drain(List<FriendRow> rows) {
+			applyFriendRows(rows);
+		}
+	});
+	/** The Steam Community URL the rows of the table were loaded from. */
+	private String rowsUrl = null;
+	/** Keeps the friends up to date in the background once they have been loaded; or null while they are being loaded. */
+	protected FriendPoller poller;
+	/** Label for the latest friend joining or leaving a server. */
+	protected JLabel lblPresence;
 	
 	/**
 	 * Creates a new FriendsTab.
@@ -138,6 +160,30 @@ public class FriendsTab extends JPanel {
 		chckbxInChiv.setSelected(true);
 		settingsPanel2.add(chckbxInChiv);
 		
+		lblPresence = new JLabel();
+		settingsPanel2.add(lblPresence);
+		friendCache.setListener(new FriendCache.PresenceListener() {
+			@Override
+			public void presenceChanged(Long id, String nickname, String left, String joined) {
+				// A friend who moved straight from one server to another both left and joined
+				final String msg;
+				if ( left != null && joined != null ) {
+					msg = nickname + " left " + serverName(left) + " and joined " + serverName(joined);
+				} else if ( joined != null ) {
+					msg = nickname + " joined " + serverName(joined);
+				} else {
+					msg = nickname + " left " + serverName(left);
+				}
+				mw.printlnMC(msg);
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						lblPresence.setText(msg);
+					}
+				});
+			}
+		});
+		
 		btnRefresh.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				refreshFriends();
@@ -148,9 +194,10 @@ public class FriendsTab extends JPanel {
 			public boolean isCellEditable(int row, int column){  
 				return false;  
 			}
+			// The Players and Ping columns are sorted by their numbers
 			public Class<?> getColumnClass(int columnIndex) {
 				if ( columnIndex == 4 || columnIndex == 5 ) {
-					return Integer.class;
+					return NumberCell.class;
 				}
 				return super.getColumnClass(columnIndex);
 			}
@@ -159,7 +206,6 @@ public class FriendsTab extends JPanel {
 		playerListTable = new JTable(dataModel);
 		playerListTable.setAutoCreateRowSorter(true);
 		TableRowSorter<?> trs = (TableRowSorter<?>) playerListTable.getRowSorter();
-		trs.setComparator(4, new PlayerComparator());
 		trs.toggleSortOrder(2);
 		trs.toggleSortOrder(2);
 		playerListTable.getColumnModel().getColumn(3).setMaxWidth(400); // IP address
@@ -223,11 +269,12 @@ public class FriendsTab extends JPanel {
 					JMenuItem popFav = new JMenuItem("Add to favorites");
 					popFav.addActionListener(new ActionListener() {
 						public void actionPerformed(ActionEvent e) {
-							ChivServer cs = mw.findChivServer(ip, port, mw.serversFriends);
-							if (cs == null) {
-								cs = mw.getServerFromDB(ip, port);
-							}
-							mw.addFavorite(cs);
+							withServer(ip, port, new BrowserDatabase.Callback<ChivServer>() {
+								@Override
+								public void done(ChivServer cs) {
+									mw.addFavorite(cs);
+								}
+							});
 						}
 					});
 					rmbServerPopup.add(popFav);
@@ -235,11 +282,12 @@ public class FriendsTab extends JPanel {
 					popInfo.addActionListener(new ActionListener() {
 						@Override
 						public void actionPerformed(ActionEvent e) {
-							ChivServer cs = mw.findChivServer(ip, port, mw.serversFriends);
-							if (cs == null) {
-								cs = mw.getServerFromDB(ip, port);
-							}
-							mw.addServerTab(cs, true);
+							withServer(ip, port, new BrowserDatabase.Callback<ChivServer>() {
+								@Override
+								public void done(ChivServer cs) {
+									mw.addServerTab(cs, true);
+								}
+							});
 						}
 					});
 					rmbServerPopup.add(popInfo);
@@ -260,11 +308,12 @@ public class FriendsTab extends JPanel {
 					popShowInMap.addActionListener(new ActionListener() {
 						@Override
 						public void actionPerformed(ActionEvent e) {
-							ChivServer cs = mw.findChivServer(ip, port, mw.serversFriends);
-							if (cs == null) {
-								cs = mw.getServerFromDB(ip, port);
-							}
-							mw.showInMap(cs);
+							withServer(ip, port, new BrowserDatabase.Callback<ChivServer>() {
+								@Override
+								public void done(ChivServer cs) {
+									mw.showInMap(cs);
+								}
+							});
 						}
 					});
 					rmbServerPopup.add(popShowInMap);
@@ -279,6 +328,23 @@ public class FriendsTab extends JPanel {
 		add(playerListScrollPane, BorderLayout.CENTER);
 	}
 	
+	/**
+	 * Finds the server of a friend, first among the servers of the friends and otherwise in
+	 * the background through {@link MainWindow#findServer(String, String, BrowserDatabase.Callback)}.
+	 * 
+	 * @param ip the ip address of the server
+	 * @param gameport the gameport of the server
+	 * @param callback called on the event dispatch thread with the {@link ChivServer}, or null if it was not found
+	 */
+	private void withServer(String ip, String gameport, BrowserDatabase.Callback<ChivServer> callback) {
+		ChivServer cs = mw.findChivServer(ip, gameport, mw.serversFriends);
+		if ( cs != null ) {
+			callback.done(cs);
+		} else {
+			mw.findServer(ip, gameport, callback);
+		}
+	}
+	
 	/**
 	 * Refreshes the user's list of Steam friends. This is called whenever the
 	 * refresh button is clicked. This needs to be called after the JCheckBox
@@ -291,10 +357,170 @@ public class FriendsTab extends JPanel {
 		}
 		mw.serversFriends = new Vector<ChivServer>();
 		String url = urlField.getText();
-		((DefaultTableModel)dataModel).setRowCount(0);
+		if ( !url.equals(rowsUrl) ) {
+			clearFriendRows();
+			rowsUrl = url;
+		}
+		stopPolling();
 		fq = new FriendQuery(mw, ft, url);
 		fq.start();
 		mw.settingsTab.tfSteamCommunityUrl.setText(url);
 	}
 	
+	/**
+	 * Stops the {@link FriendPoller}, so that it does not fetch the friends a
+	 * {@link FriendQuery} is about to fetch.
+	 */
+	private synchronized void stopPolling() {
+		if ( poller != null ) {
+			poller.stopPolling();
+			poller = null;
+		}
+	}
+	
+	/**
+	 * Starts polling the friends of a Steam Community profile once a {@link FriendQuery} has
+	 * loaded them, starting with the friends list the query read.
+	 * 
+	 * @param url the URL of the user's Steam Community profile
+	 * @param friends the Steam IDs of the user's friends
+	 * @param inChiv whether only friends in Chivalry are shown, as read on the event dispatch thread
+	 * @param apiKey the user's Steam Web API key, as read on the event dispatch thread
+	 */
+	protected synchronized void friendsLoaded(String url, List<Long> friends, boolean inChiv, String apiKey) {
+		if ( poller != null ) {
+			poller.stopPolling();
+		}
+		poller = new FriendPoller(mw, ft, url, friends, inChiv, apiKey);
+		poller.start();
+	}
+	
+	/**
+	 * Gets the name of the server a friend joined or left. Only the fresh snapshots of the
+	 * {@link ServerIndex} are used, since this is called from the threads fetching the friends
+	 * while they update the {@link FriendCache}; no server is queried.
+	 * 
+	 * @param endpoint the IP address and gameport of the server
+	 * @return the name and address of the server; or just the address if it is not known
+	 */
+	private String serverName(String endpoint) {
+		String[] ipaddress = endpoint.split(":");
+		if ( ipaddress.length == 2 ) {
+			ChivServer cs = mw.serverIndex.getFresh(ipaddress[0], ipaddress[1]);
+			if ( cs != null && cs.mName != null ) {
+				return cs.mName + " (" + endpoint + ")";
+			}
+		}
+		return endpoint;
+	}
+	
+	/**
+	 * Sets the row of a Steam friend in the table. A row that is already in the table is
+	 * updated in place, and only in the cells that changed. The row is set on the event
+	 * dispatch thread together with the others set in the same frame.
+	 * <p>
+	 * This method is thread safe.
+	 * 
+	 * @param id the Steam ID of the friend
+	 * @param rowData the row data; or null to remove the friend from the table
+	 * @see RowPublisher
+	 */
+	protected void setFriendRow(Long id, Object[] rowData) {
+		rowPublisher.publish(new FriendRow(id, rowData));
+	}
+	
+	/**
+	 * Applies a batch of rows on the event dispatch thread. New rows are appended without
+	 * an event each; they are announced together, before anything else changes the table.
+	 * 
+	 * @param rows the rows in the order they were set
+	 */
+	@SuppressWarnings("unchecked")
+	private void applyFriendRows(List<FriendRow> rows) {
+		DefaultTableModel model = (DefaultTableModel) dataModel;
+		int unannounced = -1;
+		for ( FriendRow friendRow : rows ) {
+			int row = rowIds.indexOf(friendRow.id);
+			if ( friendRow.data != null && row < 0 ) {
+				if ( unannounced < 0 ) {
+					unannounced = rowIds.size();
+				}
+				rowIds.add(friendRow.id);
+				model.getDataVector().add(new Vector<Object>(Arrays.asList(friendRow.data)));
+				continue;
+			}
+			if ( row < 0 ) {
+				continue;
+			}
+			if ( unannounced > -1 ) {
+				model.fireTableRowsInserted(unannounced, rowIds.size() - 1);
+				unannounced = -1;
+			}
+			if ( friendRow.data == null ) {
+				rowIds.remove(row);
+				model.removeRow(row);
+			} else {
+				for ( int col = 0; col < friendRow.data.length; col++ ) {
+					Object old = model.getValueAt(row, col);
+					if ( old == null ? friendRow.data[col] != null : !old.equals(friendRow.data[col]) ) {
+						model.setValueAt(friendRow.data[col], row, col);
+					}
+				}
+			}
+		}
+		if ( unannounced > -1 ) {
+			model.fireTableRowsInserted(unannounced, rowIds.size() - 1);
+		}
+	}
+	
+	/**
+	 * Removes the rows of everyone that is no longer a friend of the user. This happens on
+	 * the event dispatch thread after the rows that were already set.
+	 * <p>
+	 * This method is thread safe.
+	 * 
+	 * @param ids the Steam IDs of the user's friends
+	 */
+	protected void retainFriendRows(final Set<Long> ids) {
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				rowPublisher.flush();
+				for ( int row = rowIds.size() - 1; row >= 0; row-- ) {
+					if ( !ids.contains(rowIds.get(row)) ) {
+						rowIds.remove(row);
+						((DefaultTableModel) dataModel).removeRow(row);
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Removes all rows from the table, along with any rows that were set but not applied yet.
+	 * This must be called on the event dispatch thread.
+	 */
+	protected void clearFriendRows() {
+		rowPublisher.discard();
+		rowIds.clear();
+		((DefaultTableModel) dataModel).setRowCount(0);
+	}
+	
+	/**
+	 * 
+	 * A row set for a Steam friend.
+	 *
+	 */
+	private static class FriendRow {
+		/** The Steam ID of the friend. */
+		final Long id;
+		/** The row data; or null to remove the friend. */
+		final Object[] data;
+		
+		FriendRow(Long id, Object[] data) {
+			this.id = id;
+			this.data = data;
+		}
+	}
+	
 }
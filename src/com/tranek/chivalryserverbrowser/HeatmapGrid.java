@@ -0,0 +1,171 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * The player heatmap of the map as a grid of {@link #BIN_SIZE} degree bins. Each server adds
+ * its players to the bin it is in. When a server's players change, or it moves or is removed,
+ * only the difference is added to or taken from its bins, and those bins are marked as
+ * changed. The map is only sent the bins that changed since it was last sent any, so the
+ * heatmap can stay on while the servers are being refreshed.
+ * <p>
+ * The servers are kept by the type of their markers, like the markers themselves, so that the
+ * servers of one server list tab can be removed together.
+ *
+ */
+public class HeatmapGrid {
+
+	/** The size in degrees of the bins. */
+	public static final double BIN_SIZE = 0.5;
+	/** The number of rows of bins, from south to north. */
+	private static final int ROWS = (int) (180 / BIN_SIZE);
+	/** The number of columns of bins, from west to east. */
+	private static final int COLUMNS = (int) (360 / BIN_SIZE);
+
+	/** The players in each bin, by row and then column. */
+	private final int[] weights = new int[ROWS * COLUMNS];
+	/** Whether or not each bin has changed since the changes were last taken. */
+	private final boolean[] changed = new boolean[ROWS * COLUMNS];
+	/** The bins that have changed since the changes were last taken. */
+	private int[] changes = new int[256];
+	/** The number of bins in {@link #changes}. */
+	private int changeCount = 0;
+	/** The bin and players of each server, by marker type and then by server. */
+	private final HashMap<String, HashMap<String, int[]>> servers = new HashMap<String, HashMap<String, int[]>>();
+
+	/**
+	 * Sets the players of a server, replacing what the server added before.
+	 *
+	 * @param type the type of the server's marker
+	 * @param server the server, such as its "ip:queryport"
+	 * @param lat the latitude of the server
+	 * @param lon the longitude of the server
+	 * @param players the number of players on the server
+	 */
+	public synchronized void put(String type, String server, double lat, double lon, int players) {
+		HashMap<String, int[]> ofType = servers.get(type);
+		if ( ofType == null ) {
+			ofType = new HashMap<String, int[]>();
+			servers.put(type, ofType);
+		}
+		int bin = bin(lat, lon);
+		int[] old = ofType.get(server);
+		if ( old == null ) {
+			ofType.put(server, new int[] {bin, players});
+		} else {
+			if ( old[0] == bin && old[1] == players ) {
+				return;
+			}
+			add(old[0], -old[1]);
+			old[0] = bin;
+			old[1] = players;
+		}
+		add(bin, players);
+	}
+
+	/**
+	 * Removes all servers of a marker type.
+	 *
+	 * @param type the type of the markers
+	 */
+	public synchronized void clear(String type) {
+		HashMap<String, int[]> ofType = servers.remove(type);
+		if ( ofType == null ) {
+			return;
+		}
+		for ( int[] server : ofType.values() ) {
+			add(server[0], -server[1]);
+		}
+	}
+
+	/**
+	 * Removes the servers of a marker type that are not in a set of servers.
+	 *
+	 * @param type the type of the markers
+	 * @param keep the servers to keep
+	 */
+	public synchronized void retain(String type, Set<String> keep) {
+		HashMap<String, int[]> ofType = servers.get(type);
+		if ( ofType == null ) {
+			return;
+		}
+		for ( Iterator<Map.Entry<String, int[]>> it = ofType.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<String, int[]> server = it.next();
+			if ( !keep.contains(server.getKey()) ) {
+				add(server.getValue()[0], -server.getValue()[1]);
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Gets whether or not any bins have changed since the changes were last taken.
+	 *
+	 * @return true if bins have changed
+	 */
+	public synchronized boolean hasChanges() {
+		return changeCount > 0;
+	}
+
+	/**
+	 * Takes the bins that have changed since the changes were last taken.
+	 *
+	 * @return a JSON array of the bins, each with its index as "bin", the position of its
+	 * center, and its players as "weight"; a weight of 0 means the bin is empty
+	 */
+	public synchronized String takeChanges() {
+		StringBuilder json = new StringBuilder("[");
+		for ( int i = 0; i < changeCount; i++ ) {
+			int bin = changes[i];
+			changed[bin] = false;
+			if ( i > 0 ) {
+				json.append(',');
+			}
+			json.append("{\"bin\":").append(bin)
+					.append(",\"lat\":").append((bin / COLUMNS + 0.5) * BIN_SIZE - 90)
+					.append(",\"lon\":").append((bin % COLUMNS + 0.5) * BIN_SIZE - 180)
+					.append(",\"weight\":").append(weights[bin]).append('}');
+		}
+		changeCount = 0;
+		return json.append(']').toString();
+	}
+
+	/**
+	 * Adds players to a bin and marks it as changed.
+	 *
+	 * @param bin the bin
+	 * @param players the players to add, or a negative number to take them away
+	 */
+	private void add(int bin, int players) {
+		if ( players == 0 ) {
+			return;
+		}
+		weights[bin] += players;
+		if ( !changed[bin] ) {
+			changed[bin] = true;
+			if ( changeCount == changes.length ) {
+				changes = Arrays.copyOf(changes, changeCount * 2);
+			}
+			changes[changeCount++] = bin;
+		}
+	}
+
+	/**
+	 * Gets the bin of a position.
+	 *
+	 * @param lat the latitude
+	 * @param lon the longitude
+	 * @return the bin
+	 */
+	private static int bin(double lat, double lon) {
+		int row = Math.max(0, Math.min(ROWS - 1, (int) Math.floor((lat + 90) / BIN_SIZE)));
+		int column = Math.max(0, Math.min(COLUMNS - 1, (int) Math.floor((lon + 180) / BIN_SIZE)));
+		return row * COLUMNS + column;
+	}
+
+}
@@ -11,12 +11,12 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
 
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
@@ -44,15 +44,12 @@ import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.JToggleButton;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingWorker;
 import javax.swing.text.DefaultCaret;
 
 import netscape.javascript.JSObject;
 import test.ButtonTabComponent;
 
-import com.almworks.sqlite4java.SQLiteConnection;
-import com.almworks.sqlite4java.SQLiteException;
-import com.almworks.sqlite4java.SQLiteStatement;
-
 /**
  * 
  *The main class that creates the frame and all other components.
@@ -69,6 +66,10 @@ public class MainWindow {
 	private boolean firstTimeShown = true;
 	/** The message center at the bottom of the application to display messages to the user. */
 	protected JTextArea messageCenter;
+	/** The last lines of text in the message center. */
+	protected final MessageLog messageLog = new MessageLog(30);
+	/** Hands the server markers to the map in batches. */
+	protected final MapMarkers mapMarkers = new MapMarkers(this);
 	/** The currently queried list of normal servers. */
 	protected Vector<ChivServer> servers = new Vector<ChivServer>();
 	/** The currently queried list of beta servers. */
@@ -117,6 +118,14 @@ public class MainWindow {
 	protected JCheckBox chckbxServerHistory;
 	/** JToggleButton for the player heatmap on the map. */
 	private JToggleButton tglbtnTogglePlayerHeat;
+	/** The local database for favorites, history, settings, filters, and previously seen servers. */
+	protected BrowserDatabase db;
+	/** The history of the population of the servers. */
+	protected PopulationStore population;
+	/** The in-memory index of known servers by IP address and gameport. */
+	protected ServerIndex serverIndex = new ServerIndex();
+	/** Finds the queryports of servers that are not in the index by probing their hosts. */
+	protected QueryPortResolver queryPortResolver = new QueryPortResolver(serverIndex);
 
 	/**
 	 * Launch the application.
@@ -146,6 +155,16 @@ public class MainWindow {
 	 * Initialize the contents of the frame.
 	 */
 	private void initialize() {
+		db = new BrowserDatabase();
+		db.start();
+		population = new PopulationStore();
+		new Thread() {
+			@Override
+			public void run() {
+				serverIndex.load(db);
+			}
+		}.start();
+		
 		frmChivalryServers = new JFrame();
 		frmChivalryServers.addWindowListener(new WindowAdapter() {
 			@Override
@@ -174,9 +193,7 @@ public class MainWindow {
 		chckbxNormalServers.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				if ( chckbxNormalServers.isSelected() ) {
-						for ( ChivServer cs : servers ) {
-							addMarker(serverListTab, cs);
-						}
+					showMarkers(serverListTab);
 				} else {
 					removeMarkers(serverListTab);
 				}
@@ -189,9 +206,7 @@ public class MainWindow {
 		chckbxBetaServers.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				if ( chckbxBetaServers.isSelected() ) {
-					for ( ChivServer cs : serversBeta ) {
-						addMarker(serverListBetaTab, cs);
-					}
+					showMarkers(serverListBetaTab);
 				} else {
 					removeMarkers(serverListBetaTab);
 				}
@@ -204,9 +219,7 @@ public class MainWindow {
 		chckbxFavoriteServers.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				if ( chckbxFavoriteServers.isSelected() ) {
-					for ( ChivServer cs : serversFav ) {
-						addMarker(serverListFavTab, cs);
-					}
+					showMarkers(serverListFavTab);
 				} else {
 					removeMarkers(serverListFavTab);
 				}
@@ -219,17 +232,13 @@ public class MainWindow {
 		chckbxServerHistory.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				if ( chckbxServerHistory.isSelected() ) {
-					for ( ChivServer cs : serversHist ) {
-						addMarker(serverListHistoryTab, cs);
-					}
+					showMarkers(serverListHistoryTab);
 				} else {
 					removeMarkers(serverListHistoryTab);
 				}
 			}
 		});
 		mapSettingsPanel.add(chckbxServerHistory);
-		browserFxPanel = new JFXPanel();
-		browserFxPanel.setPreferredSize(new Dimension(1010, 535));
 		mapTab.add(mapSettingsPanel, BorderLayout.NORTH);
 		
 		tglbtnTogglePlayerHeat = new JToggleButton("Toggle Player Heat Map");
@@ -243,9 +252,20 @@ public class MainWindow {
 			}
 		});
 		mapSettingsPanel.add(tglbtnTogglePlayerHeat);
-		mapTab.add(browserFxPanel, BorderLayout.CENTER);
-		createScene();
 		tabbedPane.addTab("Map", null, mapTab, null);
+		// The map is only made the first time its tab is shown
+		tabbedPane.addChangeListener(new javax.swing.event.ChangeListener() {
+			@Override
+			public void stateChanged(javax.swing.event.ChangeEvent e) {
+				if ( tabbedPane.getSelectedComponent() == mapTab && browserFxPanel == null ) {
+					browserFxPanel = new JFXPanel();
+					browserFxPanel.setPreferredSize(new Dimension(1010, 535));
+					mapTab.add(browserFxPanel, BorderLayout.CENTER);
+					mapTab.revalidate();
+					createScene();
+				}
+			}
+		});
 		
 		serverListBetaTab = new ServerListBetaTab(this);
 		tabbedPane.addTab("Beta Server List", null, serverListBetaTab, null);
@@ -351,7 +371,7 @@ public class MainWindow {
 		messagePanel.setPreferredSize(new Dimension(mpwidth, 100));
 		messagePanel.setLayout(new BorderLayout(0, 0));
 		
-		messageCenter = new JTextArea();
+		messageCenter = new JTextArea(messageLog);
 		messageCenter.setEditable(false);
 		//these two lines make the jtextarea always update to the furthest position
 		DefaultCaret caret = (DefaultCaret)messageCenter.getCaret();
@@ -363,54 +383,35 @@ public class MainWindow {
 		messagePanel.add(messageScrollPane);
 		
 		if( firstTimeShown ) {
-			serverListTab.loadFilters();
-			serverListBetaTab.loadFilters();
-			serverListFavTab.loadFilters();
-			serverListHistoryTab.loadFilters();
-			serverListTab.RefreshServers();
+			serverListTab.loadFilters(true);
+			serverListBetaTab.loadFilters(false);
+			serverListFavTab.loadFilters(false);
+			serverListHistoryTab.loadFilters(false);
 			loadSettings();
 			firstTimeShown = false;
-			addMajorTabComponent();
 		}
 	}
 
 	/**
 	 * Prints a single line of text to the {@link MainWindow#messageCenter}
-	 * without adding a new line before it.
+	 * without adding a new line before it. This can be called from any thread.
 	 * 
 	 * @param msg the String to be printed
-	 * @see #checkMCBuffer()
+	 * @see MessageLog#print(String)
 	 */
 	public void printMC(String msg) {
-		checkMCBuffer();
-		messageCenter.append(msg);
+		messageLog.print(msg);
 	}
 	
 	/**
 	 * Prints a single line of text to the {@link MainWindow#messageCenter}
-	 * with adding a new line before it.
+	 * on a new line. This can be called from any thread.
 	 * 
 	 * @param msg the String to be printed
-	 * @see #checkMCBuffer()
+	 * @see MessageLog#println(String)
 	 */
 	public void printlnMC(String msg) {
-		checkMCBuffer();
-		messageCenter.append("\n" + msg);
-	}
-	
-	/**
-	 * Keeps the {@link MainWindow#messageCenter} at no more than 30 lines of text.
-	 */
-	public void checkMCBuffer() {
-		String mctext = messageCenter.getText();
-		String[] numlines = mctext.split("\\r?\\n");
-		if ( numlines.length > 30 ) {
-			int index = mctext.indexOf('\n');
-			if ( index > -1 ) {
-				mctext = mctext.substring(index);
-			}
-			messageCenter.setText(mctext);
-		}
+		messageLog.println(msg);
 	}
 	
 	/**
@@ -424,6 +425,12 @@ public class MainWindow {
 		serverListHistoryTab.saveFilters();
 		saveGameConfig();
 		saveSettings();
+		population.close();
+		try {
+			db.stop(true).join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
 		System.exit(0);
 	}
 	
@@ -531,21 +538,27 @@ public class MainWindow {
 	/**
 	 * Adds a new tab with details about a specific server. It looks up the
 	 * "ipaddress:gameport" combination from the database of previously seen
-	 * servers. If the server is not found, it does nothing.
+	 * servers in the background, and adds the tab once the server is found.
+	 * If the server is not found, it does nothing.
 	 * 
 	 * @param ip_port the "ipaddress:gameport" of the server
 	 * @param switchToTab whether or not to automatically switch to the new tab
+	 * @see #findServer(String, String, BrowserDatabase.Callback)
 	 * @see #addServerTab(ChivServer, boolean)
 	 */
-	public void addServerTab(String ip_port, boolean switchToTab) {
+	public void addServerTab(String ip_port, final boolean switchToTab) {
 		String ip = ip_port.split(":")[0];
 		String gameport = ip_port.split(":")[1];
-		ChivServer cs = getServerFromDB(ip, gameport);
-		if ( cs != null ) {
-			addServerTab(cs, switchToTab);
-		} else {
-			printlnMC("Server not found in database. Please refresh all servers to update the database.");
-		}
+		findServer(ip, gameport, new BrowserDatabase.Callback<ChivServer>() {
+			@Override
+			public void done(ChivServer cs) {
+				if ( cs != null ) {
+					addServerTab(cs, switchToTab);
+				} else {
+					printlnMC("Server not found in database. Please refresh all servers to update the database.");
+				}
+			}
+		});
 	}
 	
 	/**
@@ -607,117 +620,55 @@ public class MainWindow {
 		}
 	}
 	
+	/**
+	 * Called from the JavaScript in the map when it has been moved or zoomed, to send it the
+	 * marker clusters of the part that is shown.
+	 * 
+	 * @param zoom the zoom level
+	 * @param south the southern edge of the map
+	 * @param west the western edge of the map
+	 * @param north the northern edge of the map
+	 * @param east the eastern edge of the map
+	 * @see MapMarkers#setView(int, double, double, double, double)
+	 */
+	public void mapViewChanged(int zoom, double south, double west, double north, double east) {
+		mapMarkers.setView(zoom, south, west, north, east);
+	}
+	
 	/**
 	 * Adds a {@link ChivServer} as a favorite server to the database.
 	 * 
 	 * @param cs the {@link ChivServer} to add
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see BrowserDatabase#addFavorite(ChivServer, BrowserDatabase.Callback)
 	 */
-	public void addFavorite(ChivServer cs) {
-		
+	public void addFavorite(final ChivServer cs) {
 		printlnMC("Adding server to favorites...");
-		
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS favorite_servers" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"name varchar(255) not null default ''," +
-					"ip varchar(255) not null default ''," +
-					"port varchar(255) not null default '' )");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			//check if exists
-			int id = -1;
-			st = db.prepare("SELECT id FROM favorite_servers WHERE ip = '" + cs.mIP + "' AND  port = '" + cs.mQueryPort + "'");
-			try {
-				st.step();
-				if ( st.hasRow() ) {
-					id = st.columnInt(0);
-				}
-			} finally {
-				st.dispose();
-			}
-			
-			if ( id > -1 ) {
-				printlnMC("Server already a favorite.");
-				st = db.prepare("INSERT OR REPLACE INTO favorite_servers (id, name, ip, port) " +
-						"VALUES ( " + id + ",'" + cs.mName + "', '" + cs.mIP + "', '" + cs.mQueryPort + "' )");
-				try {
-					st.step();
-				} finally {
-					st.dispose();
-				}
-			} else {
-				st = db.prepare("INSERT INTO favorite_servers (name, ip, port) " +
-						"VALUES ('" + cs.mName + "', '" + cs.mIP + "', '" + cs.mQueryPort + "' )");
-				try {
-					st.step();
-				} finally {
-					st.dispose();
+		db.addFavorite(cs, new BrowserDatabase.Callback<Boolean>() {
+			@Override
+			public void done(Boolean added) {
+				if ( added ) {
+					printlnMC("Added to favorites: " + cs.mName);
+				} else {
+					printlnMC("Server already a favorite.");
 				}
-				printlnMC("Added to favorites: " + cs.mName);
 			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
+		});
 	}
 
 	/**
 	 * Removes a {@link ChivServer} from the favorites database.
 	 * 
 	 * @param cs the {@link ChivServer} to remove
-	 * @return if the server was successfully found and removed
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see BrowserDatabase#removeFavorite(ChivServer, BrowserDatabase.Callback)
 	 */
-	public boolean removeFavorite(ChivServer cs) {
-		boolean removed = false;
+	public void removeFavorite(final ChivServer cs) {
 		System.out.println("Removing from favorites...");
 		printlnMC("Removing server from favorites...");
 		
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS favorite_servers" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"name varchar(255) not null default ''," +
-					"ip varchar(255) not null default ''," +
-					"port varchar(255) not null default '' )");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			//check if exists
-			int id = -1;
-			st = db.prepare("SELECT id FROM favorite_servers WHERE ip = '" + cs.mIP + "' AND  port = '" + cs.mQueryPort + "'");
-			try {
-				st.step();
-				if ( st.hasRow() ) {
-					id = st.columnInt(0);
-				}
-			} finally {
-				st.dispose();
-			}
-			
-			if ( id > -1 ) {
-				st = db.prepare("DELETE FROM favorite_servers WHERE id = " + id);
-				try {
-					st.step();
-					
+		db.removeFavorite(cs, new BrowserDatabase.Callback<Boolean>() {
+			@Override
+			public void done(Boolean removed) {
+				if ( removed ) {
 					for ( int i=0; i<serversFav.size(); i++ ) {
 						ChivServer c = serversFav.get(i);
 						if ( cs.mIP.equals(c.mIP) && cs.mQueryPort.equals(c.mQueryPort) ) {
@@ -725,22 +676,12 @@ public class MainWindow {
 							break;
 						}
 					}
-					
 					printlnMC("Removed favorite: " + cs.mName);
-					removed = true;
-				} finally {
-					st.dispose();
+				} else {
+					printlnMC("Didn't find server in database. This is probably a bad thing.");
 				}
-			} else {
-				printlnMC("Didn't find server in database. This is probably a bad thing.");
 			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
-		
-		return removed;
+		});
 	}
 	
 	/**
@@ -769,109 +710,27 @@ public class MainWindow {
 	 * when the user joins a server.
 	 * 
 	 * @param cs the {@link ChivServer} to add
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see BrowserDatabase#addServerToHistory(ChivServer)
 	 */
 	public void addServerToHistory(ChivServer cs) {
 		System.out.println("Adding server to history list.");
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS server_history" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"name varchar(255) not null default ''," +
-					"ip varchar(255) not null default ''," +
-					"port varchar(255) not null default '' )");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			//check if exists
-			int id = -1;
-			st = db.prepare("SELECT id FROM server_history WHERE ip = '" + cs.mIP + "' AND  port = '" + cs.mQueryPort + "'");
-			try {
-				st.step();
-				if ( st.hasRow() ) {
-					id = st.columnInt(0);
-				}
-			} finally {
-				st.dispose();
-			}
-			
-			if ( id > -1 ) {
-				st = db.prepare("INSERT OR REPLACE INTO server_history (id, name, ip, port) " +
-						"VALUES ( " + id + ",'" + cs.mName + "', '" + cs.mIP + "', '" + cs.mQueryPort + "' )");
-				try {
-					st.step();
-				} finally {
-					st.dispose();
-				}
-			} else {
-				st = db.prepare("INSERT INTO server_history (name, ip, port) " +
-						"VALUES ('" + cs.mName + "', '" + cs.mIP + "', '" + cs.mQueryPort + "' )");
-				try {
-					st.step();
-				} finally {
-					st.dispose();
-				}
-			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
+		db.addServerToHistory(cs);
 	}
 	
 	/**
 	 * Removes a {@link ChivServer} from the history database.
 	 * 
 	 * @param cs the {@link ChivServer} to remove
-	 * @return if the {@link ChivServer} was successfully found and removed
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see BrowserDatabase#removeServerFromHistory(ChivServer, BrowserDatabase.Callback)
 	 */
-	public boolean removeServerFromHistory(ChivServer cs) {
-		boolean removed = false;
+	public void removeServerFromHistory(final ChivServer cs) {
 		System.out.println("Removing from history...");
 		printlnMC("Removing server from history...");
 		
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS server_history" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"name varchar(255) not null default ''," +
-					"ip varchar(255) not null default ''," +
-					"port varchar(255) not null default '' )");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			//check if exists
-			int id = -1;
-			st = db.prepare("SELECT id FROM server_history WHERE ip = '" + cs.mIP + "' AND  port = '" + cs.mQueryPort + "'");
-			try {
-				st.step();
-				if ( st.hasRow() ) {
-					id = st.columnInt(0);
-				}
-			} finally {
-				st.dispose();
-			}
-			
-			if ( id > -1 ) {
-				st = db.prepare("DELETE FROM server_history WHERE id = " + id);
-				try {
-					st.step();
-					
+		db.removeServerFromHistory(cs, new BrowserDatabase.Callback<Boolean>() {
+			@Override
+			public void done(Boolean removed) {
+				if ( removed ) {
 					for ( int i=0; i<serversFav.size(); i++ ) {
 						ChivServer c = serversFav.get(i);
 						if ( cs.mIP.equals(c.mIP) && cs.mQueryPort.equals(c.mQueryPort) ) {
@@ -879,22 +738,12 @@ public class MainWindow {
 							break;
 						}
 					}
-					
 					printlnMC("Removed history: " + cs.mName);
-					removed = true;
-				} finally {
-					st.dispose();
+				} else {
+					printlnMC("Didn't find server in database. This is probably a bad thing.");
 				}
-			} else {
-				printlnMC("Didn't find server in database. This is probably a bad thing.");
 			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
-		
-		return removed;
+		});
 	}
 
 	/**
@@ -994,230 +843,94 @@ public class MainWindow {
 	}
 	
 	/**
-	 * Loads the application settings from the database.
+	 * Loads the application settings from the database without blocking the event dispatch
+	 * thread. Once they are applied the standard tabs get their close buttons.
 	 * 
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see BrowserDatabase#loadSettings(BrowserDatabase.Callback)
+	 * @see #addMajorTabComponent()
 	 */
 	public void loadSettings() {
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS settings" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"steam_url varchar(255) not null default ''," +
-					"show_chiv_only int not null default 1," +
-					"servers_beta_visible int not null default 1," +
-					"servers_fav_visible int not null default 1," +
-					"servers_hist_visible int not null default 1," +
-					"friends_visible int not null default 1," +
-					"map_visible int not null default 1," +
-					"map_normal_chckbox int not null default 1," +
-					"map_beta_chckbox int not null default 1," +
-					"map_favorite_chckbox int not null default 1," +
-					"map_history_chckbox int not null default 1," +
-					"settings_visible int not null default 1," +
-					"launch_opt_window int not null default 0," +
-					"launch_opt_resx varchar (255) not null default ''," +
-					"launch_opt_resy varchar (255) not null default ''," +
-					"launch_opt_enable int not null default 0," +
-					"gamepad_visible int not null default 1" +
-					")");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			st = db.prepare("SELECT * FROM settings WHERE id = 1 ");
-			try {
-				st.step();
-				if ( st.hasRow() ) {
-					friendsTab.urlField.setText(st.columnString(1));
-					settingsTab.tfSteamCommunityUrl.setText(st.columnString(1));
-					if ( st.columnInt(2) == 1 ) {
-						friendsTab.chckbxInChiv.setSelected(true);
-					} else {
-						friendsTab.chckbxInChiv.setSelected(false);
-					}
-					if ( st.columnInt(3) == 0 ) {
-						tabbedPane.remove(serverListBetaTab);
-					}
-					if ( st.columnInt(4) == 0 ) {
-						tabbedPane.remove(serverListFavTab);
-					}
-					if ( st.columnInt(5) == 0 ) {
-						tabbedPane.remove(serverListHistoryTab);
-					}
-					if ( st.columnInt(6) == 0 ) {
-						tabbedPane.remove(friendsTab);
-					}
-					if ( st.columnInt(8) == 1 ) {
-						chckbxNormalServers.setSelected(true);
-					} else {
-						chckbxNormalServers.setSelected(false);
-					}
-					if ( st.columnInt(9) == 1 ) {
-						chckbxBetaServers.setSelected(true);
-					} else {
-						chckbxBetaServers.setSelected(false);
-					}
-					if ( st.columnInt(10) == 1 ) {
-						chckbxFavoriteServers.setSelected(true);
-					} else {
-						chckbxFavoriteServers.setSelected(false);
-					}
-					if ( st.columnInt(11) == 1 ) {
-						chckbxServerHistory.setSelected(true);
-					} else {
-						chckbxServerHistory.setSelected(false);
-					}
-					if ( st.columnInt(12) == 0 ) {
-						tabbedPane.remove(settingsTab);
-					}
-					settingsTab.cbScreen.setSelectedIndex(st.columnInt(13));
-					settingsTab.tfLaunchResX.setText(st.columnString(14));
-					settingsTab.tfLaunchResY.setText(st.columnString(15));
-					if ( st.columnInt(16) == 1 ) {
-						settingsTab.tglbtnEnableLaunchOptions.setSelected(true);
-					} else {
-						settingsTab.tglbtnEnableLaunchOptions.setSelected(false);
-					}
-					if ( st.columnInt(17) == 0 ) {
-						tabbedPane.remove(gamepadKeybindTab);
-					}
+		db.loadSettings(new BrowserDatabase.Callback<BrowserSettings>() {
+			@Override
+			public void done(BrowserSettings s) {
+				if ( s != null ) {
+					applySettings(s);
 				}
-			} finally {
-				st.dispose();
+				addMajorTabComponent();
 			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
+		});
+	}
+	
+	/**
+	 * Applies loaded application settings to the tabs and their components.
+	 * 
+	 * @param s the settings
+	 */
+	private void applySettings(BrowserSettings s) {
+		friendsTab.urlField.setText(s.steamUrl);
+		settingsTab.tfSteamCommunityUrl.setText(s.steamUrl);
+		settingsTab.tfSteamApiKey.setText(s.steamApiKey);
+		friendsTab.chckbxInChiv.setSelected(s.showChivOnly);
+		if ( !s.serversBetaVisible ) {
+			tabbedPane.remove(serverListBetaTab);
+		}
+		if ( !s.serversFavVisible ) {
+			tabbedPane.remove(serverListFavTab);
+		}
+		if ( !s.serversHistVisible ) {
+			tabbedPane.remove(serverListHistoryTab);
+		}
+		if ( !s.friendsVisible ) {
+			tabbedPane.remove(friendsTab);
+		}
+		chckbxNormalServers.setSelected(s.mapNormalChckbox);
+		chckbxBetaServers.setSelected(s.mapBetaChckbox);
+		chckbxFavoriteServers.setSelected(s.mapFavoriteChckbox);
+		chckbxServerHistory.setSelected(s.mapHistoryChckbox);
+		if ( !s.settingsVisible ) {
+			tabbedPane.remove(settingsTab);
+		}
+		settingsTab.cbScreen.setSelectedIndex(s.launchOptWindow);
+		settingsTab.tfLaunchResX.setText(s.launchOptResX);
+		settingsTab.tfLaunchResY.setText(s.launchOptResY);
+		settingsTab.tglbtnEnableLaunchOptions.setSelected(s.launchOptEnable);
+		if ( !s.gamepadVisible ) {
+			tabbedPane.remove(gamepadKeybindTab);
 		}
-		db.dispose();
 	}
 
 	/**
 	 * Saves the application settings to the database.
 	 * 
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see BrowserDatabase#saveSettings(BrowserSettings)
 	 */
 	public void saveSettings() {
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS settings" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"steam_url varchar(255) not null default ''," +
-					"show_chiv_only int not null default 1," +
-					"servers_beta_visible int not null default 1," +
-					"servers_fav_visible int not null default 1," +
-					"servers_hist_visible int not null default 1," +
-					"friends_visible int not null default 1," +
-					"map_visible int not null default 1," +
-					"map_normal_chckbox int not null default 1," +
-					"map_beta_chckbox int not null default 1," +
-					"map_favorite_chckbox int not null default 1," +
-					"map_history_chckbox int not null default 1," +
-					"settings_visible int not null default 1," +
-					"launch_opt_window int not null default 0," +
-					"launch_opt_resx varchar (255) not null default ''," +
-					"launch_opt_resy varchar (255) not null default ''," +
-					"launch_opt_enable int not null default 0," +
-					"gamepad_visible int not null default 1" +
-					")");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			String steamURL = friendsTab.urlField.getText();
-			int showChivOnly = 1;
-			if ( !friendsTab.chckbxInChiv.isSelected() ) {
-				showChivOnly = 0;
-			}
-			int beta_visible = 1;
-			if ( tabbedPane.indexOfComponent(serverListBetaTab) < 0 ) {
-				beta_visible = 0;
-			}
-			int fav_visible = 1;
-			if ( tabbedPane.indexOfComponent(serverListFavTab) < 0 ) {
-				fav_visible = 0;
-			}
-			int hist_visible = 1;
-			if ( tabbedPane.indexOfComponent(serverListHistoryTab) < 0 ) {
-				hist_visible = 0;
-			}
-			int friends_visible = 1;
-			if ( tabbedPane.indexOfComponent(friendsTab) < 0 ) {
-				friends_visible = 0;
-			}
-			int settings_visible = 1;
-			if ( tabbedPane.indexOfComponent(settingsTab) < 0 ) {
-				settings_visible = 0;
-			}
-			int map_visible = 1;
-			if ( tabbedPane.indexOfComponent(mapTab) < 0 ) {
-				//map_visible = 0;
-			}
-			int gamepad_visible = 1;
-			if ( tabbedPane.indexOfComponent(gamepadKeybindTab) < 0 ) {
-				gamepad_visible = 0;
-			}
-			int map_normal_chckbox = 1;
-			if ( !chckbxNormalServers.isSelected() ) {
-				map_normal_chckbox = 0;
-			}
-			int map_beta_chckbox = 1;
-			if ( !chckbxBetaServers.isSelected() ) {
-				map_beta_chckbox = 0;
-			}
-			int map_favorite_chckbox = 1;
-			if ( !chckbxFavoriteServers.isSelected() ) {
-				map_favorite_chckbox = 0;
-			}
-			int map_history_chckbox = 1;
-			if ( !chckbxServerHistory.isSelected() ) {
-				map_history_chckbox = 0;
-			}
-			int launch_opt_enable = 0;
-			if ( settingsTab.tglbtnEnableLaunchOptions.isSelected() ) {
-				launch_opt_enable = 1;
-			}
-			
-			st = db.prepare("INSERT OR REPLACE INTO settings (id, steam_url, show_chiv_only, " +
-					"servers_beta_visible, servers_fav_visible, servers_hist_visible, friends_visible, " +
-					"settings_visible, map_visible, map_normal_chckbox, map_beta_chckbox, " +
-					"map_favorite_chckbox, map_history_chckbox, launch_opt_window, launch_opt_resx, " +
-					"launch_opt_resy, launch_opt_enable, gamepad_visible) " +
-					"VALUES (  1, '" + steamURL + "', " + showChivOnly + ", " + beta_visible + 
-					", " + fav_visible + ", " + hist_visible + ", " + friends_visible + ", " + 
-					settings_visible + ", " + map_visible + ", " + map_normal_chckbox + ", " + 
-					map_beta_chckbox + ", " + map_favorite_chckbox + ", " + map_history_chckbox +
-					", " + settingsTab.cbScreen.getSelectedIndex() + ", '" + settingsTab.tfLaunchResX.getText() +
-					"', '" + settingsTab.tfLaunchResY.getText() + "', " + launch_opt_enable + ", " +
-					gamepad_visible + ")");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
+		BrowserSettings s = new BrowserSettings();
+		s.steamUrl = friendsTab.urlField.getText();
+		s.showChivOnly = friendsTab.chckbxInChiv.isSelected();
+		s.steamApiKey = settingsTab.tfSteamApiKey.getText().trim();
+		s.serversBetaVisible = tabbedPane.indexOfComponent(serverListBetaTab) > -1;
+		s.serversFavVisible = tabbedPane.indexOfComponent(serverListFavTab) > -1;
+		s.serversHistVisible = tabbedPane.indexOfComponent(serverListHistoryTab) > -1;
+		s.friendsVisible = tabbedPane.indexOfComponent(friendsTab) > -1;
+		s.settingsVisible = tabbedPane.indexOfComponent(settingsTab) > -1;
+		s.mapVisible = true;
+		s.gamepadVisible = tabbedPane.indexOfComponent(gamepadKeybindTab) > -1;
+		s.mapNormalChckbox = chckbxNormalServers.isSelected();
+		s.mapBetaChckbox = chckbxBetaServers.isSelected();
+		s.mapFavoriteChckbox = chckbxFavoriteServers.isSelected();
+		s.mapHistoryChckbox = chckbxServerHistory.isSelected();
+		s.launchOptWindow = settingsTab.cbScreen.getSelectedIndex();
+		s.launchOptResX = settingsTab.tfLaunchResX.getText();
+		s.launchOptResY = settingsTab.tfLaunchResY.getText();
+		s.launchOptEnable = settingsTab.tglbtnEnableLaunchOptions.isSelected();
+		db.saveSettings(s);
 	}
 
 	/**
 	 * Creates the JavaFX scene for the Map tab. It creates a new {@link WebEngine} and loads the
-	 * map.html resource.
+	 * map.html resource. This is done the first time the Map tab is shown; until the map has
+	 * loaded, its markers are kept by {@link MapMarkers}.
 	 * 
 	 * @see WebView
 	 * @see JSObject#setMember(String, Object)
@@ -1237,13 +950,22 @@ public class MainWindow {
 		            		webEngine.executeScript("javacall('helloworld')");
 		            	}
 		            	if ( ev.getData().equals("loaded") ) {
-		            		HashMap<String, String> loc = getLoc();
-		            		String lat = loc.get("latitude");
-		            		String lon = loc.get("longitude");
-		            		String func = "addUserLoc('" + lat + "', '" + lon + "')";
-		            		if ( !lat.equals("") && !lon.equals("") ) {
-		            			webEngine.executeScript(func);
-		            		}
+		            		mapMarkers.mapLoaded();
+		            		// Looks up the user's location off the JavaFX thread, which draws the map
+		            		new Thread() {
+		            			@Override
+		            			public void run() {
+		            				HashMap<String, String> loc = getLoc();
+		            				if ( loc == null ) {
+		            					return;
+		            				}
+		            				String lat = loc.get("latitude");
+		            				String lon = loc.get("longitude");
+		            				if ( lat != null && lon != null && !lat.equals("") && !lon.equals("") ) {
+		            					mapMarkers.executeScript("addUserLoc('" + lat + "', '" + lon + "')");
+		            				}
+		            			}
+		            		}.start();
 		            	}
 		            }
 		        });
@@ -1302,27 +1024,105 @@ public class MainWindow {
 	 * Removes all markers from the map from servers found in the server list tab.
 	 * 
 	 * @param sl the {@link ServerListInterface} with the markers to remove from the map
-	 * @see WebEngine#executeScript(String)
+	 * @see MapMarkers#clearMarkers(String)
 	 */
 	public void removeMarkers(final ServerListInterface sl) {
-		Platform.runLater(new Runnable() {
-			@Override
-			public void run() {
-				String func = "";
-				if ( sl == serverListTab ) {
-					func = "clearMarkers('n')";
-				} else if ( sl == serverListBetaTab ) {
-					func = "clearMarkers('b')";
-				} else if ( sl == serverListFavTab ) {
-					func = "clearMarkers('f')";
-				} else if ( sl == serverListHistoryTab ) {
-					func = "clearMarkers('h')";
-				}
-				if ( !func.equals("") ) {
-					webEngine.executeScript(func);
+		String type = markerType(sl);
+		if ( type != null ) {
+			mapMarkers.clearMarkers(type);
+		}
+	}
+	
+	/**
+	 * Starts refreshing the markers of a server list tab's servers. The markers stay on the map
+	 * until {@link #endMarkerRefresh(ServerListInterface)}, which removes those of the servers
+	 * that were not added again.
+	 * 
+	 * @param sl the {@link ServerListInterface} whose markers are being refreshed
+	 * @see MapMarkers#beginRefresh(String)
+	 */
+	public void beginMarkerRefresh(ServerListInterface sl) {
+		String type = markerType(sl);
+		if ( type != null ) {
+			mapMarkers.beginRefresh(type);
+		}
+	}
+	
+	/**
+	 * Finishes refreshing the markers of a server list tab's servers, and removes the markers of
+	 * the servers that were not added since {@link #beginMarkerRefresh(ServerListInterface)}.
+	 * 
+	 * @param sl the {@link ServerListInterface} whose markers were refreshed
+	 * @see MapMarkers#endRefresh(String)
+	 */
+	public void endMarkerRefresh(ServerListInterface sl) {
+		String type = markerType(sl);
+		if ( type != null ) {
+			mapMarkers.endRefresh(type);
+		}
+	}
+	
+	/**
+	 * Gets the type of the markers of a server list tab's servers in the map.
+	 * 
+	 * @param sl the {@link ServerListInterface}
+	 * @return "n", "b", "f" or "h"; or null if the tab's servers are not shown in the map
+	 */
+	private String markerType(ServerListInterface sl) {
+		if ( sl == serverListTab ) {
+			return "n";
+		} else if ( sl == serverListBetaTab ) {
+			return "b";
+		} else if ( sl == serverListFavTab ) {
+			return "f";
+		} else if ( sl == serverListHistoryTab ) {
+			return "h";
+		}
+		return null;
+	}
+	
+	/**
+	 * Replaces the markers of a server list tab's servers with markers for those that pass its
+	 * server filters, if the map shows that tab's servers.
+	 * 
+	 * @param sl the {@link ServerListInterface} whose markers to show
+	 * @see ServerFilters#matches(ChivServer)
+	 */
+	public void showMarkers(ServerListInterface sl) {
+		if ( !isShownInMap(sl) || sl.getServerList() == null ) {
+			removeMarkers(sl);
+			return;
+		}
+		beginMarkerRefresh(sl);
+		ServerFilters filters = sl.getFilters().copy();
+		Vector<ChivServer> list = sl.getServerList();
+		synchronized ( list ) {
+			for ( ChivServer cs : list ) {
+				if ( filters.matches(cs) ) {
+					addMarker(sl, cs);
 				}
 			}
-		});
+		}
+		endMarkerRefresh(sl);
+	}
+	
+	/**
+	 * Gets whether or not the map is set to show the servers of a server list tab.
+	 * 
+	 * @param sl the {@link ServerListInterface}
+	 * @return true if its map check box is selected
+	 */
+	private boolean isShownInMap(ServerListInterface sl) {
+		if ( sl == serverListTab ) {
+			return chckbxNormalServers.isSelected();
+		} else if ( sl == serverListBetaTab ) {
+			return chckbxBetaServers.isSelected();
+		} else if ( sl == serverListFavTab ) {
+			return chckbxFavoriteServers.isSelected();
+		} else if ( sl == serverListHistoryTab ) {
+			return chckbxServerHistory.isSelected();
+		}
+		return false;
 	}
 	
 	/**
@@ -1330,51 +1130,12 @@ public class MainWindow {
 	 * 
 	 * @param sl the {@link ServerListInterface} that the {@link ChivServer} came from
 	 * @param cs the {@link ChivServer} to add to the map as a marker
-	 * @see WebEngine#executeScript(String)
+	 * @see MapMarkers#addMarker(String, ChivServer)
 	 */
 	public void addMarker(final ServerListInterface sl, final ChivServer cs) {
-		if ( !cs.mLatitude.equals("") && !cs.mLongitude.equals("") ) {
-			Platform.runLater(new Runnable() {
-				@Override
-				public void run() {
-					String title = cs.mName;
-					String hasPassword = "No";
-					if ( cs.mHasPassword.equals("1") ) {
-						hasPassword = "Yes";
-					}
-					String html = "<p>" + cs.mName + "</p>" +
-							"<a href='javascript:joinServer(\\\"" + cs.mIP + "\\\", \\\"" + cs.mQueryPort + "\\\")'>" +
-							"Connect to server: " + cs.mIP + ":" + cs.mGamePort + "</a>" +
-							"<p>Map: " + cs.mMap + "</p>" +
-							"<p>Players: " + cs.mCurrentPlayers + " / " + cs.mMaxPlayers + "</p>" +
-							"<p>Ping: " + cs.mPing + "<span style='float:right'>Password: " + hasPassword + "</span></p>";
-					String func = "";
-					if ( sl == serverListTab ) {
-						html += "<a href='javascript:moreInfoTab(\\\"" + cs.mIP + ":" + cs.mGamePort +
-								"\\\", \\\"n\\\")'>More info</a>";
-						func = "addMarker('" + cs.mLatitude + "', '" + cs.mLongitude + "', '" + "n" +
-								"', \"" + title + "\", \"" + html + "\", " + cs.mCurrentPlayers + ")";
-					} else if ( sl == serverListBetaTab ) {
-						html += "<a href='javascript:moreInfoTab(\\\"" + cs.mIP + ":" + cs.mGamePort +
-								"\\\", \\\"b\\\")'>More info</a>";
-						func = "addMarker('" + cs.mLatitude + "', '" + cs.mLongitude + "', '" + "b" +
-								"', \"" + title + "\", \"" + html + "\", " + cs.mCurrentPlayers + ")";
-					} else if ( sl == serverListFavTab ) {
-						html += "<a href='javascript:moreInfoTab(\\\"" + cs.mIP + ":" + cs.mGamePort +
-								"\\\", \\\"f\\\")'>More info</a>";
-						func = "addMarker('" + cs.mLatitude + "', '" + cs.mLongitude + "', '" + "f" +
-								"', \"" + title + "\", \"" + html + "\", " + cs.mCurrentPlayers + ")";
-					} else if ( sl == serverListHistoryTab ) {
-						html += "<a href='javascript:moreInfoTab(\\\"" + cs.mIP + ":" + cs.mGamePort +
-								"\\\", \\\"h\\\")'>More info</a>";
-						func = "addMarker('" + cs.mLatitude + "', '" + cs.mLongitude + "', '" + "h" +
-								"', \"" + title + "\", \"" + html + "\", " + cs.mCurrentPlayers + ")";
-					}
-					if ( !func.equals("") ) {
-						webEngine.executeScript(func);
-					}
-				}
-			});
+		String type = markerType(sl);
+		if ( type != null ) {
+			mapMarkers.addMarker(type, cs);
 		}
 	}
 	
@@ -1382,66 +1143,35 @@ public class MainWindow {
 	 * Shows a specific {@link ChivServer} on the map as a white marker.
 	 * 
 	 * @param cs the {@link ChivServer} to show
-	 * @see WebEngine#executeScript(String)
+	 * @see MapMarkers#addMarker(String, ChivServer)
 	 */
 	public void showInMap(final ChivServer cs) {
 		mapShownServer = cs;
-		Platform.runLater(new Runnable() {
-			@Override
-			public void run() {
-				String title = cs.mName;
-				String hasPassword = "No";
-				if ( cs.mHasPassword.equals("1") ) {
-					hasPassword = "Yes";
-				}
-				String html = "<p>" + cs.mName + "</p>" +
-						"<a href='javascript:joinServer(\\\"" + cs.mIP + "\\\", \\\"" + cs.mQueryPort + "\\\")'>" +
-						"Connect to server: " + cs.mIP + ":" + cs.mGamePort + "</a>" +
-						"<p>Map: " + cs.mMap + "</p>" +
-						"<p>Players: " + cs.mCurrentPlayers + " / " + cs.mMaxPlayers + "</p>" +
-						"<p>Ping: " + cs.mPing + "<span style='float:right'>Password: " + hasPassword + "</span></p>" +
-						"<a href='javascript:moreInfoTab(\\\"" + cs.mIP + ":" + cs.mGamePort +
-						"\\\", \\\"s\\\")'>More info</a>";
-				String func = "addMarker('" + cs.mLatitude + "', '" + cs.mLongitude + "', '" + "s" +
-						"', \"" + title + "\", \"" + html + "\", " + cs.mCurrentPlayers + ")";
-				webEngine.executeScript(func);
-				func = "showIW()";
-				webEngine.executeScript(func);
-			}
-		});
+		mapMarkers.addMarker("s", cs);
+		mapMarkers.executeScript("showIW()");
 		tabbedPane.setSelectedComponent(mapTab);
 	}
 	
 	/**
 	 * Enables the player heatmap on the map.
 	 * 
-	 * @see WebEngine#executeScript(String)
+	 * @see MapMarkers#executeScript(String)
 	 * @see "https://developers.google.com/maps/documentation/javascript/reference#HeatmapLayer"
 	 */
 	public void enablePlayerHeatMap() {
 		System.out.println("enable player heat map called");
-		Platform.runLater(new Runnable() {
-			@Override
-			public void run() {
-				webEngine.executeScript("enablePlayerHeatMap()");
-			}
-		});
+		mapMarkers.executeScript("enablePlayerHeatMap()");
 	}
 	
 	/**
 	 * Disables the player heatmap on the map.
 	 * 
-	 * @see WebEngine#executeScript(String)
+	 * @see MapMarkers#executeScript(String)
 	 * @see "https://developers.google.com/maps/documentation/javascript/reference#HeatmapLayer"
 	 */
 	public void disablePlayerHeatMap() {
 		System.out.println("disable player heat map called");
-		Platform.runLater(new Runnable() {
-			@Override
-			public void run() {
-				webEngine.executeScript("disablePlayerHeatMap()");
-			}
-		});
+		mapMarkers.executeScript("disablePlayerHeatMap()");
 	}
 	
 	/**
@@ -1475,53 +1205,10 @@ public class MainWindow {
 	 * Adds a server found during a refresh to the database. If the server already exists, this does nothing.
 	 * 
 	 * @param cs the {@link ChivServer} to add to the database
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see BrowserDatabase#addServer(ChivServer)
 	 */
 	public void addServerToDatabase(ChivServer cs) {
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS servers" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"ip varchar(255) not null default ''," +
-					"queryport varchar(255) not null default ''," +
-					"gameport varchar(255) not null default ''" +
-					")");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			st = db.prepare("SELECT id FROM servers WHERE ip = '" + cs.mIP + "' AND queryport = '" + cs.mQueryPort +
-					"' AND gameport = '" + cs.mGamePort + "'");
-			boolean exists = false;
-			try {
-				st.step();
-				if ( st.hasRow() ) {
-					exists = true;
-				}
-			} finally {
-				st.dispose();
-			}
-			
-			if ( !exists ) {
-				st = db.prepare("INSERT INTO servers (ip, queryport, gameport) VALUES ( '" + cs.mIP + "', '" +
-						cs.mQueryPort + "', '" + cs.mGamePort + "')");
-				try {
-					st.step();
-				} finally {
-					st.dispose();
-				}
-			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
+		db.addServer(cs);
 	}
 	
 	/**
@@ -1530,86 +1217,90 @@ public class MainWindow {
 	 * for more information. This method uses {@link MainWindow#servers} to update the database.
 	 */
 	public void updateServerDB() {
-		if ( mw.servers != null ) {
-			new Thread() {
-				@Override
-				public void run() {
-					@SuppressWarnings("unchecked")
-					Vector<ChivServer> serversCopy = (Vector<ChivServer>) mw.servers.clone();
-					for ( ChivServer cs : serversCopy ) {
-						addServerToDatabase(cs);
-					}
-				}
-			}.start();
-		}
+		updateServerDB(mw.servers);
 	}
 	
 	/**
 	 * Updates the database of servers found during a refresh. These are used for looking up server
 	 * ip addresses and gameports from the Friends tab to find the queryport to query the server
-	 * for more information.
+	 * for more information. The whole refresh is written in a single transaction on the database thread.
 	 * 
 	 * @param s the {@link Vector} of {@link ChivServer} to update into the database
+	 * @see BrowserDatabase#addServers(java.util.Collection)
 	 */
-	public void updateServerDB(final Vector<ChivServer> s) {
+	public void updateServerDB(Vector<ChivServer> s) {
 		if ( s != null ) {
-			new Thread() {
-				@Override
-				public void run() {
-					for ( ChivServer cs : s ) {
-						addServerToDatabase(cs);
-					}
-				}
-			}.start();
+			db.addServers(s);
 		}
 	}
 	
 	/**
-	 * Searches the database for a server matching the ip address and gameport to find the
-	 * associated queryport.
+	 * Finds a server by its ip address and gameport. A fresh snapshot from the
+	 * {@link ServerIndex} is returned as is; otherwise the server's queryport is looked up
+	 * and the server is queried for its current information. A server that is not known at
+	 * all is looked for on its host by the {@link QueryPortResolver} and added to the database.
+	 * <p>
+	 * This can block for the probe and the query, so it must not be called on the event
+	 * dispatch thread; use {@link #findServer(String, String, BrowserDatabase.Callback)} there.
 	 * 
 	 * @param ip the ip address of the server
 	 * @param gameport the gameport of the server
 	 * @return returns the {@link ChivServer}; or null if not found
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see ServerIndex#getFresh(String, String)
 	 */
 	public ChivServer getServerFromDB(String ip, String gameport) {
-		String queryport = "";
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS servers" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"ip varchar(255) not null default ''," +
-					"queryport varchar(255) not null default ''," +
-					"gameport varchar(255) not null default ''" +
-					")");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			st = db.prepare("SELECT queryport FROM servers WHERE ip = '" + ip + "' AND gameport = '" + gameport + "'");	
-			try {
-				st.step();
-				if ( st.hasRow() ) {
-					queryport = st.columnString(0);
-				}
-			} finally {
-				st.dispose();
+		ChivServer cs = serverIndex.getFresh(ip, gameport);
+		if ( cs != null ) {
+			return cs;
+		}
+		String queryport = serverIndex.getQueryPort(ip, gameport);
+		if ( queryport == null && !serverIndex.isLoaded() ) {
+			queryport = db.getQueryPort(ip, gameport);
+		}
+		boolean resolved = false;
+		if ( queryport == null || queryport.equals("") ) {
+			queryport = queryPortResolver.resolve(ip, gameport);
+			if ( queryport == null ) {
+				return null;
 			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
+			resolved = true;
 		}
-		db.dispose();
-		if ( !queryport.equals("") ) {
-			return ChivServer.createChivServer(mw, ip, Integer.parseInt(queryport));
+		cs = ChivServer.createChivServer(mw, ip, Integer.parseInt(queryport));
+		serverIndex.update(cs);
+		if ( resolved && cs != null ) {
+			db.addServer(cs);
 		}
-		return null;
+		return cs;
+	}
+
+	/**
+	 * Finds a server by its ip address and gameport like
+	 * {@link #getServerFromDB(String, String)}, but on a background thread, since that can
+	 * probe the server's host and query the server. The callback is called on the event
+	 * dispatch thread.
+	 * 
+	 * @param ip the ip address of the server
+	 * @param gameport the gameport of the server
+	 * @param callback called with the {@link ChivServer}, or null if it was not found
+	 */
+	public void findServer(final String ip, final String gameport, final BrowserDatabase.Callback<ChivServer> callback) {
+		new SwingWorker<ChivServer, Void>() {
+			@Override
+			protected ChivServer doInBackground() {
+				return getServerFromDB(ip, gameport);
+			}
+			
+			@Override
+			protected void done() {
+				ChivServer cs = null;
+				try {
+					cs = get();
+				} catch (InterruptedException | ExecutionException e) {
+					e.printStackTrace();
+				}
+				callback.done(cs);
+			}
+		}.execute();
 	}
 
 	/**
@@ -0,0 +1,291 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import javafx.application.Platform;
+import javafx.scene.web.WebEngine;
+
+import org.json.JSONObject;
+
+/**
+ *
+ * Hands the server markers to the map in batches. Each marker is turned into a JSON object of
+ * the server's data where it is added, and the markers added within a frame are handed to the
+ * map's <code>addMarkers</code> function as one JSON array, in one
+ * {@link WebEngine#executeScript(String)}. The map builds the marker popups from the data, so
+ * no HTML is put together or escaped here.
+ * <p>
+ * Other calls to the map that must keep their order with the markers go through the same
+ * queue with {@link #executeScript(String)}.
+ * <p>
+ * The markers of the server list tabs are not sent one by one but kept in a
+ * {@link MarkerClusterer}, by their servers' "ip:queryport". Whenever they or the part of the
+ * map that is shown change, the map's <code>updateMarkers</code> function is sent the clusters
+ * and servers of that part of the map that changed, at most once per frame. A server's ping,
+ * which changes with every query, does not make its marker change, and is only sent along when
+ * the marker is. Only the single server shown with "Show server in map" is sent as it is.
+ * <p>
+ * Refreshing a server list does not clear its markers. {@link #beginRefresh(String)} starts
+ * noting the servers that are added again, and {@link #endRefresh(String)} removes the markers
+ * of the servers that were not, so the markers of servers that are still there stay on the map
+ * and are only changed where their data changed.
+ * <p>
+ * The players of the same servers are kept in a {@link HeatmapGrid}, and the bins of the
+ * player heatmap that changed are sent to the map's <code>updateHeatmap</code> function
+ * along with the clusters.
+ * <p>
+ * The map is only made when its tab is first shown. Until it has loaded, nothing is sent: the
+ * markers and the heatmap are kept here, other calls are held back, and the map is sent all
+ * of them once {@link #mapLoaded()} is called.
+ *
+ * @see RowPublisher
+ */
+public class MapMarkers {
+
+	/** The entry queued to send the clusters to the map again. */
+	private static final String REDRAW = "redraw";
+	
+	/** The MainWindow with the map's WebEngine. */
+	private final MainWindow mw;
+	/** The markers of the server list tabs. */
+	private final MarkerClusterer clusterer = new MarkerClusterer();
+	/** The player heatmap of the markers of the server list tabs. */
+	private final HeatmapGrid heatmap = new HeatmapGrid();
+	/** The servers added since the refresh of each marker type began, for the types being refreshed. */
+	private final HashMap<String, HashSet<String>> refreshed = new HashMap<String, HashSet<String>>();
+	/** Whether or not the map has loaded. */
+	private volatile boolean loaded = false;
+	/** The entries other than {@link #REDRAW} drained before the map loaded. This is only used on the event dispatch thread. */
+	private final List<String> heldBack = new ArrayList<String>();
+	/**
+	 * Gathers the markers and scripts and runs them once per frame. The markers are the entries
+	 * that start with "{", and {@link #REDRAW} sends the clusters.
+	 */
+	private final RowPublisher<String> publisher = new RowPublisher<String>(new RowPublisher.Sink<String>() {
+		@Override
+		public void drain(List<String> entries) {
+			if ( !loaded ) {
+				// The clusters and the heatmap are sent in full when the map loads
+				for ( String entry : entries ) {
+					if ( !entry.equals(REDRAW) ) {
+						heldBack.add(entry);
+					}
+				}
+				return;
+			}
+			if ( !heldBack.isEmpty() ) {
+				heldBack.addAll(entries);
+				entries = new ArrayList<String>(heldBack);
+				heldBack.clear();
+			}
+			StringBuilder script = new StringBuilder();
+			boolean inArray = false;
+			boolean redraw = false;
+			for ( String entry : entries ) {
+				if ( entry.equals(REDRAW) ) {
+					redraw = true;
+					continue;
+				}
+				if ( entry.startsWith("{") ) {
+					script.append(inArray ? "," : "addMarkers([");
+					inArray = true;
+				} else if ( inArray ) {
+					script.append("]);");
+					inArray = false;
+				}
+				script.append(entry);
+				if ( !inArray ) {
+					script.append(';');
+				}
+			}
+			if ( inArray ) {
+				script.append("]);");
+			}
+			if ( redraw ) {
+				String changes = clusterer.takeChanges();
+				if ( changes != null ) {
+					script.append("updateMarkers(").append(changes).append(");");
+				}
+				if ( heatmap.hasChanges() ) {
+					script.append("updateHeatmap(").append(heatmap.takeChanges()).append(");");
+				}
+			}
+			if ( script.length() > 0 ) {
+				execute(script.toString());
+			}
+		}
+	});
+
+	/**
+	 * Creates a new MapMarkers.
+	 *
+	 * @param mw the MainWindow with the map's WebEngine
+	 */
+	public MapMarkers(MainWindow mw) {
+		this.mw = mw;
+	}
+
+	/**
+	 * Queues a marker for a server. Servers without a location are not shown.
+	 * <p>
+	 * This method is thread safe and does not block.
+	 *
+	 * @param type the type of the marker: "n", "b", "f" or "h" for the servers of a server list
+	 * tab, or "s" for a single server shown on its own
+	 * @param cs the {@link ChivServer}
+	 */
+	public void addMarker(String type, ChivServer cs) {
+		double lat, lon;
+		try {
+			lat = Double.parseDouble(cs.mLatitude);
+			lon = Double.parseDouble(cs.mLongitude);
+		} catch (NumberFormatException | NullPointerException e) {
+			return;
+		}
+		NumberCell players = NumberCell.of(cs.mCurrentPlayers);
+		int count = players == NumberCell.EMPTY ? 0 : (int) players.getKey();
+		String json = toJson(type, cs, count);
+		String details = "{\"ping\":" + JSONObject.quote(cs.mPing) + "}";
+		if ( type.equals("s") ) {
+			publisher.publish("{\"lat\":" + lat + ",\"lon\":" + lon + "," + json.substring(1, json.length() - 1)
+					+ "," + details.substring(1));
+		} else {
+			String key = cs.mIP + ":" + cs.mQueryPort;
+			synchronized ( refreshed ) {
+				HashSet<String> keys = refreshed.get(type);
+				if ( keys != null ) {
+					keys.add(key);
+				}
+			}
+			clusterer.add(type, key, lat, lon, count, json, details);
+			heatmap.put(type, key, lat, lon, count);
+			publisher.publish(REDRAW);
+		}
+	}
+	
+	/**
+	 * Removes the markers of a server list tab's servers from the map.
+	 * <p>
+	 * This method is thread safe and does not block.
+	 *
+	 * @param type the type of the markers: "n", "b", "f" or "h"
+	 */
+	public void clearMarkers(String type) {
+		clusterer.clear(type);
+		heatmap.clear(type);
+		publisher.publish(REDRAW);
+	}
+	
+	/**
+	 * Starts a refresh of a server list tab's markers. The markers stay on the map, and the
+	 * servers added until {@link #endRefresh(String)} are noted.
+	 * <p>
+	 * This method is thread safe and does not block.
+	 *
+	 * @param type the type of the markers: "n", "b", "f" or "h"
+	 */
+	public void beginRefresh(String type) {
+		synchronized ( refreshed ) {
+			refreshed.put(type, new HashSet<String>());
+		}
+	}
+	
+	/**
+	 * Ends a refresh of a server list tab's markers, and removes the markers of the servers that
+	 * were not added since {@link #beginRefresh(String)}.
+	 * <p>
+	 * This method is thread safe and does not block.
+	 *
+	 * @param type the type of the markers: "n", "b", "f" or "h"
+	 */
+	public void endRefresh(String type) {
+		HashSet<String> keys;
+		synchronized ( refreshed ) {
+			keys = refreshed.remove(type);
+		}
+		if ( keys != null ) {
+			clusterer.retain(type, keys);
+			heatmap.retain(type, keys);
+			publisher.publish(REDRAW);
+		}
+	}
+	
+	/**
+	 * Sets the part of the map that is shown, and sends the map its clusters.
+	 *
+	 * @param zoom the zoom level
+	 * @param south the southern edge
+	 * @param west the western edge
+	 * @param north the northern edge
+	 * @param east the eastern edge
+	 * @see MarkerClusterer#setView(int, double, double, double, double)
+	 */
+	public void setView(int zoom, double south, double west, double north, double east) {
+		clusterer.setView(zoom, south, west, north, east);
+		publisher.publish(REDRAW);
+	}
+
+	/**
+	 * Called when the map has loaded, to send it the markers and the calls held back until then.
+	 */
+	public void mapLoaded() {
+		clusterer.forgetSent();
+		loaded = true;
+		publisher.publish(REDRAW);
+	}
+	
+	/**
+	 * Queues a call to the map that runs after the markers queued before it.
+	 * <p>
+	 * This method is thread safe and does not block.
+	 *
+	 * @param statement the JavaScript statement, such as "clearMarkers('n')"
+	 */
+	public void executeScript(String statement) {
+		publisher.publish(statement);
+	}
+
+	/**
+	 * Runs a batch of markers and scripts in the map on the JavaFX thread.
+	 *
+	 * @param script the script
+	 */
+	protected void execute(final String script) {
+		Platform.runLater(new Runnable() {
+			@Override
+			public void run() {
+				if ( mw.webEngine != null ) {
+					mw.webEngine.executeScript(script);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Turns a server into the JSON object of its marker, without its position and its ping,
+	 * which change with every query.
+	 *
+	 * @param type the type of the marker
+	 * @param cs the {@link ChivServer}
+	 * @param players the number of players on the server
+	 * @return the JSON object
+	 */
+	private static String toJson(String type, ChivServer cs, int players) {
+		StringBuilder json = new StringBuilder(256);
+		json.append("{\"type\":").append(JSONObject.quote(type))
+				.append(",\"name\":").append(JSONObject.quote(cs.mName))
+				.append(",\"ip\":").append(JSONObject.quote(cs.mIP))
+				.append(",\"queryPort\":").append(JSONObject.quote(cs.mQueryPort))
+				.append(",\"gamePort\":").append(JSONObject.quote(cs.mGamePort))
+				.append(",\"map\":").append(JSONObject.quote(cs.mMap))
+				.append(",\"players\":").append(players)
+				.append(",\"maxPlayers\":").append(JSONObject.quote(cs.mMaxPlayers))
+				.append(",\"password\":").append("1".equals(cs.mHasPassword))
+				.append('}');
+		return json.toString();
+	}
+
+}
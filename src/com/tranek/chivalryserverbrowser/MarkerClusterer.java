@@ -0,0 +1,383 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONObject;
+
+/**
+ *
+ * Groups the server markers of the map into clusters by zoom level, so the map only has to
+ * draw a marker per cluster instead of one per server. Each server's position is projected
+ * once, when it is added, onto the Web Mercator plane that Google Maps uses, as 32 bit
+ * coordinates. At a zoom level the plane is cut into a grid of {@link #CELL_SIZE} pixel cells
+ * and the servers of each cell become one cluster, with the number of servers and the sum of
+ * their players, at the average of their positions. A cell with one server shows the server's
+ * own marker. Zooming in makes the cells smaller, so the clusters split up until, above
+ * {@link #MAX_CLUSTER_ZOOM}, every server has its own marker.
+ * <p>
+ * Only the clusters in the part of the map that is shown are sent to it. The clusters of a
+ * zoom level are kept until the servers change, so panning only filters them again.
+ * <p>
+ * Every marker has a key that stays the same while it is on the map: the server's key, such
+ * as "ip:queryport", or the zoom level and cell of a cluster. The clusterer remembers what it
+ * last sent, and {@link #takeChanges()} only sends the markers that are new or changed and
+ * the keys of the markers that went away.
+ * <p>
+ * So that only real changes are sent, a server's position and its details that change with
+ * every query, like its ping, are kept apart from the JSON object that is compared. A server
+ * that is added again within {@link #MOVE_TOLERANCE} of where it was keeps its old position,
+ * and its details are only sent along when its marker is sent for another reason.
+ *
+ */
+public class MarkerClusterer {
+
+	/** The size in pixels of the cells of the grid, as a power of two. */
+	public static final int CELL_BITS = 6;
+	/** The size in pixels of the cells of the grid. */
+	public static final int CELL_SIZE = 1 << CELL_BITS;
+	/** The highest zoom level that servers are clustered at. */
+	public static final int MAX_CLUSTER_ZOOM = 12;
+	/**
+	 * How far in degrees a server can be from its old position and still be taken as not
+	 * having moved. A server located from another server in the same place can be put up to
+	 * twice the randomness of {@link ChivServer#getLocation(MainWindow, String, int)} away.
+	 */
+	public static final double MOVE_TOLERANCE = 0.25;
+
+	/** The servers of each marker type. */
+	private final HashMap<String, Layer> layers = new HashMap<String, Layer>();
+	/** The zoom level of the map. */
+	private int zoom = 2;
+	/** The bounds of the part of the map that is shown: south, west, north, east. */
+	private double[] bounds = {-90, -180, 90, 180};
+	/** The JSON objects of the markers last sent to the map, by their keys. */
+	private HashMap<String, String> sent = new HashMap<String, String>();
+
+	/**
+	 * Adds the marker of a server, or replaces the marker the server already has.
+	 *
+	 * @param type the type of the marker: "n", "b", "f" or "h"
+	 * @param key the key of the server, such as "ip:queryport"
+	 * @param lat the latitude of the server
+	 * @param lon the longitude of the server
+	 * @param players the number of players on the server
+	 * @param json the JSON object of the server's marker, without its position
+	 * @param details the JSON object of the server's details that change with every query and
+	 * only need to be sent along with the marker, such as its ping
+	 */
+	public synchronized void add(String type, String key, double lat, double lon, int players, String json, String details) {
+		Layer layer = layers.get(type);
+		if ( layer == null ) {
+			layer = new Layer();
+			layers.put(type, layer);
+		}
+		Point old = layer.points.get(key);
+		if ( old != null && Math.abs(old.lat - lat) <= MOVE_TOLERANCE && Math.abs(old.lon - lon) <= MOVE_TOLERANCE ) {
+			if ( old.json.equals(json) ) {
+				old.details = details;
+				return;
+			}
+			lat = old.lat;
+			lon = old.lon;
+		}
+		layer.points.put(key, new Point(type + ":" + key, lat, lon, players, json, details));
+		layer.cached = null;
+	}
+	
+	/**
+	 * Removes the markers of a type whose servers are not in a set of keys.
+	 *
+	 * @param type the type of the markers
+	 * @param keys the keys of the servers to keep
+	 */
+	public synchronized void retain(String type, Set<String> keys) {
+		Layer layer = layers.get(type);
+		if ( layer != null && layer.points.keySet().retainAll(keys) ) {
+			layer.cached = null;
+		}
+	}
+
+	/**
+	 * Removes all markers of a type.
+	 *
+	 * @param type the type of the markers
+	 */
+	public synchronized void clear(String type) {
+		layers.remove(type);
+	}
+
+	/**
+	 * Sets the part of the map that is shown.
+	 *
+	 * @param zoom the zoom level
+	 * @param south the southern edge
+	 * @param west the western edge
+	 * @param north the northern edge
+	 * @param east the eastern edge; less than the western edge if the map shows the 180th meridian
+	 */
+	public synchronized void setView(int zoom, double south, double west, double north, double east) {
+		this.zoom = Math.max(0, zoom);
+		bounds = new double[] {south, west, north, east};
+	}
+
+	/**
+	 * Forgets what was sent to the map, such as when the map has been loaded again, so that
+	 * the next changes have every marker.
+	 */
+	public synchronized void forgetSent() {
+		sent = new HashMap<String, String>();
+	}
+
+	/**
+	 * Gets the changes to the clusters and single servers in the part of the map that is shown
+	 * since the changes were last taken.
+	 *
+	 * @return a JSON object with the markers that are new or changed as "put", and the keys of
+	 * the markers that are no longer shown as "remove"; or null if nothing changed. Each marker
+	 * has its key as "key" and its position; single servers have the rest of their JSON object
+	 * and their details, and clusters have the type, the number of servers as "count", and the
+	 * sum of their players.
+	 */
+	public synchronized String takeChanges() {
+		HashMap<String, String> shown = new HashMap<String, String>();
+		StringBuilder put = new StringBuilder();
+		for ( Map.Entry<String, Layer> layer : layers.entrySet() ) {
+			String type = layer.getKey();
+			for ( Cluster c : layer.getValue().clusters(zoom) ) {
+				if ( !c.isShown(bounds) ) {
+					continue;
+				}
+				String key;
+				String json;
+				String details = null;
+				if ( c.count == 1 ) {
+					key = c.first.key;
+					json = "{\"key\":" + JSONObject.quote(key) + ",\"lat\":" + c.lat() + ",\"lon\":" + c.lon()
+							+ "," + c.first.json.substring(1);
+					details = c.first.details;
+				} else {
+					key = type + ":cluster:" + zoom + ":" + c.cell;
+					json = "{\"key\":" + JSONObject.quote(key) + ",\"type\":\"" + type + "\",\"lat\":" + c.lat()
+							+ ",\"lon\":" + c.lon() + ",\"count\":" + c.count + ",\"players\":" + c.players + "}";
+				}
+				shown.put(key, json);
+				if ( !json.equals(sent.remove(key)) ) {
+					if ( put.length() > 0 ) {
+						put.append(',');
+					}
+					if ( details != null && details.length() > 2 ) {
+						put.append(json, 0, json.length() - 1).append(',').append(details, 1, details.length());
+					} else {
+						put.append(json);
+					}
+				}
+			}
+		}
+		StringBuilder remove = new StringBuilder();
+		for ( String key : sent.keySet() ) {
+			if ( remove.length() > 0 ) {
+				remove.append(',');
+			}
+			remove.append(JSONObject.quote(key));
+		}
+		sent = shown;
+		if ( put.length() == 0 && remove.length() == 0 ) {
+			return null;
+		}
+		return "{\"put\":[" + put + "],\"remove\":[" + remove + "]}";
+	}
+
+	/**
+	 *
+	 * The servers of one marker type and their clusters at the last zoom level asked for.
+	 *
+	 */
+	private static class Layer {
+		/** The servers by their keys. */
+		private final HashMap<String, Point> points = new HashMap<String, Point>();
+		/** The clusters at {@link #cachedZoom}; or null if the servers changed since. */
+		private List<Cluster> cached;
+		/** The zoom level of {@link #cached}. */
+		private int cachedZoom = -1;
+
+		/**
+		 * Gets the clusters of the servers at a zoom level.
+		 *
+		 * @param zoom the zoom level
+		 * @return the clusters
+		 */
+		private List<Cluster> clusters(int zoom) {
+			if ( cached != null && cachedZoom == zoom ) {
+				return cached;
+			}
+			List<Cluster> clusters = new ArrayList<Cluster>();
+			if ( zoom > MAX_CLUSTER_ZOOM ) {
+				for ( Point p : points.values() ) {
+					clusters.add(new Cluster(p, -1));
+				}
+			} else {
+				// The world is 256 << zoom pixels wide, so it has that divided by CELL_SIZE cells
+				int shift = 32 - (zoom + 8 - CELL_BITS);
+				HashMap<Long, Cluster> cells = new HashMap<Long, Cluster>();
+				for ( Point p : points.values() ) {
+					Long cell = (p.x >>> shift) << 32 | (p.y >>> shift);
+					Cluster c = cells.get(cell);
+					if ( c == null ) {
+						c = new Cluster(p, cell);
+						cells.put(cell, c);
+						clusters.add(c);
+					} else {
+						c.add(p);
+					}
+				}
+			}
+			cached = clusters;
+			cachedZoom = zoom;
+			return clusters;
+		}
+	}
+
+	/**
+	 *
+	 * A server's marker and its position on the Web Mercator plane.
+	 *
+	 */
+	private static class Point {
+		/** The key of the server's marker: its type and the server's key. */
+		private final String key;
+		/** The latitude. */
+		private final double lat;
+		/** The longitude. */
+		private final double lon;
+		/** The x coordinate on the plane, from 0 to 2^32 - 1 west to east. */
+		private final long x;
+		/** The y coordinate on the plane, from 0 to 2^32 - 1 north to south. */
+		private final long y;
+		/** The number of players on the server. */
+		private final int players;
+		/** The JSON object of the server's marker, without its position. */
+		private final String json;
+		/** The JSON object of the server's details that are not compared. */
+		private String details;
+
+		/**
+		 * Creates a new Point.
+		 *
+		 * @param key the key of the server's marker
+		 * @param lat the latitude
+		 * @param lon the longitude
+		 * @param players the number of players on the server
+		 * @param json the JSON object of the server's marker, without its position
+		 * @param details the JSON object of the server's details that are not compared
+		 */
+		private Point(String key, double lat, double lon, int players, String json, String details) {
+			this.key = key;
+			this.lat = lat;
+			this.lon = lon;
+			this.players = players;
+			this.json = json;
+			this.details = details;
+			double sin = Math.max(-0.9999, Math.min(0.9999, Math.sin(Math.toRadians(lat))));
+			double my = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+			x = scale((lon + 180) / 360);
+			y = scale(my);
+		}
+
+		/**
+		 * Scales a coordinate from 0 to 1 to a 32 bit coordinate.
+		 *
+		 * @param v the coordinate from 0 to 1
+		 * @return the coordinate from 0 to 2^32 - 1
+		 */
+		private static long scale(double v) {
+			return Math.max(0, Math.min(0xFFFFFFFFL, (long) (v * 4294967296.0)));
+		}
+	}
+
+	/**
+	 *
+	 * The servers of one cell of the grid.
+	 *
+	 */
+	private static class Cluster {
+		/** The first server of the cell. */
+		private final Point first;
+		/** The cell, as its column and row in one number; or -1 if the servers are not clustered. */
+		private final long cell;
+		/** The number of servers. */
+		private int count = 1;
+		/** The sum of the players of the servers. */
+		private int players;
+		/** The sum of the latitudes of the servers. */
+		private double latSum;
+		/** The sum of the longitudes of the servers. */
+		private double lonSum;
+
+		/**
+		 * Creates a new Cluster with one server.
+		 *
+		 * @param p the server
+		 * @param cell the cell; or -1 if the servers are not clustered
+		 */
+		private Cluster(Point p, long cell) {
+			first = p;
+			this.cell = cell;
+			players = p.players;
+			latSum = p.lat;
+			lonSum = p.lon;
+		}
+
+		/**
+		 * Adds a server to the cluster.
+		 *
+		 * @param p the server
+		 */
+		private void add(Point p) {
+			count++;
+			players += p.players;
+			latSum += p.lat;
+			lonSum += p.lon;
+		}
+
+		/**
+		 * Gets the average latitude of the servers.
+		 *
+		 * @return the latitude
+		 */
+		private double lat() {
+			return latSum / count;
+		}
+
+		/**
+		 * Gets the average longitude of the servers.
+		 *
+		 * @return the longitude
+		 */
+		private double lon() {
+			return lonSum / count;
+		}
+
+		/**
+		 * Gets whether or not the cluster is in the part of the map that is shown.
+		 *
+		 * @param bounds the bounds of the map: south, west, north, east
+		 * @return true if the cluster is shown
+		 */
+		private boolean isShown(double[] bounds) {
+			double lat = lat();
+			double lon = lon();
+			if ( lat < bounds[0] || lat > bounds[2] ) {
+				return false;
+			}
+			if ( bounds[1] <= bounds[3] ) {
+				return lon >= bounds[1] && lon <= bounds[3];
+			}
+			return lon >= bounds[1] || lon <= bounds[3];
+		}
+	}
+
+}
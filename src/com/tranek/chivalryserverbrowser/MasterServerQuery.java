@@ -10,8 +10,6 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
-import javax.swing.table.DefaultTableModel;
-
 import net.barkerjr.gameserver.GameServer.Request;
 import net.barkerjr.gameserver.valve.SourceServer;
 import net.barkerjr.gameserver.valve.SourceServerList;
@@ -56,7 +54,7 @@ public abstract class MasterServerQuery {
 	 * @see #getServers()
 	 * @see #queryIndividualServers(Vector)
 	 */
-	public void queryServers(ServerFilters sf, DefaultTableModel dataModel) throws IOException, InterruptedException {
+	public void queryServers(ServerFilters sf, ServerTableModel dataModel) throws IOException, InterruptedException {
 		this.sf = sf;
 		slist = new Vector<ChivServer>();
 		synch = new QueryWorkerSynch(dataModel, getServerList(), mw);
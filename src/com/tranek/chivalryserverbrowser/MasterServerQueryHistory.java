@@ -1,12 +1,7 @@
 package com.tranek.chivalryserverbrowser;
-import java.io.File;
 import java.io.IOException;
 import java.util.Vector;
 
-import com.almworks.sqlite4java.SQLiteConnection;
-import com.almworks.sqlite4java.SQLiteException;
-import com.almworks.sqlite4java.SQLiteStatement;
-
 /**
  * 
  * Controls the low level refreshing for recently joined (history) servers.
@@ -44,44 +39,10 @@ public class MasterServerQueryHistory extends MasterServerQuery {
 	 * 
 	 * @return a {@link Vector} of the {@link ChivServer}
 	 * @see ChivServer
-	 * @see SQLiteConnection
-	 * @see SQLiteStatement
-	 * @see SQLiteException
+	 * @see BrowserDatabase#getHistory()
 	 */
 	public Vector<ChivServer> getHistory() {
-		Vector<ChivServer> serversHist = new Vector<ChivServer>();
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS server_history" +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"name varchar(255) not null default ''," +
-					"ip varchar(255) not null default ''," +
-					"port varchar(255) not null default '' )");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			st = db.prepare("SELECT * FROM server_history");
-			try {
-				while (st.step()) {
-					String name = st.columnString(1);
-					String ip = st.columnString(2);
-					String queryport = st.columnString(3);
-					serversHist.add(new ChivServer(name, ip, queryport));
-				}
-			} finally {
-				st.dispose();
-			}
-
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
-		return serversHist;
+		return mw.db.getHistory();
 	}
 	
 }
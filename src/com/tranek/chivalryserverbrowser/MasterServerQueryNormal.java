@@ -1,7 +1,6 @@
 package com.tranek.chivalryserverbrowser;
 
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
 /**
@@ -21,40 +20,18 @@ public class MasterServerQueryNormal extends MasterServerQuery {
 		super(mw, sf);
 	}
 	
+	/**
+	 * Queries every server that the master server listed with a name. The server filters are not
+	 * applied here so that the results can be filtered again without a refresh.
+	 * 
+	 * @see ServerFilters#toRowFilter()
+	 */
 	@Override
 	public void applyFiltersAndQueryServers(ChivServer server, Set<Future<ChivServer>> set) {
 		if ( server.mName == null ) {
 			return;
 		}
-		String gametype = ChivServer.getGameMode(server.mMap);
-		String serverNameFilter = sf.name.toLowerCase();
-		String sName = server.mName.toLowerCase();
-		
-		if ( sf.officialservers && ( sf.type.equals("All") || sf.type.equals(gametype) ) ) {
-			if ( 
-				(sName.length() > 23 && sName.substring(0, 24).equals("official duel ping limit") ) ||
-				(sName.length() > 19 && sName.substring(0, 20).equals("official duel server") ) ||
-				(sName.length() > 26 && sName.substring(0, 27).equals("official classic ping limit") ) ||
-				(sName.length() > 25 && sName.substring(0, 26).equals("official classic rank 1-20") ) ||
-				(sName.length() > 22 && sName.substring(0, 23).equals("official classic server") ) ||
-				(sName.length() > 22 && sName.substring(0, 23).equals("official ffa ping limit") ) ||
-				(sName.length() > 18 && sName.substring(0, 19).equals("official ffa server") ) ||
-				(sName.length() > 22 && sName.substring(0, 23).equals("official lts ping limit") ) ||
-				(sName.length() > 18 && sName.substring(0, 19).equals("official lts server") ) ||
-				(sName.length() > 22 && sName.substring(0, 23).equals("official tdm ping limit") ) ||
-				(sName.length() > 18 && sName.substring(0, 19).equals("official tdm server") ) ||
-				(sName.length() > 21 && sName.substring(0, 22).equals("official to ping limit") ) ||
-				(sName.length() > 17 && sName.substring(0, 18).equals("official to server") ) ) {
-					Callable<ChivServer> callable = new QueryWorker(server.mIP, Integer.parseInt(server.mQueryPort), sf, synch, pool, mw);
-					Future<ChivServer> future = pool.submit(callable);
-					set.add(future);
-			}
-		} else if ( server.mName != null && server.mName.toLowerCase().contains(serverNameFilter)
-				&& ( sf.type.equals("All") || sf.type.equals(gametype) ) ) {
-			Callable<ChivServer> callable = new QueryWorker(server.mIP, Integer.parseInt(server.mQueryPort), sf, synch, pool, mw);
-			Future<ChivServer> future = pool.submit(callable);
-			set.add(future);
-		}
+		super.applyFiltersAndQueryServers(server, set);
 	}
 	
 }
@@ -0,0 +1,124 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+
+/**
+ *
+ * The document of the message center. It keeps only the last lines of text, like a ring
+ * buffer: the length of each line is kept in a ring, and when a new line pushes the count
+ * past the limit only the oldest line is removed from the front of the document. Adding a
+ * message costs the same however many messages came before it.
+ * <p>
+ * Messages may be added from any thread. They are queued without locking and appended on the
+ * event dispatch thread in one batch per frame.
+ *
+ * @see RowPublisher
+ */
+@SuppressWarnings("serial")
+public class MessageLog extends PlainDocument {
+
+	/** The most lines of text that are kept. */
+	private final int maxLines;
+	/** The lengths of the lines in the document, oldest first from {@link #head}, without their line breaks. */
+	private final int[] lineLengths;
+	/** The index in {@link #lineLengths} of the oldest line. */
+	private int head = 0;
+	/** The number of lines in the document. An empty document has one empty line. */
+	private int lineCount = 1;
+	/** Whether or not anything has been added yet, including text that is still queued. */
+	private final AtomicBoolean written = new AtomicBoolean(false);
+	/** Gathers the text added from other threads and appends it once per frame. */
+	private final RowPublisher<String> publisher = new RowPublisher<String>(new RowPublisher.Sink<String>() {
+		@Override
+		public void drain(List<String> texts) {
+			StringBuilder sb = new StringBuilder();
+			for ( String text : texts ) {
+				sb.append(text);
+			}
+			append(sb.toString());
+		}
+	});
+
+	/**
+	 * Creates a new MessageLog.
+	 *
+	 * @param maxLines the most lines of text to keep
+	 */
+	public MessageLog(int maxLines) {
+		this.maxLines = maxLines;
+		lineLengths = new int[maxLines];
+	}
+
+	/**
+	 * Adds text to the end of the log without starting a new line.
+	 * <p>
+	 * This method is thread safe and does not block.
+	 *
+	 * @param text the text
+	 */
+	public void print(String text) {
+		written.set(true);
+		publisher.publish(text);
+	}
+
+	/**
+	 * Adds text to the log on a new line.
+	 * <p>
+	 * This method is thread safe and does not block.
+	 *
+	 * @param text the text
+	 */
+	public void println(String text) {
+		print("\n" + text);
+	}
+
+	/**
+	 * Gets whether or not nothing has been added to the log yet.
+	 *
+	 * @return true if the log is empty
+	 */
+	public boolean isEmpty() {
+		return !written.get();
+	}
+
+	/**
+	 * Appends text to the document and removes the oldest lines beyond {@link #maxLines}.
+	 * This is called on the event dispatch thread.
+	 *
+	 * @param text the text
+	 */
+	private void append(String text) {
+		int drop = 0;
+		int tail = (head + lineCount - 1) % maxLines;
+		int lineStart = 0;
+		for ( int i = 0; i < text.length(); i++ ) {
+			if ( text.charAt(i) != '\n' ) {
+				continue;
+			}
+			lineLengths[tail] += i - lineStart;
+			lineStart = i + 1;
+			if ( lineCount == maxLines ) {
+				drop += lineLengths[head] + 1;
+				head = (head + 1) % maxLines;
+				lineCount--;
+			}
+			tail = (tail + 1) % maxLines;
+			lineLengths[tail] = 0;
+			lineCount++;
+		}
+		lineLengths[tail] += text.length() - lineStart;
+		try {
+			insertString(getLength(), text, null);
+			if ( drop > 0 ) {
+				remove(0, drop);
+			}
+		} catch (BadLocationException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
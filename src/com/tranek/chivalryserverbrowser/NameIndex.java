@@ -0,0 +1,264 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ *
+ * A trigram index of the server names in a {@link ServerTableModel}, for searching them as the
+ * user types. Names are folded before they are indexed: letters are lowercased and everything
+ * that is not a letter or a digit, such as the brackets and dashes around clan tags, is dropped.
+ * Each run of three folded characters maps to the rows whose names contain it.
+ * <p>
+ * A search only looks at the rows of the trigrams of the search term. An exact search returns
+ * the rows that have all of them; a fuzzy search returns the rows that have at least half of them,
+ * so "[ABC] Duels" is found by "abc duel", "-=ABC=-" or a typo such as "abd duels". The caller
+ * still checks the rows of either search against the real names.
+ * <p>
+ * The index is only changed and searched on the event dispatch thread, like its table model.
+ *
+ */
+class NameIndex {
+
+	/** The share of a fuzzy search term's trigrams that a name must have. */
+	private static final double FUZZY_SHARE = 0.5;
+
+	/** The open addressed hash table of the trigrams: each key is three folded characters plus one so that 0 is free. */
+	private long[] keys = new long[1024];
+	/** The rows of each trigram in {@link #keys}, in the order they were added. */
+	private int[][] postings = new int[1024][];
+	/** The number of rows of each trigram in {@link #keys}. */
+	private int[] sizes = new int[1024];
+	/** The number of trigrams. */
+	private int count = 0;
+
+	/**
+	 * Indexes the name of a row. A row that is indexed again keeps its old trigrams too, so the
+	 * results of a search, exact or fuzzy, must be checked against the current names.
+	 *
+	 * @param row the row
+	 * @param name the server name
+	 */
+	public void add(int row, String name) {
+		if ( name == null ) {
+			return;
+		}
+		String folded = fold(name);
+		for ( int i = 0; i + 3 <= folded.length(); i++ ) {
+			int slot = slot(trigram(folded, i), true);
+			int size = sizes[slot];
+			int[] rows = postings[slot];
+			if ( size > 0 && rows[size - 1] == row ) {
+				continue;
+			}
+			if ( size == rows.length ) {
+				rows = postings[slot] = Arrays.copyOf(rows, size * 2);
+			}
+			rows[size] = row;
+			sizes[slot] = size + 1;
+		}
+	}
+
+	/**
+	 * Removes every name from the index.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(postings, null);
+		Arrays.fill(sizes, 0);
+		count = 0;
+	}
+
+	/**
+	 * Finds the rows whose names may contain a search term.
+	 *
+	 * @param term the search term
+	 * @param fuzzy false to find the rows that have every trigram of the term; true to find the
+	 * rows that have at least half of them
+	 * @param rowCount the number of rows in the table
+	 * @return the rows; or null if the term is too short to be searched by trigrams
+	 */
+	public BitSet search(String term, boolean fuzzy, int rowCount) {
+		String folded = fold(term);
+		if ( folded.length() < 3 ) {
+			return null;
+		}
+		long[] grams = trigrams(folded);
+		int distinct = grams.length;
+		int needed = fuzzy ? fuzzyNeeded(distinct) : distinct;
+		BitSet found = new BitSet(rowCount);
+		int[] hits = new int[rowCount];
+		for ( int i = 0; i < distinct; i++ ) {
+			int slot = slot(grams[i], false);
+			if ( slot < 0 ) {
+				if ( !fuzzy ) {
+					return found;
+				}
+				continue;
+			}
+			int[] rows = postings[slot];
+			for ( int j = sizes[slot] - 1; j >= 0; j-- ) {
+				int row = rows[j];
+				if ( row < rowCount && ++hits[row] == needed ) {
+					found.set(row);
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Gets whether or not a single name matches a fuzzy search term the way
+	 * {@link #search(String, boolean, int)} would find it.
+	 *
+	 * @param name the name
+	 * @param term the search term
+	 * @return true if the name matches
+	 */
+	public static boolean fuzzyMatches(String name, String term) {
+		String foldedName = fold(name);
+		String folded = fold(term);
+		if ( folded.length() < 3 ) {
+			return foldedName.contains(folded);
+		}
+		long[] grams = trigrams(folded);
+		long[] nameGrams = trigrams(foldedName);
+		int hits = 0;
+		for ( long gram : grams ) {
+			for ( long nameGram : nameGrams ) {
+				if ( gram == nameGram ) {
+					hits++;
+					break;
+				}
+			}
+		}
+		return hits >= fuzzyNeeded(grams.length);
+	}
+
+	/**
+	 * Gets how many of a fuzzy search term's trigrams a name must have.
+	 *
+	 * @param grams the number of distinct trigrams of the term
+	 * @return the number of trigrams needed
+	 */
+	private static int fuzzyNeeded(int grams) {
+		return Math.max(1, (int) Math.ceil(grams * FUZZY_SHARE));
+	}
+
+	/**
+	 * Gets the distinct trigrams of a folded name.
+	 *
+	 * @param folded the folded name
+	 * @return the trigrams in the order they first appear
+	 */
+	private static long[] trigrams(String folded) {
+		long[] grams = new long[Math.max(0, folded.length() - 2)];
+		int distinct = 0;
+		for ( int i = 0; i < grams.length; i++ ) {
+			long gram = trigram(folded, i);
+			boolean seen = false;
+			for ( int j = 0; j < distinct && !seen; j++ ) {
+				seen = grams[j] == gram;
+			}
+			if ( !seen ) {
+				grams[distinct++] = gram;
+			}
+		}
+		return Arrays.copyOf(grams, distinct);
+	}
+
+	/**
+	 * Folds a name for the index: letters and digits are kept in lowercase and everything else
+	 * is dropped.
+	 *
+	 * @param name the name
+	 * @return the folded name
+	 */
+	public static String fold(String name) {
+		StringBuilder sb = new StringBuilder(name.length());
+		for ( int i = 0; i < name.length(); i++ ) {
+			char c = name.charAt(i);
+			if ( Character.isLetterOrDigit(c) ) {
+				sb.append(Character.toLowerCase(c));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Packs the three characters at an index of a folded name into a trigram.
+	 *
+	 * @param folded the folded name
+	 * @param i the index of the first character
+	 * @return the trigram
+	 */
+	private static long trigram(String folded, int i) {
+		return (long) folded.charAt(i) << 32 | (long) folded.charAt(i + 1) << 16 | folded.charAt(i + 2);
+	}
+
+	/**
+	 * Finds the slot of a trigram in the hash table, growing the table to keep it at most half full.
+	 *
+	 * @param gram the trigram
+	 * @param create whether or not to add the trigram if it is missing
+	 * @return the slot; or -1 if the trigram is missing and was not added
+	 */
+	private int slot(long gram, boolean create) {
+		int mask = keys.length - 1;
+		int i = hash(gram) & mask;
+		while ( keys[i] != 0 ) {
+			if ( keys[i] == gram + 1 ) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		if ( !create ) {
+			return -1;
+		}
+		if ( (count + 1) * 2 > keys.length ) {
+			grow();
+			return slot(gram, true);
+		}
+		keys[i] = gram + 1;
+		postings[i] = new int[4];
+		count++;
+		return i;
+	}
+
+	/**
+	 * Doubles the size of the hash table.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[][] oldPostings = postings;
+		int[] oldSizes = sizes;
+		keys = new long[oldKeys.length * 2];
+		postings = new int[oldKeys.length * 2][];
+		sizes = new int[oldKeys.length * 2];
+		int mask = keys.length - 1;
+		for ( int j = 0; j < oldKeys.length; j++ ) {
+			if ( oldKeys[j] == 0 ) {
+				continue;
+			}
+			int i = hash(oldKeys[j] - 1) & mask;
+			while ( keys[i] != 0 ) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = oldKeys[j];
+			postings[i] = oldPostings[j];
+			sizes[i] = oldSizes[j];
+		}
+	}
+
+	/**
+	 * Spreads the bits of a trigram for the hash table.
+	 *
+	 * @param gram the trigram
+	 * @return the hash
+	 */
+	private static int hash(long gram) {
+		long h = gram * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
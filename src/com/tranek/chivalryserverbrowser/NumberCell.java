@@ -0,0 +1,114 @@
+package com.tranek.chivalryserverbrowser;
+
+/**
+ *
+ * A table cell that shows formatted text but sorts by a number, such as "12 / 32" players
+ * sorted by 12 or "1 h 5 m 0 s" sorted by 3900 seconds. The number is worked out once when
+ * the cell is created, so a row sorter compares two primitives instead of parsing the text
+ * on every comparison. A column of these cells should report NumberCell as its class so that
+ * the row sorter uses {@link #compareTo(NumberCell)}.
+ *
+ */
+public final class NumberCell implements Comparable<NumberCell> {
+
+	/** An empty cell. It sorts before every cell with a number. */
+	public static final NumberCell EMPTY = new NumberCell(Long.MIN_VALUE, "");
+
+	/** The number the cell sorts by. */
+	private final long key;
+	/** The text the cell shows. */
+	private final String text;
+
+	/**
+	 * Creates a new NumberCell.
+	 *
+	 * @param key the number the cell sorts by
+	 * @param text the text the cell shows
+	 */
+	public NumberCell(long key, String text) {
+		this.key = key;
+		this.text = text;
+	}
+
+	/**
+	 * Creates a cell that shows a number as it was received, such as the ping of a server.
+	 *
+	 * @param number the number
+	 * @return the cell; or {@link #EMPTY} if the number is missing or not a number
+	 */
+	public static NumberCell of(String number) {
+		if ( number == null || number.equals("") ) {
+			return EMPTY;
+		}
+		try {
+			return new NumberCell(Long.parseLong(number.trim()), number);
+		} catch (NumberFormatException e) {
+			return EMPTY;
+		}
+	}
+
+	/**
+	 * Creates a cell that shows the players of a server as "current / maximum" and sorts by
+	 * the current players.
+	 *
+	 * @param current the current players
+	 * @param max the maximum players
+	 * @return the cell; or {@link #EMPTY} if the current players are missing
+	 */
+	public static NumberCell players(String current, String max) {
+		NumberCell players = of(current);
+		if ( players == EMPTY ) {
+			return EMPTY;
+		}
+		return new NumberCell(players.key, current + " / " + max);
+	}
+
+	/**
+	 * Creates a cell that shows a duration as "h m s" and sorts by the seconds.
+	 *
+	 * @param seconds the duration in seconds
+	 * @return the cell
+	 */
+	public static NumberCell duration(int seconds) {
+		int hours = seconds / 3600;
+		int minutes = (seconds - hours * 3600) / 60;
+		return new NumberCell(seconds, hours + " h " + minutes + " m " + (seconds % 60) + " s");
+	}
+
+	/**
+	 * Gets the number the cell sorts by.
+	 *
+	 * @return the number
+	 */
+	public long getKey() {
+		return key;
+	}
+
+	@Override
+	public int compareTo(NumberCell other) {
+		return key < other.key ? -1 : ( key > other.key ? 1 : 0 );
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if ( !(o instanceof NumberCell) ) {
+			return false;
+		}
+		NumberCell other = (NumberCell) o;
+		return key == other.key && text.equals(other.text);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (key ^ (key >>> 32)) * 31 + text.hashCode();
+	}
+
+	/**
+	 * Gets the text the cell shows.
+	 */
+	@Override
+	public String toString() {
+		return text;
+	}
+
+}
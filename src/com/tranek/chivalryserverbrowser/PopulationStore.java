@@ -0,0 +1,926 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ *
+ * An append-only store of server population snapshots. Every refresh and every query of an
+ * individual server adds a sample of the server's players and map. Samples are buffered in
+ * memory and written out in blocks. Within a block, each server's samples are delta and varint
+ * encoded, and the block is deflated as a whole. The block headers are kept in memory along
+ * with hourly player totals per region, so a query only inflates the blocks it needs.
+ * <p>
+ * Refreshes are recorded through {@link #recordLater(Collection)} so the deflating and
+ * writing of a block happens on the store's own thread rather than the caller's.
+ *
+ */
+public class PopulationStore {
+
+	/** The name of the population file. */
+	public static final String POPULATION_FILE = "population.dat";
+	/** The most samples that are buffered before they are written out as a block. */
+	public static final int BLOCK_SAMPLES = 20000;
+	/** The longest time in milliseconds that samples are buffered before they are written out as a block. */
+	public static final long BLOCK_SPAN = 60L * 60 * 1000;
+	/** The shortest time in milliseconds between two samples of the same server. */
+	public static final long MIN_SAMPLE_INTERVAL = 30L * 1000;
+	/** The region recorded for servers without a location. */
+	public static final String UNKNOWN_REGION = "Unknown";
+
+	/** Record type for a new server: id, "ip:queryport" and region. */
+	private static final int RECORD_SERVER = 1;
+	/** Record type for a new map name: id and name. */
+	private static final int RECORD_MAP = 2;
+	/** Record type for a block of samples. */
+	private static final int RECORD_BLOCK = 3;
+
+	/** The population file. */
+	private final File file;
+	/** The ids of the servers by "ip:queryport". */
+	private final HashMap<String, Integer> serverIds = new HashMap<String, Integer>();
+	/** The region id of each server, indexed by server id. */
+	private final ArrayList<Integer> serverRegions = new ArrayList<Integer>();
+	/** The ids of the regions by name. */
+	private final HashMap<String, Integer> regionIds = new HashMap<String, Integer>();
+	/** The region names, indexed by region id. */
+	private final ArrayList<String> regions = new ArrayList<String>();
+	/** The ids of the maps by name. */
+	private final HashMap<String, Integer> mapIds = new HashMap<String, Integer>();
+	/** The map names, indexed by map id. */
+	private final ArrayList<String> maps = new ArrayList<String>();
+	/** The headers of the blocks in the file, oldest first. */
+	private final ArrayList<Block> blocks = new ArrayList<Block>();
+	/** The samples that have not been written out yet, by server id. */
+	private final TreeMap<Integer, Samples> pending = new TreeMap<Integer, Samples>();
+	/** Dictionary records that are written out with the next block. */
+	private final ByteArrayOutputStream pendingRecords = new ByteArrayOutputStream();
+	/** The time of the last sample of each server, by server id. */
+	private final HashMap<Integer, Long> lastSample = new HashMap<Integer, Long>();
+	/** The number of buffered samples. */
+	private int pendingCount = 0;
+	/** The time of the oldest buffered sample. */
+	private long pendingStart = 0;
+	/** The most recently inflated block. */
+	private Block cachedBlock;
+	/** The payload of the most recently inflated block. */
+	private byte[] cachedPayload;
+	/** Records the samples of {@link #recordLater(Collection)} and writes out their blocks. */
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "PopulationStore");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * Opens the population store in {@link #POPULATION_FILE}.
+	 */
+	public PopulationStore() {
+		this(new File(POPULATION_FILE));
+	}
+
+	/**
+	 * Opens a population store and reads the headers of all of its blocks. A partially
+	 * written record at the end of the file is cut off.
+	 *
+	 * @param file the population file
+	 */
+	public PopulationStore(File file) {
+		this.file = file;
+		if ( file.exists() ) {
+			load();
+		}
+	}
+
+	/**
+	 * Records the players and map of each of the servers of a refresh.
+	 *
+	 * @param servers the servers that were refreshed
+	 */
+	public void record(Collection<ChivServer> servers) {
+		record(servers, System.currentTimeMillis());
+	}
+
+	/**
+	 * Records the players and map of each of the servers of a refresh on the store's own
+	 * thread, so a block that becomes full is not written out on the caller's thread. The
+	 * time of the refresh is taken now.
+	 *
+	 * @param servers the servers that were refreshed
+	 */
+	public void recordLater(Collection<ChivServer> servers) {
+		final ArrayList<ChivServer> copy = new ArrayList<ChivServer>(servers);
+		final long time = System.currentTimeMillis();
+		try {
+			writer.execute(new Runnable() {
+				@Override
+				public void run() {
+					record(copy, time);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// The store was closed.
+		}
+	}
+
+	/**
+	 * Records the players and map of each of the servers of a refresh at a specific time.
+	 *
+	 * @param servers the servers that were refreshed
+	 * @param time the time of the refresh in milliseconds
+	 */
+	public synchronized void record(Collection<ChivServer> servers, long time) {
+		for ( ChivServer cs : new ArrayList<ChivServer>(servers) ) {
+			try {
+				record(cs, Integer.parseInt(cs.mCurrentPlayers), cs.mMap, time);
+			} catch (NumberFormatException e) {
+				// The server did not answer the query.
+			}
+		}
+	}
+
+	/**
+	 * Records the players and map of a single server.
+	 *
+	 * @param cs the server
+	 * @param players the number of players on the server
+	 * @param map the server's current map
+	 */
+	public void record(ChivServer cs, int players, String map) {
+		record(cs, players, map, System.currentTimeMillis());
+	}
+
+	/**
+	 * Records the players and map of a single server at a specific time. Samples of a server
+	 * that come less than {@link #MIN_SAMPLE_INTERVAL} after its previous sample are dropped.
+	 *
+	 * @param cs the server
+	 * @param players the number of players on the server
+	 * @param map the server's current map
+	 * @param time the time of the sample in milliseconds
+	 */
+	public synchronized void record(ChivServer cs, int players, String map, long time) {
+		int id = serverId(cs);
+		Long last = lastSample.get(id);
+		if ( last != null && Math.abs(time - last) < MIN_SAMPLE_INTERVAL ) {
+			return;
+		}
+		lastSample.put(id, time);
+
+		Samples s = pending.get(id);
+		if ( s == null ) {
+			s = new Samples();
+			pending.put(id, s);
+		}
+		s.add(time, players, mapId(map));
+		if ( pendingCount == 0 || time < pendingStart ) {
+			pendingStart = time;
+		}
+		pendingCount++;
+		if ( pendingCount >= BLOCK_SAMPLES || time - pendingStart >= BLOCK_SPAN ) {
+			flush();
+		}
+	}
+
+	/**
+	 * Gets the samples of a server within a period of time.
+	 *
+	 * @param ip the server's IP address
+	 * @param queryport the server's queryport
+	 * @param from the start of the period in milliseconds
+	 * @param to the end of the period in milliseconds
+	 * @return the server's samples in the period, oldest first
+	 */
+	public synchronized Samples getPlayers(String ip, String queryport, long from, long to) {
+		Samples result = new Samples();
+		result.names = maps;
+		Integer id = serverIds.get(ip + ":" + queryport);
+		if ( id == null ) {
+			return result;
+		}
+		for ( Block b : blocks ) {
+			if ( b.end < from || b.start > to ) {
+				continue;
+			}
+			int index = Arrays.binarySearch(b.serverIds, id);
+			if ( index < 0 ) {
+				continue;
+			}
+			try {
+				byte[] payload = inflate(b);
+				int[] pos = {b.offsets[index]};
+				int count = (int) readVarLong(payload, pos);
+				long time = b.start / 1000;
+				int players = 0;
+				for ( int i = 0; i < count; i++ ) {
+					time += unzigzag(readVarLong(payload, pos));
+					players += (int) unzigzag(readVarLong(payload, pos));
+					int map = (int) readVarLong(payload, pos);
+					if ( time * 1000 >= from && time * 1000 <= to ) {
+						result.add(time * 1000, players, map);
+					}
+				}
+			} catch (IOException | DataFormatException e) {
+				e.printStackTrace();
+			}
+		}
+		Samples s = pending.get(id);
+		if ( s != null ) {
+			for ( int i = 0; i < s.size; i++ ) {
+				if ( s.times[i] >= from && s.times[i] <= to ) {
+					result.add(s.times[i], s.players[i], s.mapIds[i]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the hour of the day, in the local time zone, when the servers of each region have
+	 * the most players on average. Written blocks are counted whole if they overlap the period.
+	 *
+	 * @param from the start of the period in milliseconds
+	 * @param to the end of the period in milliseconds
+	 * @return the peak hour (0 to 23) of each region that has samples in the period
+	 */
+	public synchronized HashMap<String, Integer> getPeakHours(long from, long to) {
+		HashMap<Integer, long[]> totals = new HashMap<Integer, long[]>();
+		for ( Block b : blocks ) {
+			if ( b.end < from || b.start > to ) {
+				continue;
+			}
+			for ( Map.Entry<Integer, long[]> e : b.regionHours.entrySet() ) {
+				long[] t = hours(totals, e.getKey());
+				for ( int h = 0; h < t.length; h++ ) {
+					t[h] += e.getValue()[h];
+				}
+			}
+		}
+		for ( Map.Entry<Integer, Samples> e : pending.entrySet() ) {
+			Samples s = e.getValue();
+			long[] t = hours(totals, serverRegions.get(e.getKey()));
+			for ( int i = 0; i < s.size; i++ ) {
+				if ( s.times[i] >= from && s.times[i] <= to ) {
+					int h = hourOfDay(s.times[i]);
+					t[h] += s.players[i];
+					t[24 + h]++;
+				}
+			}
+		}
+
+		HashMap<String, Integer> peaks = new HashMap<String, Integer>();
+		for ( Map.Entry<Integer, long[]> e : totals.entrySet() ) {
+			long[] t = e.getValue();
+			int peak = -1;
+			double best = -1;
+			for ( int h = 0; h < 24; h++ ) {
+				if ( t[24 + h] > 0 && (double) t[h] / t[24 + h] > best ) {
+					best = (double) t[h] / t[24 + h];
+					peak = h;
+				}
+			}
+			if ( peak > -1 ) {
+				peaks.put(regions.get(e.getKey()), peak);
+			}
+		}
+		return peaks;
+	}
+
+	/**
+	 * Writes all of the buffered samples out as a block. If the block can not be written the
+	 * file is cut back to where it was and the samples are kept for the next flush.
+	 */
+	public synchronized void flush() {
+		if ( pendingCount == 0 ) {
+			return;
+		}
+		long length = file.length();
+		try {
+			ByteArrayOutputStream raw = new ByteArrayOutputStream();
+			int[] ids = new int[pending.size()];
+			int[] offsets = new int[pending.size()];
+			HashMap<Integer, long[]> regionHours = new HashMap<Integer, long[]>();
+			long start = Long.MAX_VALUE;
+			long end = Long.MIN_VALUE;
+			for ( Samples s : pending.values() ) {
+				for ( int i = 0; i < s.size; i++ ) {
+					start = Math.min(start, s.times[i]);
+					end = Math.max(end, s.times[i]);
+				}
+			}
+			// Times are stored in seconds; the block's start is rounded down so every delta fits.
+			start = start / 1000 * 1000;
+
+			int n = 0;
+			for ( Map.Entry<Integer, Samples> e : pending.entrySet() ) {
+				Samples s = e.getValue();
+				ids[n] = e.getKey();
+				offsets[n] = raw.size();
+				n++;
+				long[] hours = hours(regionHours, serverRegions.get(e.getKey()));
+				writeVarLong(raw, s.size);
+				long time = start / 1000;
+				int players = 0;
+				for ( int i = 0; i < s.size; i++ ) {
+					long t = s.times[i] / 1000;
+					writeVarLong(raw, zigzag(t - time));
+					writeVarLong(raw, zigzag(s.players[i] - players));
+					writeVarLong(raw, s.mapIds[i]);
+					time = t;
+					players = s.players[i];
+					int h = hourOfDay(s.times[i]);
+					hours[h] += s.players[i];
+					hours[24 + h]++;
+				}
+			}
+
+			byte[] rawBytes = raw.toByteArray();
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			deflater.setInput(rawBytes);
+			deflater.finish();
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(rawBytes.length / 4 + 64);
+			byte[] buf = new byte[8192];
+			while ( !deflater.finished() ) {
+				int len = deflater.deflate(buf);
+				compressed.write(buf, 0, len);
+			}
+			deflater.end();
+
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			header.write(RECORD_BLOCK);
+			writeVarLong(header, start);
+			writeVarLong(header, end);
+			writeVarLong(header, ids.length);
+			int prevId = 0;
+			int prevOffset = 0;
+			for ( int i = 0; i < ids.length; i++ ) {
+				writeVarLong(header, ids[i] - prevId);
+				writeVarLong(header, offsets[i] - prevOffset);
+				prevId = ids[i];
+				prevOffset = offsets[i];
+			}
+			writeVarLong(header, regionHours.size());
+			for ( Map.Entry<Integer, long[]> e : regionHours.entrySet() ) {
+				writeVarLong(header, e.getKey());
+				for ( long v : e.getValue() ) {
+					writeVarLong(header, v);
+				}
+			}
+			writeVarLong(header, rawBytes.length);
+			writeVarLong(header, compressed.size());
+
+			Block b = new Block();
+			b.start = start;
+			b.end = end;
+			b.serverIds = ids;
+			b.offsets = offsets;
+			b.regionHours = regionHours;
+			b.rawLength = rawBytes.length;
+			b.compressedLength = compressed.size();
+			b.offset = length + pendingRecords.size() + header.size();
+
+			FileOutputStream out = new FileOutputStream(file, true);
+			try {
+				pendingRecords.writeTo(out);
+				header.writeTo(out);
+				compressed.writeTo(out);
+			} finally {
+				out.close();
+			}
+			blocks.add(b);
+			pendingRecords.reset();
+			pending.clear();
+			pendingCount = 0;
+		} catch (IOException e) {
+			// The dictionary records and samples are kept for the next flush.
+			e.printStackTrace();
+			if ( file.length() > length ) {
+				truncate(length);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the samples recorded through {@link #recordLater(Collection)} and writes out
+	 * the buffered samples. Call this when the application exits.
+	 */
+	public void close() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		flush();
+	}
+
+	/**
+	 * Gets the number of blocks that have been written out.
+	 *
+	 * @return the number of blocks
+	 */
+	public synchronized int getBlockCount() {
+		return blocks.size();
+	}
+
+	/**
+	 * Reads the dictionary records and block headers of the file.
+	 */
+	private void load() {
+		long good = 0;
+		CountingInputStream counter = null;
+		try {
+			counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+			DataInputStream in = new DataInputStream(counter);
+			int type;
+			while ( (type = in.read()) != -1 ) {
+				if ( type == RECORD_SERVER ) {
+					int id = (int) readVarLong(in);
+					String key = in.readUTF();
+					String region = in.readUTF();
+					if ( id != serverRegions.size() ) {
+						throw new IOException("Out of order server id " + id);
+					}
+					serverIds.put(key, id);
+					serverRegions.add(regionId(region));
+				} else if ( type == RECORD_MAP ) {
+					int id = (int) readVarLong(in);
+					String name = in.readUTF();
+					if ( id != maps.size() ) {
+						throw new IOException("Out of order map id " + id);
+					}
+					mapIds.put(name, id);
+					maps.add(name);
+				} else if ( type == RECORD_BLOCK ) {
+					Block b = new Block();
+					b.start = readVarLong(in);
+					b.end = readVarLong(in);
+					int n = (int) readVarLong(in);
+					b.serverIds = new int[n];
+					b.offsets = new int[n];
+					int id = 0;
+					int offset = 0;
+					for ( int i = 0; i < n; i++ ) {
+						id += (int) readVarLong(in);
+						offset += (int) readVarLong(in);
+						b.serverIds[i] = id;
+						b.offsets[i] = offset;
+					}
+					int r = (int) readVarLong(in);
+					b.regionHours = new HashMap<Integer, long[]>();
+					for ( int i = 0; i < r; i++ ) {
+						long[] hours = new long[48];
+						int region = (int) readVarLong(in);
+						for ( int h = 0; h < hours.length; h++ ) {
+							hours[h] = readVarLong(in);
+						}
+						b.regionHours.put(region, hours);
+					}
+					b.rawLength = (int) readVarLong(in);
+					b.compressedLength = (int) readVarLong(in);
+					b.offset = counter.position;
+					if ( b.offset + b.compressedLength > file.length() ) {
+						throw new EOFException();
+					}
+					in.skipBytes(b.compressedLength);
+					blocks.add(b);
+				} else {
+					throw new IOException("Unknown record type " + type);
+				}
+				good = counter.position;
+			}
+		} catch (IOException e) {
+			// Records are only kept once they are read whole, so everything kept ends at good.
+			System.out.println("Population history is damaged after byte " + good + ", dropping the rest.");
+			truncate(good);
+		} finally {
+			if ( counter != null ) {
+				try {
+					counter.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cuts the population file off after its last good record.
+	 *
+	 * @param length the length of the good part of the file
+	 */
+	private void truncate(long length) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(length);
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads and inflates the payload of a block.
+	 *
+	 * @param b the block
+	 * @return the inflated payload
+	 * @throws IOException
+	 * @throws DataFormatException
+	 */
+	private byte[] inflate(Block b) throws IOException, DataFormatException {
+		if ( b == cachedBlock ) {
+			return cachedPayload;
+		}
+		byte[] compressed = new byte[b.compressedLength];
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			raf.seek(b.offset);
+			raf.readFully(compressed);
+		} finally {
+			raf.close();
+		}
+		byte[] payload = new byte[b.rawLength];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			int len = 0;
+			while ( len < payload.length && !inflater.finished() ) {
+				len += inflater.inflate(payload, len, payload.length - len);
+			}
+		} finally {
+			inflater.end();
+		}
+		cachedBlock = b;
+		cachedPayload = payload;
+		return payload;
+	}
+
+	/**
+	 * Gets the id of a server, adding it to the dictionary if it is new.
+	 *
+	 * @param cs the server
+	 * @return the server's id
+	 */
+	private int serverId(ChivServer cs) {
+		String key = cs.mIP + ":" + cs.mQueryPort;
+		Integer id = serverIds.get(key);
+		if ( id == null ) {
+			id = serverRegions.size();
+			String region = cs.mLocation == null || cs.mLocation.equals("") ? UNKNOWN_REGION : cs.mLocation;
+			serverIds.put(key, id);
+			serverRegions.add(regionId(region));
+			try {
+				DataOutputStream out = new DataOutputStream(pendingRecords);
+				out.write(RECORD_SERVER);
+				writeVarLong(out, id);
+				out.writeUTF(key);
+				out.writeUTF(region);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the id of a map, adding it to the dictionary if it is new.
+	 *
+	 * @param map the map name
+	 * @return the map's id
+	 */
+	private int mapId(String map) {
+		if ( map == null ) {
+			map = "";
+		}
+		Integer id = mapIds.get(map);
+		if ( id == null ) {
+			id = maps.size();
+			mapIds.put(map, id);
+			maps.add(map);
+			try {
+				DataOutputStream out = new DataOutputStream(pendingRecords);
+				out.write(RECORD_MAP);
+				writeVarLong(out, id);
+				out.writeUTF(map);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the id of a region, adding it if it is new. Regions are only kept in memory; they
+	 * are rebuilt from the server records when the file is read.
+	 *
+	 * @param region the region name
+	 * @return the region's id
+	 */
+	private int regionId(String region) {
+		Integer id = regionIds.get(region);
+		if ( id == null ) {
+			id = regions.size();
+			regionIds.put(region, id);
+			regions.add(region);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the hourly totals of a region, creating them if needed. The first 24 entries are the
+	 * sums of the players of each hour and the last 24 are the number of samples.
+	 *
+	 * @param totals the hourly totals by region id
+	 * @param region the region id
+	 * @return the hourly totals of the region
+	 */
+	private static long[] hours(HashMap<Integer, long[]> totals, int region) {
+		long[] t = totals.get(region);
+		if ( t == null ) {
+			t = new long[48];
+			totals.put(region, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Gets the hour of the day of a time in the local time zone.
+	 *
+	 * @param time the time in milliseconds
+	 * @return the hour of the day (0 to 23)
+	 */
+	private static int hourOfDay(long time) {
+		long local = time + TimeZone.getDefault().getOffset(time);
+		return (int) (((local / 3600000) % 24 + 24) % 24);
+	}
+
+	/**
+	 * Maps a signed value to an unsigned one so small negative deltas stay short.
+	 *
+	 * @param v the signed value
+	 * @return the zigzag encoded value
+	 */
+	private static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	/**
+	 * Reverses {@link #zigzag(long)}.
+	 *
+	 * @param v the zigzag encoded value
+	 * @return the signed value
+	 */
+	private static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Writes an unsigned variable length integer, 7 bits per byte.
+	 *
+	 * @param out the stream to write to
+	 * @param v the value
+	 * @throws IOException
+	 */
+	private static void writeVarLong(OutputStream out, long v) throws IOException {
+		while ( (v & ~0x7FL) != 0 ) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	/**
+	 * Writes an unsigned variable length integer, 7 bits per byte.
+	 *
+	 * @param out the stream to write to
+	 * @param v the value
+	 */
+	private static void writeVarLong(ByteArrayOutputStream out, long v) {
+		while ( (v & ~0x7FL) != 0 ) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 *
+	 * @param in the stream to read from
+	 * @return the value
+	 * @throws IOException
+	 */
+	private static long readVarLong(InputStream in) throws IOException {
+		long v = 0;
+		for ( int shift = 0; shift < 64; shift += 7 ) {
+			int b = in.read();
+			if ( b == -1 ) {
+				throw new EOFException();
+			}
+			v |= (long) (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 ) {
+				return v;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Reads an unsigned variable length integer from a buffer.
+	 *
+	 * @param buf the buffer
+	 * @param pos the position to read from; it is moved past the value
+	 * @return the value
+	 * @throws IOException
+	 */
+	private static long readVarLong(byte[] buf, int[] pos) throws IOException {
+		long v = 0;
+		for ( int shift = 0; shift < 64; shift += 7 ) {
+			if ( pos[0] >= buf.length ) {
+				throw new EOFException();
+			}
+			int b = buf[pos[0]++];
+			v |= (long) (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 ) {
+				return v;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 *
+	 * Samples of a server's population, oldest first.
+	 *
+	 */
+	public static class Samples {
+
+		/** The times of the samples in milliseconds. */
+		protected long[] times = new long[16];
+		/** The number of players of each sample. */
+		protected int[] players = new int[16];
+		/** The map id of each sample. */
+		protected int[] mapIds = new int[16];
+		/** The number of samples. */
+		protected int size = 0;
+		/** The map names, indexed by map id. */
+		private ArrayList<String> names;
+
+		/**
+		 * Adds a sample.
+		 *
+		 * @param time the time in milliseconds
+		 * @param p the number of players
+		 * @param map the map id
+		 */
+		void add(long time, int p, int map) {
+			if ( size == times.length ) {
+				times = Arrays.copyOf(times, size * 2);
+				players = Arrays.copyOf(players, size * 2);
+				mapIds = Arrays.copyOf(mapIds, size * 2);
+			}
+			times[size] = time;
+			players[size] = p;
+			mapIds[size] = map;
+			size++;
+		}
+
+		/**
+		 * Gets the number of samples.
+		 *
+		 * @return the number of samples
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Gets the time of a sample.
+		 *
+		 * @param i the index of the sample
+		 * @return the time in milliseconds
+		 */
+		public long getTime(int i) {
+			return times[i];
+		}
+
+		/**
+		 * Gets the number of players of a sample.
+		 *
+		 * @param i the index of the sample
+		 * @return the number of players
+		 */
+		public int getPlayers(int i) {
+			return players[i];
+		}
+
+		/**
+		 * Gets the map of a sample.
+		 *
+		 * @param i the index of the sample
+		 * @return the map name
+		 */
+		public String getMap(int i) {
+			return names.get(mapIds[i]);
+		}
+
+	}
+
+	/**
+	 *
+	 * The header of a block of samples.
+	 *
+	 */
+	private static class Block {
+		/** The position of the compressed payload in the file. */
+		long offset;
+		/** The length of the compressed payload. */
+		int compressedLength;
+		/** The length of the inflated payload. */
+		int rawLength;
+		/** The time of the earliest sample, rounded down to the second. */
+		long start;
+		/** The time of the latest sample. */
+		long end;
+		/** The ids of the servers with samples in the block, in ascending order. */
+		int[] serverIds;
+		/** The position of each server's samples in the inflated payload. */
+		int[] offsets;
+		/** The hourly player totals of each region. See {@link PopulationStore#hours(HashMap, int)}. */
+		HashMap<Integer, long[]> regionHours;
+	}
+
+	/**
+	 *
+	 * Keeps track of how many bytes have been read from a stream.
+	 *
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		/** The number of bytes read or skipped. */
+		long position = 0;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if ( b != -1 ) {
+				position++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if ( n > 0 ) {
+				position += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			position += skipped;
+			return skipped;
+		}
+
+	}
+
+}
@@ -0,0 +1,298 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ *
+ * Finds the queryport of a server that is not in the {@link ServerIndex} from its IP address
+ * and gameport, without waiting for a refresh of all servers. It sends an A2S_INFO query to
+ * every likely queryport of the host at once from a single socket and takes the first reply
+ * whose gameport matches. The likely queryports come from the offset between the gameports
+ * and queryports of other known servers on the same host and from the usual Chivalry ports.
+ * <p>
+ * A queryport that is found is added to the index. A server that could not be found is not
+ * probed again for {@link #RETRY_INTERVAL}, and threads looking up the same server at the same
+ * time share one probe.
+ *
+ */
+public class QueryPortResolver {
+
+	/** How long in milliseconds to wait for a reply with the right gameport. */
+	public static final long PROBE_TIMEOUT = 800;
+	/** How long in milliseconds a server that could not be found is not probed again. */
+	public static final long RETRY_INTERVAL = 5 * 60 * 1000;
+	/** The most queryports probed for a single server. */
+	public static final int MAX_CANDIDATES = 64;
+	/** The default queryport of the first server on a host. */
+	private static final int DEFAULT_QUERYPORT = 27015;
+	/** The default gameport of the first server on a host. */
+	private static final int DEFAULT_GAMEPORT = 7777;
+	/** Offsets from the gameport that hosts commonly use for the queryport. */
+	private static final int[] OFFSETS = { 1, 2, -1, 10, 100, 1000, 10000, 20000 };
+	/** The A2S_INFO request. */
+	private static final byte[] A2S_INFO = infoRequest();
+
+	/** The index the queryports are taken from and added to. */
+	private final ServerIndex index;
+	/** When each server that could not be found was last probed, keyed by {@link ServerIndex#key(String, String)}. */
+	private final ConcurrentHashMap<Long, Long> misses = new ConcurrentHashMap<Long, Long>();
+	/** The probes that are running, keyed by {@link ServerIndex#key(String, String)}. */
+	private final ConcurrentHashMap<Long, FutureTask<Integer>> pending = new ConcurrentHashMap<Long, FutureTask<Integer>>();
+
+	/**
+	 * Creates a new QueryPortResolver.
+	 *
+	 * @param index the index of known servers
+	 */
+	public QueryPortResolver(ServerIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Finds the queryport of a server by probing its host, unless it is already in the index.
+	 * This blocks for at most about {@link #PROBE_TIMEOUT}.
+	 *
+	 * @param ip the IP address of the server
+	 * @param gameport the gameport of the server
+	 * @return the queryport; or null if no queryport of the host answered with that gameport
+	 */
+	public String resolve(final String ip, final String gameport) {
+		long key = ServerIndex.key(ip, gameport);
+		if ( key < 0 ) {
+			return null;
+		}
+		String known = index.getQueryPort(ip, gameport);
+		if ( known != null ) {
+			return known;
+		}
+		Long missed = misses.get(key);
+		if ( missed != null && System.currentTimeMillis() - missed < RETRY_INTERVAL ) {
+			return null;
+		}
+		final int port = (int) (key & 0xFFFF);
+		FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+			@Override
+			public Integer call() throws IOException {
+				return probe(ip, port, candidates(port, index.getQueryPorts(ip)), PROBE_TIMEOUT);
+			}
+		});
+		FutureTask<Integer> running = pending.putIfAbsent(key, task);
+		if ( running == null ) {
+			running = task;
+			task.run();
+			pending.remove(key, task);
+		}
+		int queryport = -1;
+		try {
+			queryport = running.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		}
+		if ( queryport < 0 ) {
+			misses.put(key, System.currentTimeMillis());
+			return null;
+		}
+		misses.remove(key);
+		index.putQueryPort(ip, gameport, queryport);
+		return String.valueOf(queryport);
+	}
+
+	/**
+	 * Gets the queryports to probe for a server, most likely first: the queryports that other
+	 * known servers on the host would have at the server's gameport, the ports next to their
+	 * queryports, and then the usual ports.
+	 *
+	 * @param gameport the gameport of the server
+	 * @param known the queryports of the known servers on the host, keyed by gameport
+	 * @return the queryports to probe, at most {@link #MAX_CANDIDATES}
+	 */
+	public static List<Integer> candidates(int gameport, Map<Integer, Integer> known) {
+		LinkedHashSet<Integer> ports = new LinkedHashSet<Integer>();
+		for ( Map.Entry<Integer, Integer> e : known.entrySet() ) {
+			addCandidate(ports, gameport, gameport + e.getValue() - e.getKey());
+		}
+		for ( Integer queryport : known.values() ) {
+			addCandidate(ports, gameport, queryport + 1);
+			addCandidate(ports, gameport, queryport - 1);
+		}
+		addCandidate(ports, gameport, gameport + DEFAULT_QUERYPORT - DEFAULT_GAMEPORT);
+		for ( int i = 0; i < 16; i++ ) {
+			addCandidate(ports, gameport, DEFAULT_QUERYPORT + i);
+		}
+		for ( int offset : OFFSETS ) {
+			addCandidate(ports, gameport, gameport + offset);
+		}
+		List<Integer> candidates = new ArrayList<Integer>(ports);
+		return candidates.size() > MAX_CANDIDATES ? candidates.subList(0, MAX_CANDIDATES) : candidates;
+	}
+
+	/**
+	 * Adds a queryport to probe if it is a valid port and not the gameport itself.
+	 *
+	 * @param ports the queryports to probe
+	 * @param gameport the gameport of the server
+	 * @param queryport the queryport
+	 */
+	private static void addCandidate(LinkedHashSet<Integer> ports, int gameport, int queryport) {
+		if ( queryport > 0 && queryport <= 0xFFFF && queryport != gameport ) {
+			ports.add(queryport);
+		}
+	}
+
+	/**
+	 * Sends an A2S_INFO query to each of the queryports at once and waits for the first reply
+	 * that reports the gameport. Queryports that have not answered are asked again halfway
+	 * through the timeout in case a packet was lost, and a server that answers with a challenge
+	 * is asked again with it.
+	 *
+	 * @param ip the IP address of the host
+	 * @param gameport the gameport of the server
+	 * @param queryports the queryports to probe
+	 * @param timeout how long in milliseconds to wait for the reply
+	 * @return the queryport that answered with the gameport; or -1 if none did in time
+	 * @throws IOException
+	 */
+	public static int probe(String ip, int gameport, List<Integer> queryports, long timeout) throws IOException {
+		InetAddress address = InetAddress.getByName(ip);
+		HashMap<Integer, InetSocketAddress> targets = new HashMap<Integer, InetSocketAddress>();
+		for ( Integer queryport : queryports ) {
+			targets.put(queryport, new InetSocketAddress(address, queryport));
+		}
+		DatagramChannel channel = DatagramChannel.open();
+		Selector selector = Selector.open();
+		try {
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ);
+			ByteBuffer request = ByteBuffer.wrap(A2S_INFO);
+			ByteBuffer reply = ByteBuffer.allocate(1400).order(ByteOrder.LITTLE_ENDIAN);
+			long start = System.nanoTime();
+			boolean resent = false;
+			sendAll(channel, request, queryports, targets);
+			while ( true ) {
+				long elapsed = (System.nanoTime() - start) / 1000000;
+				if ( elapsed >= timeout ) {
+					return -1;
+				}
+				if ( !resent && elapsed >= timeout / 2 ) {
+					sendAll(channel, request, queryports, targets);
+					resent = true;
+				}
+				selector.select(Math.max(1, (resent ? timeout : timeout / 2) - elapsed));
+				selector.selectedKeys().clear();
+				InetSocketAddress from;
+				while ( (from = (InetSocketAddress) channel.receive(reply)) != null ) {
+					reply.flip();
+					if ( from.getAddress().equals(address) && targets.containsKey(from.getPort()) ) {
+						int reported = readReply(channel, from, reply);
+						if ( reported == gameport ) {
+							return from.getPort();
+						}
+					}
+					reply.clear();
+				}
+			}
+		} finally {
+			selector.close();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Sends the A2S_INFO request to the queryports.
+	 *
+	 * @param channel the channel
+	 * @param request the request
+	 * @param queryports the queryports
+	 * @param targets the addresses of the queryports
+	 * @throws IOException
+	 */
+	private static void sendAll(DatagramChannel channel, ByteBuffer request, List<Integer> queryports,
+			HashMap<Integer, InetSocketAddress> targets) throws IOException {
+		for ( Integer queryport : queryports ) {
+			request.rewind();
+			channel.send(request, targets.get(queryport));
+		}
+	}
+
+	/**
+	 * Reads an A2S_INFO reply. If it is a challenge, the request is sent again with it.
+	 *
+	 * @param channel the channel to answer a challenge on
+	 * @param from the queryport that replied
+	 * @param reply the reply, in little endian
+	 * @return the gameport the server reported; or -1 if there is none
+	 * @throws IOException
+	 */
+	private static int readReply(DatagramChannel channel, InetSocketAddress from, ByteBuffer reply) throws IOException {
+		try {
+			if ( reply.getInt() != -1 ) {
+				return -1;
+			}
+			byte type = reply.get();
+			if ( type == 'A' ) {
+				ByteBuffer request = ByteBuffer.allocate(A2S_INFO.length + 4);
+				request.put(A2S_INFO).put(reply.get()).put(reply.get()).put(reply.get()).put(reply.get()).flip();
+				channel.send(request, from);
+				return -1;
+			}
+			if ( type != 'I' ) {
+				return -1;
+			}
+			reply.get();
+			for ( int i = 0; i < 4; i++ ) {
+				skipString(reply);
+			}
+			reply.position(reply.position() + 9);
+			skipString(reply);
+			if ( !reply.hasRemaining() || (reply.get() & 0x80) == 0 ) {
+				return -1;
+			}
+			return reply.getShort() & 0xFFFF;
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Skips a null terminated string.
+	 *
+	 * @param buffer the buffer
+	 */
+	private static void skipString(ByteBuffer buffer) {
+		while ( buffer.get() != 0 ) {}
+	}
+
+	/**
+	 * Builds the A2S_INFO request.
+	 *
+	 * @return the request
+	 */
+	private static byte[] infoRequest() {
+		byte[] payload = "TSource Engine Query\0".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+		byte[] request = new byte[payload.length + 4];
+		request[0] = request[1] = request[2] = request[3] = (byte) 0xFF;
+		System.arraycopy(payload, 0, request, 4, payload.length);
+		return request;
+	}
+
+}
@@ -3,8 +3,6 @@ package com.tranek.chivalryserverbrowser;
 import java.util.HashMap;
 import java.util.Vector;
 
-import javax.swing.table.DefaultTableModel;
-
 /**
  * 
  * Synchronization object for {@link QueryWorker} threads. It synchronizes access to the
@@ -14,7 +12,7 @@ import javax.swing.table.DefaultTableModel;
 public class QueryWorkerSynch {
 	
 	/** The server list tab's data model. */
-	private final DefaultTableModel dataModel;
+	private final ServerTableModel dataModel;
 	/** The MainWindow's list of currently queried servers for this server list. */
 	private final Vector<ChivServer> servers;
 	/** A reference to the MainWindow. */
@@ -27,20 +25,21 @@ public class QueryWorkerSynch {
 	 * @param servs the {@link MainWindow}'s list of currently queried servers for this server list
 	 * @param mw the MainWindow
 	 */
-	public QueryWorkerSynch(DefaultTableModel datamodel, Vector<ChivServer> servs, MainWindow mw) {
+	public QueryWorkerSynch(ServerTableModel datamodel, Vector<ChivServer> servs, MainWindow mw) {
 		this.dataModel = datamodel;
 		this.servers = servs;
 		this.mw = mw;
 	}
 	
 	/**
-	 * Adds a row of data to the server list tab's server table.
+	 * Adds a server to the server list tab's server table. The server is added on the
+	 * event dispatch thread together with the others published in the same frame.
 	 * 
-	 * @param rowData the row data to add to the table
-	 * @see DefaultTableModel#addRow(Object[])
+	 * @param cs the ChivServer to add to the table
+	 * @see ServerTableModel#publish(ChivServer)
 	 */
-	public synchronized void addToTable(Object[] rowData) {
-		dataModel.addRow(rowData);
+	public void addToTable(ChivServer cs) {
+		dataModel.publish(cs);
 	}
 	
 	/**
@@ -11,6 +11,8 @@ public abstract class Refresher extends Thread {
 	protected MainWindow mw;
 	private ServerListInterface sl;
 	protected MasterServerQuery msq;
+	/** Whether or not this Refresher was stopped, which already ended its refresh of the map markers. */
+	private volatile boolean stopped = false;
 	
 	/**
 	 * Creates a new Refresher.
@@ -26,14 +28,13 @@ public abstract class Refresher extends Thread {
 	/**
 	 * Starts querying the servers.
 	 * 
-	 * @see MasterServerQuery#queryServers(ServerFilters, javax.swing.table.DefaultTableModel)
+	 * @see MasterServerQuery#queryServers(ServerFilters, ServerTableModel)
 	 * @see Thread#run()
 	 */
 	public void run() {
 		try {
 			System.out.println("Refreshing servers...");
-			String mctext = mw.messageCenter.getText();
-			if ( mctext.equals("") ) {
+			if ( mw.messageLog.isEmpty() ) {
 				mw.printMC("Refreshing servers...");
 			} else {
 				mw.printlnMC("Refreshing servers...");
@@ -44,6 +45,8 @@ public abstract class Refresher extends Thread {
 			Vector<ChivServer> servers = sl.getServerList();
 			
 			if ( servers != null ) {
+				mw.population.recordLater(servers);
+				mw.serverIndex.update(servers);
 				int count = 0;
 				for (ChivServer cs : servers){
 					count += Integer.parseInt(cs.mCurrentPlayers);
@@ -60,6 +63,9 @@ public abstract class Refresher extends Thread {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		if ( !stopped ) {
+			mw.endMarkerRefresh(sl);
+		}
 	}
 	
 	/**
@@ -69,10 +75,13 @@ public abstract class Refresher extends Thread {
 	 */
 	public void stopRefreshing() {
 		if ( isRefreshing() ) {
+			stopped = true;
 			Vector<ChivServer> serversClone;
 			msq.stopRefreshing(mw);
 			if ( sl.getServerList() != null ) {
 				serversClone = mw.deepCopyCSVector(sl.getServerList());
+				mw.population.recordLater(serversClone);
+				mw.serverIndex.update(serversClone);
 				int count = 0;
 				for (ChivServer cs : serversClone){
 					count += Integer.parseInt(cs.mCurrentPlayers);
@@ -83,6 +92,7 @@ public abstract class Refresher extends Thread {
 				System.out.println("Retrieved 0 servers.");
 				mw.printlnMC("Retrieved 0 servers.");
 			}
+			mw.endMarkerRefresh(sl);
 		}
 	}
 	
@@ -0,0 +1,110 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.Timer;
+
+/**
+ *
+ * Hands rows from worker threads to a table on the event dispatch thread in batches. Workers
+ * {@link #publish(Object)} rows into a lock free queue, and the first row after the queue has
+ * been drained schedules one drain a frame later. Every row published in the meantime is
+ * handed to the {@link Sink} in that one drain, so a table fires one event and its row sorter
+ * sorts once per frame however fast the workers are.
+ *
+ * @param <T> the type of the rows
+ */
+public class RowPublisher<T> implements ActionListener {
+
+	/** How long in milliseconds rows are gathered before they are drained; about one frame. */
+	public static final int FRAME_DELAY = 16;
+
+	/** The rows that have not been drained yet. */
+	private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+	/** Whether or not a drain has been scheduled. */
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	/** The timer that drains the queue on the event dispatch thread. */
+	private final Timer timer;
+	/** Where the rows are drained to. */
+	private final Sink<T> sink;
+
+	/**
+	 * Creates a new RowPublisher.
+	 *
+	 * @param sink where the rows are drained to on the event dispatch thread
+	 */
+	public RowPublisher(Sink<T> sink) {
+		this.sink = sink;
+		timer = new Timer(FRAME_DELAY, this);
+		timer.setRepeats(false);
+		// A drain can take longer than a frame, and a coalescing timer would drop the drain
+		// scheduled while it runs.
+		timer.setCoalesce(false);
+	}
+
+	/**
+	 * Queues a row to be drained on the event dispatch thread.
+	 * <p>
+	 * This method is thread safe and does not block.
+	 *
+	 * @param row the row
+	 */
+	public void publish(T row) {
+		queue.offer(row);
+		if ( scheduled.compareAndSet(false, true) ) {
+			timer.start();
+		}
+	}
+
+	/**
+	 * Drains the queue now. This must be called on the event dispatch thread, such as before
+	 * changing the table in a way that the queued rows must come before.
+	 */
+	public void flush() {
+		List<T> rows = new ArrayList<T>();
+		T row;
+		while ( (row = queue.poll()) != null ) {
+			rows.add(row);
+		}
+		if ( !rows.isEmpty() ) {
+			sink.drain(rows);
+		}
+	}
+
+	/**
+	 * Drops the rows that have not been drained yet.
+	 */
+	public void discard() {
+		queue.clear();
+	}
+
+	/**
+	 * Drains the queue when the timer fires.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		scheduled.set(false);
+		flush();
+	}
+
+	/**
+	 *
+	 * Receives the rows of a {@link RowPublisher}.
+	 *
+	 * @param <T> the type of the rows
+	 */
+	public interface Sink<T> {
+		/**
+		 * Adds a batch of rows to the table. This is called on the event dispatch thread.
+		 *
+		 * @param rows the rows, in the order they were published
+		 */
+		void drain(List<T> rows);
+	}
+
+}
@@ -0,0 +1,217 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.awt.EventQueue;
+import java.util.Arrays;
+
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ *
+ * The player list of a {@link ServerTab}, kept up to date from one A2S_PLAYER reply after
+ * another. The players of a reply are added with {@link #addPlayer(String, int, float)} and
+ * compared with the last reply by {@link #publish(long)} on the querying thread. An unchanged
+ * scoreboard costs a few comparisons and nothing is handed to the event dispatch thread. A
+ * changed one is applied to the table model as a diff: rows of players that are still on the
+ * server are updated in place, only in the cells that changed, and players who joined or left
+ * are inserted or removed, so the selection and the scroll position of the table are kept.
+ * <p>
+ * The Time Connected column holds the time each player connected at in milliseconds rather
+ * than how long ago that was, so it does not change from one poll to the next; the table shows
+ * it as a duration with a {@link ConnectedRenderer}.
+ * <p>
+ * Replies may come from any thread, but only from one at a time.
+ *
+ */
+public class Scoreboard {
+
+	/** How far in milliseconds the time a player connected at may move between replies and still be the same connection. */
+	public static final long CONNECT_TOLERANCE = 3000;
+
+	/** The table model: the player name, the score, and the time the player connected at. */
+	private final DefaultTableModel model;
+	/** The names of the players of the last published reply. */
+	private String[] names = new String[0];
+	/** The scores of the players of the last published reply. */
+	private int[] scores = new int[0];
+	/** The times the players of the last published reply connected at. */
+	private long[] connected = new long[0];
+	/** The number of players of the last published reply. */
+	private int count = 0;
+	/** The names of the players of the reply being added. */
+	private String[] replyNames = new String[64];
+	/** The scores of the players of the reply being added. */
+	private int[] replyScores = new int[64];
+	/** How many seconds the players of the reply being added have been connected. */
+	private float[] replyTimes = new float[64];
+	/** The number of players of the reply being added. */
+	private int replyCount = 0;
+	/** Which players of the last published reply have been matched while comparing. */
+	private boolean[] matched = new boolean[64];
+
+	/**
+	 * Creates a new Scoreboard.
+	 *
+	 * @param model the table model with the columns Player Name, Score, and Time Connected
+	 */
+	public Scoreboard(DefaultTableModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Adds a player of the reply being added.
+	 *
+	 * @param name the name of the player
+	 * @param score the score of the player
+	 * @param connectTime how many seconds the player has been connected
+	 */
+	public void addPlayer(String name, int score, float connectTime) {
+		if ( replyCount == replyNames.length ) {
+			replyNames = Arrays.copyOf(replyNames, replyCount * 2);
+			replyScores = Arrays.copyOf(replyScores, replyCount * 2);
+			replyTimes = Arrays.copyOf(replyTimes, replyCount * 2);
+		}
+		replyNames[replyCount] = name;
+		replyScores[replyCount] = score;
+		replyTimes[replyCount] = connectTime;
+		replyCount++;
+	}
+
+	/**
+	 * Compares the reply that has been added with the last one, and if it changed applies it
+	 * to the table model on the event dispatch thread. The next call to
+	 * {@link #addPlayer(String, int, float)} starts a new reply.
+	 *
+	 * @param now the time the reply was received at in milliseconds
+	 * @return true if the scoreboard changed; false if it is the same as the last reply
+	 */
+	public boolean publish(long now) {
+		int n = replyCount;
+		replyCount = 0;
+		if ( unchanged(n, now) ) {
+			return false;
+		}
+		final String[] newNames = Arrays.copyOf(replyNames, n);
+		final int[] newScores = Arrays.copyOf(replyScores, n);
+		final long[] newConnected = new long[n];
+		for ( int i = 0; i < n; i++ ) {
+			newConnected[i] = now - (long) (replyTimes[i] * 1000);
+			replyNames[i] = null;
+		}
+		names = newNames;
+		scores = newScores;
+		connected = newConnected;
+		count = n;
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				apply(newNames, newScores, newConnected);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Gets whether or not the reply that has been added has the same players, with the same
+	 * scores and connections, as the last published reply. The players may be in any order.
+	 *
+	 * @param n the number of players of the reply
+	 * @param now the time the reply was received at in milliseconds
+	 * @return true if nothing changed
+	 */
+	private boolean unchanged(int n, long now) {
+		if ( n != count ) {
+			return false;
+		}
+		if ( matched.length < n ) {
+			matched = new boolean[n * 2];
+		}
+		Arrays.fill(matched, 0, n, false);
+		for ( int i = 0; i < n; i++ ) {
+			long since = now - (long) (replyTimes[i] * 1000);
+			// The players usually come back in the same order, so the same index is tried first
+			int j = i;
+			if ( matched[j] || !replyNames[i].equals(names[j]) ) {
+				j = find(names, n, matched, replyNames[i]);
+				if ( j < 0 ) {
+					return false;
+				}
+			}
+			if ( scores[j] != replyScores[i] || Math.abs(connected[j] - since) > CONNECT_TOLERANCE ) {
+				return false;
+			}
+			matched[j] = true;
+		}
+		for ( int i = 0; i < n; i++ ) {
+			replyNames[i] = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Applies a changed reply to the table model. This is called on the event dispatch thread.
+	 *
+	 * @param newNames the names of the players
+	 * @param newScores the scores of the players
+	 * @param newConnected the times the players connected at
+	 */
+	private void apply(String[] newNames, int[] newScores, long[] newConnected) {
+		boolean[] placed = new boolean[newNames.length];
+		for ( int row = model.getRowCount() - 1; row >= 0; row-- ) {
+			int i = find(newNames, newNames.length, placed, (String) model.getValueAt(row, 0));
+			if ( i < 0 ) {
+				model.removeRow(row);
+				continue;
+			}
+			placed[i] = true;
+			if ( ((Integer) model.getValueAt(row, 1)).intValue() != newScores[i] ) {
+				model.setValueAt(newScores[i], row, 1);
+			}
+			if ( Math.abs((Long) model.getValueAt(row, 2) - newConnected[i]) > CONNECT_TOLERANCE ) {
+				model.setValueAt(newConnected[i], row, 2);
+			}
+		}
+		for ( int i = 0; i < newNames.length; i++ ) {
+			if ( !placed[i] ) {
+				model.addRow(new Object[] {newNames[i], newScores[i], newConnected[i]});
+			}
+		}
+	}
+
+	/**
+	 * Finds the first player with a name that has not been matched yet.
+	 *
+	 * @param names the names of the players
+	 * @param n the number of players
+	 * @param matched which players have been matched
+	 * @param name the name to find
+	 * @return the index of the player; or -1 if there is none
+	 */
+	private static int find(String[] names, int n, boolean[] matched, String name) {
+		for ( int i = 0; i < n; i++ ) {
+			if ( !matched[i] && names[i].equals(name) ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 *
+	 * Shows the time a player connected at as how long ago that was, as "h m s".
+	 *
+	 */
+	@SuppressWarnings("serial")
+	public static class ConnectedRenderer extends DefaultTableCellRenderer {
+		@Override
+		protected void setValue(Object value) {
+			if ( value instanceof Long ) {
+				long seconds = (System.currentTimeMillis() - (Long) value) / 1000;
+				setText(NumberCell.duration((int) Math.max(0, seconds)).toString());
+			} else {
+				super.setValue(value);
+			}
+		}
+	}
+
+}
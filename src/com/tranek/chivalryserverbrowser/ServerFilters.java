@@ -1,14 +1,33 @@
 package com.tranek.chivalryserverbrowser;
 
+import java.util.BitSet;
+
+import javax.swing.RowFilter;
+
 /**
  * 
  * A data structure class that holds all of the server filters for a {@link ServerListInterface}.
+ * The filters are applied to the servers already queried with {@link #toRowFilter()}, so
+ * changing them does not query the servers again.
  *
  */
 public class ServerFilters {
 	
+	/** The lowercase prefixes of the names of the Official Servers. */
+	private static final String[] OFFICIAL_PREFIXES = {
+		"official duel ping limit", "official duel server", "official classic ping limit",
+		"official classic rank 1-20", "official classic server", "official ffa ping limit",
+		"official ffa server", "official lts ping limit", "official lts server",
+		"official tdm ping limit", "official tdm server", "official to ping limit",
+		"official to server", "official beta server", "official beta to",
+		"official beta  to", // thanks Kimiko
+		"official beta duels"
+	};
+	
 	/** Server name filter. */
 	protected String name;
+	/** Whether or not the server name filter ignores punctuation and allows typos. It is not saved. */
+	protected boolean fuzzyName;
 	/** Game mode filter. */
 	protected String type;
 	/** Hide passworded servers filter. */
@@ -79,4 +98,185 @@ public class ServerFilters {
 		this.numThreads = numthreads;
 	}
 
+	/**
+	 * Creates a copy of these filters.
+	 * 
+	 * @return the copy
+	 */
+	public ServerFilters copy() {
+		ServerFilters copy = new ServerFilters(name, type, hidePassword, minRank, maxRank, maxPing, hideEmpty,
+				hideFull, officialservers, perspective, numThreads);
+		copy.fuzzyName = fuzzyName;
+		return copy;
+	}
+	
+	/**
+	 * Gets whether or not these filters let every server through.
+	 * 
+	 * @return true if no filter is set
+	 */
+	public boolean isEmpty() {
+		return !hidePassword && !hideEmpty && !hideFull && maxPing < 0 && minRank < 0 && maxRank < 0
+				&& perspective == 0 && !officialservers && matchesAnyType() && ( name == null || name.equals("") );
+	}
+	
+	/**
+	 * Gets whether or not a server passes these filters.
+	 * 
+	 * @param cs the server
+	 * @return true if the server passes
+	 */
+	public boolean matches(ChivServer cs) {
+		return matches(cs.mName, cs.mGameMode, parse(cs.mCurrentPlayers), parse(cs.mMaxPlayers), parse(cs.mPing),
+				parse(cs.mMinRank), parse(cs.mMaxRank), "1".equals(cs.mHasPassword), parse(cs.mPerspective));
+	}
+	
+	/**
+	 * Gets whether or not a server passes these filters. -1 is the default (not set) for the numbers.
+	 * 
+	 * @param serverName the server name
+	 * @param gameMode the game mode
+	 * @param players the current players
+	 * @param maxPlayers the maximum players
+	 * @param ping the ping
+	 * @param serverMinRank the minimum rank
+	 * @param serverMaxRank the maximum rank
+	 * @param password whether or not the server has a password
+	 * @param serverPerspective the server's allowed player perspectives
+	 * @return true if the server passes
+	 */
+	public boolean matches(String serverName, String gameMode, int players, int maxPlayers, int ping,
+			int serverMinRank, int serverMaxRank, boolean password, int serverPerspective) {
+		if ( hidePassword && password ) {
+			return false;
+		}
+		if ( hideEmpty && players <= 0 ) {
+			return false;
+		}
+		if ( hideFull && players >= maxPlayers ) {
+			return false;
+		}
+		if ( maxPing > -1 && ping > maxPing ) {
+			return false;
+		}
+		if ( minRank > -1 && serverMinRank <= minRank ) {
+			return false;
+		}
+		if ( maxRank > -1 && serverMaxRank >= maxRank ) {
+			return false;
+		}
+		if ( perspective != 0 && serverPerspective != perspective ) {
+			return false;
+		}
+		if ( !matchesAnyType() && !type.equals(gameMode) ) {
+			return false;
+		}
+		if ( serverName == null ) {
+			return false;
+		}
+		if ( officialservers ) {
+			for ( String prefix : OFFICIAL_PREFIXES ) {
+				if ( serverName.regionMatches(true, 0, prefix, 0, prefix.length()) ) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if ( fuzzyName && name != null ) {
+			return NameIndex.fuzzyMatches(serverName, name);
+		}
+		return containsIgnoreCase(serverName, name);
+	}
+	
+	/**
+	 * Creates a row filter for a server table from a copy of these filters, so later changes to
+	 * these filters do not change the rows shown until a new row filter is set. The server name
+	 * is searched for in the table's name index once for all of the rows, and again only after
+	 * the names in the table change.
+	 * 
+	 * @return the row filter; or null if no filter is set
+	 * @see ServerTableModel#matches(int, ServerFilters)
+	 * @see ServerTableModel#searchNames(String, boolean)
+	 */
+	public RowFilter<ServerTableModel, Integer> toRowFilter() {
+		if ( isEmpty() ) {
+			return null;
+		}
+		final ServerFilters filters = copy();
+		final String term = officialservers || name == null ? "" : name;
+		filters.name = "";
+		return new RowFilter<ServerTableModel, Integer>() {
+			/** The rows whose names match, from the names at {@link #version}. */
+			private BitSet names;
+			/** The version of the names that {@link #names} was searched in. */
+			private int version;
+			
+			@Override
+			public boolean include(Entry<? extends ServerTableModel, ? extends Integer> entry) {
+				ServerTableModel model = entry.getModel();
+				int row = entry.getIdentifier();
+				if ( !term.equals("") ) {
+					if ( names == null || version != model.getNamesVersion() ) {
+						names = model.searchNames(term, filters.fuzzyName);
+						version = model.getNamesVersion();
+					}
+					if ( !names.get(row) ) {
+						return false;
+					}
+				}
+				return model.matches(row, filters);
+			}
+		};
+	}
+	
+	/**
+	 * Gets whether or not the game mode filter lets every game mode through.
+	 * 
+	 * @return true if the game mode filter is "All"
+	 */
+	private boolean matchesAnyType() {
+		return type == null || type.equalsIgnoreCase("All");
+	}
+	
+	/**
+	 * Gets whether or not a string contains another, ignoring case, without creating lowercase copies.
+	 * 
+	 * @param s the string to search
+	 * @param part the string to search for
+	 * @return true if s contains part
+	 */
+	static boolean containsIgnoreCase(String s, String part) {
+		if ( part == null || part.length() == 0 ) {
+			return true;
+		}
+		char lower = Character.toLowerCase(part.charAt(0));
+		char upper = Character.toUpperCase(part.charAt(0));
+		int last = s.length() - part.length();
+		for ( int i = 0; i <= last; i++ ) {
+			char c = s.charAt(i);
+			if ( ( c == lower || c == upper || Character.toLowerCase(c) == lower )
+					&& s.regionMatches(true, i + 1, part, 1, part.length() - 1) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Parses a number of a server that may be missing after a failed query.
+	 * 
+	 * @param value the number
+	 * @return the number; or 0 if it is missing or not a number
+	 */
+	private static int parse(String value) {
+		if ( value == null || value.equals("") ) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
 }
@@ -0,0 +1,249 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * An in-memory index of every known server by its IPv4 address and gameport. It maps to the
+ * server's queryport and the latest {@link ChivServer} seen for it, so that looking up a
+ * friend's server does not need the database or a query to the server while that snapshot is
+ * still fresh. The index is loaded from the servers table at startup and updated after every
+ * refresh.
+ *
+ */
+public class ServerIndex {
+
+	/** How long in milliseconds a server snapshot is used before the server is queried again. */
+	public static final long MAX_AGE = 2 * 60 * 1000;
+
+	/** The index, keyed by {@link #key(String, String)}. */
+	private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<Long, Entry>();
+	/** Whether or not the servers table has been loaded. */
+	private volatile boolean loaded = false;
+
+	/**
+	 * Creates a new empty ServerIndex.
+	 */
+	public ServerIndex() {}
+
+	/**
+	 * Loads the endpoints of all of the servers in the servers table. Entries added by
+	 * refreshes in the meantime are kept.
+	 *
+	 * @param db the database
+	 * @see BrowserDatabase#getServers()
+	 */
+	public void load(BrowserDatabase db) {
+		for ( ChivServer cs : db.getServers() ) {
+			long key = key(cs.mIP, cs.mGamePort);
+			int queryport = parsePort(cs.mQueryPort);
+			if ( key > -1 && queryport > -1 ) {
+				entries.putIfAbsent(key, new Entry(queryport, null, 0));
+			}
+		}
+		loaded = true;
+	}
+
+	/**
+	 * Gets whether or not the servers table has been loaded yet. Until it has, a miss in the
+	 * index does not mean that the server is unknown.
+	 *
+	 * @return true if the servers table has been loaded
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Updates the index with the servers of a refresh.
+	 *
+	 * @param servers the refreshed servers
+	 */
+	public void update(Collection<ChivServer> servers) {
+		long now = System.currentTimeMillis();
+		for ( ChivServer cs : new ArrayList<ChivServer>(servers) ) {
+			update(cs, now);
+		}
+	}
+
+	/**
+	 * Updates the index with a server that was just queried.
+	 *
+	 * @param cs the server
+	 */
+	public void update(ChivServer cs) {
+		update(cs, System.currentTimeMillis());
+	}
+
+	/**
+	 * Updates the index with a server.
+	 *
+	 * @param cs the server
+	 * @param time when the server was queried in milliseconds
+	 */
+	private void update(ChivServer cs, long time) {
+		if ( cs == null ) {
+			return;
+		}
+		long key = key(cs.mIP, cs.mGamePort);
+		int queryport = parsePort(cs.mQueryPort);
+		if ( key > -1 && queryport > -1 ) {
+			entries.put(key, new Entry(queryport, cs.clone(), time));
+		}
+	}
+
+	/**
+	 * Gets a copy of the latest snapshot of a server if it is no older than {@link #MAX_AGE}.
+	 *
+	 * @param ip the server's IP address
+	 * @param gameport the server's gameport
+	 * @return a copy of the server; or null if there is no fresh snapshot
+	 */
+	public ChivServer getFresh(String ip, String gameport) {
+		Entry e = entries.get(key(ip, gameport));
+		if ( e == null || e.server == null || System.currentTimeMillis() - e.updated > MAX_AGE ) {
+			return null;
+		}
+		return e.server.clone();
+	}
+
+	/**
+	 * Gets the queryport of a server.
+	 *
+	 * @param ip the server's IP address
+	 * @param gameport the server's gameport
+	 * @return the queryport; or null if the server is not in the index
+	 */
+	public String getQueryPort(String ip, String gameport) {
+		Entry e = entries.get(key(ip, gameport));
+		if ( e == null ) {
+			return null;
+		}
+		return String.valueOf(e.queryport);
+	}
+
+	/**
+	 * Adds the queryport of a server that is not in the index yet, such as one found by the
+	 * {@link QueryPortResolver}.
+	 *
+	 * @param ip the server's IP address
+	 * @param gameport the server's gameport
+	 * @param queryport the server's queryport
+	 */
+	public void putQueryPort(String ip, String gameport, int queryport) {
+		long key = key(ip, gameport);
+		if ( key > -1 && queryport >= 0 && queryport <= 0xFFFF ) {
+			entries.putIfAbsent(key, new Entry(queryport, null, 0));
+		}
+	}
+
+	/**
+	 * Gets the gameports and queryports of all of the known servers on a host.
+	 *
+	 * @param ip the IP address of the host
+	 * @return the queryports keyed by gameport; empty if the address is not valid
+	 */
+	public HashMap<Integer, Integer> getQueryPorts(String ip) {
+		HashMap<Integer, Integer> ports = new HashMap<Integer, Integer>();
+		long host = key(ip, "0");
+		if ( host < 0 ) {
+			return ports;
+		}
+		for ( java.util.Map.Entry<Long, Entry> e : entries.entrySet() ) {
+			long key = e.getKey();
+			if ( (key & ~0xFFFFL) == host ) {
+				ports.put((int) (key & 0xFFFF), e.getValue().queryport);
+			}
+		}
+		return ports;
+	}
+
+	/**
+	 * Gets the number of servers in the index.
+	 *
+	 * @return the number of servers
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Packs an IPv4 address and a port into a single key: the address in the upper bits
+	 * and the port in the lower 16 bits.
+	 *
+	 * @param ip the IPv4 address in dotted decimal
+	 * @param port the port
+	 * @return the key; or -1 if the address or port is not valid
+	 */
+	static long key(String ip, String port) {
+		int p = parsePort(port);
+		if ( ip == null || p < 0 ) {
+			return -1;
+		}
+		long address = 0;
+		int octet = -1;
+		int octets = 0;
+		for ( int i = 0; i < ip.length(); i++ ) {
+			char c = ip.charAt(i);
+			if ( c >= '0' && c <= '9' ) {
+				octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+				if ( octet > 255 ) {
+					return -1;
+				}
+			} else if ( c == '.' && octet > -1 && octets < 3 ) {
+				address = (address << 8) | octet;
+				octet = -1;
+				octets++;
+			} else {
+				return -1;
+			}
+		}
+		if ( octet < 0 || octets != 3 ) {
+			return -1;
+		}
+		address = (address << 8) | octet;
+		return (address << 16) | p;
+	}
+
+	/**
+	 * Parses a port.
+	 *
+	 * @param port the port
+	 * @return the port number; or -1 if it is not a valid port
+	 */
+	private static int parsePort(String port) {
+		if ( port == null ) {
+			return -1;
+		}
+		try {
+			int p = Integer.parseInt(port.trim());
+			return p >= 0 && p <= 0xFFFF ? p : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 *
+	 * An entry of the index.
+	 *
+	 */
+	private static class Entry {
+		/** The server's queryport. */
+		final int queryport;
+		/** The latest snapshot of the server; or null if it was only loaded from the database. */
+		final ChivServer server;
+		/** When the snapshot was taken in milliseconds. */
+		final long updated;
+
+		Entry(int queryport, ChivServer server, long updated) {
+			this.queryport = queryport;
+			this.server = server;
+			this.updated = updated;
+		}
+	}
+
+}
@@ -1,8 +1,6 @@
 package com.tranek.chivalryserverbrowser;
 import java.util.Vector;
 
-import javax.swing.table.DefaultTableModel;
-
 /**
  * The interface for the server list tabs. It allows guarantees of certain methods
  * so that I can pass in a ServerListInterface as a parameter in other functions.
@@ -10,6 +8,8 @@ import javax.swing.table.DefaultTableModel;
 public interface ServerListInterface {
 	/** Refreshes this server list tab's servers. */
 	public void RefreshServers();
+	/** Filters this server list tab's servers again after its filters have changed. */
+	public void applyFilters();
 	/** Gets the reference to the MainWindow. */
 	public MainWindow getMW();
 	/** Gets this server list tab's current list of servers held by the MainWindow. */
@@ -17,7 +17,7 @@ public interface ServerListInterface {
 	/** Gets this server list tab's current filters. */
 	public ServerFilters getFilters();
 	/** Gets this server list tab's table model. */
-	public DefaultTableModel getTableModel();
+	public ServerTableModel getTableModel();
 	/** Whether or not this server list tab is currently refreshing its servers. */
 	public boolean isRefreshing();
 }
@@ -1,15 +1,9 @@
 package com.tranek.chivalryserverbrowser;
 
 import java.awt.BorderLayout;
-import java.io.File;
 import java.util.Vector;
 
 import javax.swing.JPanel;
-import javax.swing.table.DefaultTableModel;
-
-import com.almworks.sqlite4java.SQLiteConnection;
-import com.almworks.sqlite4java.SQLiteException;
-import com.almworks.sqlite4java.SQLiteStatement;
 
 /**
  * 
@@ -19,6 +13,9 @@ import com.almworks.sqlite4java.SQLiteStatement;
 @SuppressWarnings("serial")
 public abstract class ServerListTab extends JPanel implements ServerListInterface {
 
+	/** How long in milliseconds until changing the filters hints that the queried servers should be refreshed. */
+	public static final long STALE_INTERVAL = 10 * 60 * 1000;
+
 	/** A reference to the MainWindow. */
 	protected final MainWindow mw;
 	/** The server filters for this server list. */
@@ -31,6 +28,10 @@ public abstract class ServerListTab extends JPanel implements ServerListInterfac
 	protected final ServerTable st;
 	/** The name of this server list's filter database. */
 	protected String filterTableName;
+	/** When this server list was last refreshed; or 0 if it has not been. */
+	private long lastRefresh = 0;
+	/** Whether or not the user was told that the queried servers are stale since the last refresh. */
+	private boolean staleHinted = false;
 	
 	/**
 	 * Creates a new ServerListTab.
@@ -68,12 +69,33 @@ public abstract class ServerListTab extends JPanel implements ServerListInterfac
 		}
 		
 		updateFilters();
+		st.setFilters(sf);
 
-		((DefaultTableModel)st.dataModel).setRowCount(0);
+		st.dataModel.clear();
 		
+		lastRefresh = System.currentTimeMillis();
+		staleHinted = false;
 		startRefresher();
 	}
 	
+	/**
+	 * Filters the servers already queried again after the {@link FiltersPanel} has changed,
+	 * without querying them again. If they were queried more than {@link #STALE_INTERVAL}
+	 * ago the user is told once to refresh them; they are never queried from here.
+	 */
+	public void applyFilters() {
+		if ( lastRefresh > 0 && !staleHinted && !isRefreshing() && System.currentTimeMillis() - lastRefresh > STALE_INTERVAL ) {
+			staleHinted = true;
+			mw.printlnMC("The server list is more than " + STALE_INTERVAL / 60000 + " minutes old. "
+					+ "Click \"Refresh Server List\" to query the servers again.");
+		}
+		updateFilters();
+		st.setFilters(sf);
+		if ( lastRefresh > 0 ) {
+			mw.showMarkers(this);
+		}
+	}
+	
 	/**
 	 * Refreshes the server list.
 	 */
@@ -84,29 +106,35 @@ public abstract class ServerListTab extends JPanel implements ServerListInterfac
 	 */
 	public void updateFilters() {
 		sf.name = fp.serverNameFilter.getText();
+		sf.fuzzyName = fp.chckbxFuzzyName.isSelected();
 		sf.type = (String) fp.gameModeList.getSelectedItem();
-		if ( !fp.maxPingFilter.getText().equals("") ) {
-			sf.maxPing = Integer.parseInt(fp.maxPingFilter.getText());
-		} else {
-			sf.maxPing = -1;
-		}
+		sf.maxPing = parseFilter(fp.maxPingFilter.getText());
 		sf.hidePassword = fp.chckbxHidePasswordedServers.isSelected();
 		sf.hideEmpty = fp.chckbxHideEmptyServers.isSelected();
 		sf.hideFull = fp.chckbxHideFullServers.isSelected();
-		if ( !fp.minRankFilter.getText().equals("") ) {
-			sf.minRank = Integer.parseInt(fp.minRankFilter.getText());
-		} else {
-			sf.minRank = -1;
-		}
-		if ( !fp.maxRankFilter.getText().equals("") ) {
-			sf.maxRank = Integer.parseInt(fp.maxRankFilter.getText());
-		} else {
-			sf.maxRank = -1;
-		}
+		sf.minRank = parseFilter(fp.minRankFilter.getText());
+		sf.maxRank = parseFilter(fp.maxRankFilter.getText());
 		sf.officialservers = fp.chckbxOfficialServersOnly.isSelected();
 		sf.perspective = fp.cBPerspective.getSelectedIndex();
 		sf.numThreads = (int) fp.spNumThreads.getValue();
 	}
+	
+	/**
+	 * Parses a number filter from the {@link FiltersPanel}.
+	 * 
+	 * @param text the text of the filter
+	 * @return the number; or -1 (not set) if it is empty or too large
+	 */
+	private static int parseFilter(String text) {
+		if ( text.equals("") ) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(text);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
 		
 	/**
 	 * Sets the {@link FiltersPanel} values. This is typically called after loading
@@ -162,155 +190,36 @@ public abstract class ServerListTab extends JPanel implements ServerListInterfac
 	/**
 	 * Load the server filters from the database and call 
 	 * {@link #setUIFilters(String, String, int, int, int, boolean, boolean, boolean, boolean, int, int)}
+	 * once they have been read, without blocking the event dispatch thread.
+	 * 
+	 * @param refresh whether or not to refresh the server list with the loaded filters
+	 * @see BrowserDatabase#loadFilters(String, BrowserDatabase.Callback)
 	 */
-	public void loadFilters() {
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS " + filterTableName +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"name varchar(255) not null default ''," +
-					"type varchar(255) not null default ''," +
-					"minrank int not null default -1," +
-					"maxrank int not null default -1," +
-					"maxping int not null default -1," +
-					"hidepassword int not null default 0," +
-					"hideempty int not null default 0," +
-					"hidefull int not null default 0," +
-					"officialonly int not null default 0," +
-					"perspective int not null default 0," +
-					"numthreads int not null default 0" +
-					")");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			boolean hasEntry = false;
-			st = db.prepare("SELECT COUNT(*) FROM " + filterTableName);
-			try {
-				st.step();
-				if ( st.columnInt(0) > 0 ) {
-					hasEntry = true;
+	public void loadFilters(final boolean refresh) {
+		mw.db.loadFilters(filterTableName, new BrowserDatabase.Callback<ServerFilters>() {
+			@Override
+			public void done(ServerFilters saved) {
+				if ( saved != null ) {
+					setUIFilters(saved.name, saved.type, saved.minRank, saved.maxRank, saved.maxPing, saved.hidePassword,
+							saved.hideEmpty, saved.hideFull, saved.officialservers, saved.perspective, saved.numThreads);
+				} else {
+					System.out.println("No entries");
 				}
-			} finally {
-				st.dispose();
-			}
-
-			if ( hasEntry ) {
-				String name = "";
-				String type = "";
-				int minrank = -1;
-				int maxrank = -1;
-				int maxping = -1;
-				boolean hidepassword = false;
-				boolean hideempty = false;
-				boolean hidefull = false;
-				boolean officialonly = false;
-				int perspective = 0;
-				int numthreads = 8;
-				st = db.prepare("SELECT * FROM " + filterTableName + " WHERE id=1");
-				try {
-					st.step();
-					name = st.columnString(1);
-					type = st.columnString(2);
-					minrank = st.columnInt(3);
-					maxrank = st.columnInt(4);
-					maxping = st.columnInt(5);
-					if ( st.columnInt(6) == 1 ) {
-						hidepassword = true;
-					}
-					if ( st.columnInt(7) == 1 ) {
-						hideempty = true;
-					}
-					if ( st.columnInt(8) == 1 ) {
-						hidefull = true;
-					}
-					if ( st.columnInt(9) == 1 ) {
-						officialonly = true;
-					}
-					perspective = st.columnInt(10);
-					numthreads = st.columnInt(11);
-					
-					setUIFilters(name, type, minrank, maxrank, maxping, hidepassword, hideempty, hidefull,
-							officialonly, perspective, numthreads);
-				} finally {
-					st.dispose();
+				if ( refresh ) {
+					RefreshServers();
 				}
-			} else {
-				System.out.println("No entries");
 			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
+		});
 	}
 	
 	/**
 	 * Call {@link #updateFilters()} and then save the server filters to the database.
+	 * 
+	 * @see BrowserDatabase#saveFilters(String, ServerFilters)
 	 */
 	public void saveFilters() {
 		updateFilters();
-		
-		SQLiteConnection db = new SQLiteConnection(new File("browserdb"));
-		try {
-			db.open(true);		
-			SQLiteStatement st = db.prepare("CREATE TABLE IF NOT EXISTS " + filterTableName +
-					"(" +
-					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"name varchar(255) not null default ''," +
-					"type varchar(255) not null default ''," +
-					"minrank int not null default -1," +
-					"maxrank int not null default -1," +
-					"maxping int not null default -1," +
-					"hidepassword int not null default 0," +
-					"hideempty int not null default 0," +
-					"hidefull int not null default 0," +
-					"officialonly int not null default 0," +
-					"perspective int not null default 0," +
-					"numthreads int not null default 0" +
-					")");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-			int password = 0;
-			if ( sf.hidePassword ) {
-				password = 1;
-			}
-			int empty = 0;
-			if ( sf.hideEmpty ) {
-				empty = 1;
-			}
-			int full = 0;
-			if ( sf.hideFull ) {
-				full = 1;
-			}
-			int official = 0;
-			if ( sf.officialservers ) {
-				official = 1;
-			}
-			
-			st = db.prepare("INSERT OR REPLACE INTO " + filterTableName + " (id, name, type, minrank, maxrank, maxping, " +
-					"hidepassword, hideempty, hidefull, officialonly, perspective, numthreads) " +
-					"VALUES (  1, '" + sf.name + "', '" + sf.type + "', " + sf.minRank + ", " + sf.maxRank +
-					", " + sf.maxPing + ", " + password + ", " + empty + ", " + full + ", " + official + ", " +
-					sf.perspective + ", " + sf.numThreads + ")");
-			try {
-				st.step();
-			} finally {
-				st.dispose();
-			}
-			
-		} catch (SQLiteException e) {
-			e.printStackTrace();
-		}
-		db.dispose();
+		mw.db.saveFilters(filterTableName, sf);
 	}
 	
 	/**
@@ -340,11 +249,11 @@ public abstract class ServerListTab extends JPanel implements ServerListInterfac
 	/**
 	 * Get this server lists table model.
 	 * 
-	 * @see DefaultTableModel
+	 * @see ServerTableModel
 	 */
 	@Override
-	public DefaultTableModel getTableModel() {
-		return (DefaultTableModel)(st.dataModel);
+	public ServerTableModel getTableModel() {
+		return st.dataModel;
 	}
 
 	/**
@@ -59,6 +59,39 @@ public class ServerQuery {
 		return null;
 	}
 	
+	/**
+	 * Gets the currently connected players through a session that is kept between calls, for
+	 * polling the same server again and again. The first call resolves the address and gets a
+	 * challenge number from the server; later calls reuse both and send only the A2S_PLAYER
+	 * request. If a poll fails the session is closed and the next call starts a new one.
+	 * 
+	 * @return a HashMap of the {@link SteamPlayer} connected; or null if the server did not answer
+	 * @see #close()
+	 */
+	public HashMap<String, SteamPlayer> pollPlayers() {
+		try {
+			if ( server == null ) {
+				server = new SourceServer(InetAddress.getAllByName(ip)[0], queryport);
+			}
+			server.updatePlayers();
+			return server.getPlayers();
+		} catch (NumberFormatException | UnknownHostException
+				| SteamCondenserException | TimeoutException e) {
+			close();
+		}
+		return null;
+	}
+	
+	/**
+	 * Closes the session kept by {@link #pollPlayers()}.
+	 */
+	public void close() {
+		if ( server != null ) {
+			server.disconnect();
+			server = null;
+		}
+	}
+	
 	/**
 	 * Gets the information of the server.
 	 * 
@@ -1,6 +1,7 @@
 package com.tranek.chivalryserverbrowser;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
@@ -9,20 +10,27 @@ import java.awt.datatransfer.StringSelection;
 import java.awt.datatransfer.Transferable;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTable;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 
@@ -36,6 +44,9 @@ import com.github.koraktor.steamcondenser.steam.SteamPlayer;
 @SuppressWarnings("serial")
 public class ServerTab extends JPanel{
 	
+	/** The default number of seconds between the polls of the player list when auto refreshing. */
+	public static final int AUTO_REFRESH_INTERVAL = 10;
+	
 	/** The ChivServer for this tab. */
 	private final ChivServer cs;
 	/** The JTable for the list of players currently on the server. */
@@ -58,6 +69,14 @@ public class ServerTab extends JPanel{
 	private final JLabel lblMapName;
 	/** Reference to itself. */
 	private final ServerTab st;
+	/** Keeps the player list table up to date from each player list reply. */
+	private final Scoreboard scoreboard;
+	/** JCheckBox for whether or not the player list is refreshed automatically. */
+	private final JCheckBox chckbxAutoRefresh;
+	/** The number of seconds between the polls of the player list when auto refreshing. */
+	private volatile int autoRefreshInterval = AUTO_REFRESH_INTERVAL;
+	/** The ScoreboardPoller while the player list is being refreshed automatically. */
+	private ScoreboardPoller poller;
 	
 	/** 
 	 * Creates a new ServerTab.
@@ -157,11 +176,31 @@ public class ServerTab extends JPanel{
 		btnRefresh.setBounds(626, 102, 95, 25);
 		btnRefresh.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
-				dataModel.setRowCount(0);
 				refresh();
 			}
 		});
 		
+		chckbxAutoRefresh = new JCheckBox("Auto Refresh every");
+		chckbxAutoRefresh.setBounds(380, 102, 140, 25);
+		chckbxAutoRefresh.setToolTipText("Keeps the player list up to date while this tab is shown.");
+		chckbxAutoRefresh.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				updatePolling();
+			}
+		});
+		
+		final JSpinner spnInterval = new JSpinner(new SpinnerNumberModel(AUTO_REFRESH_INTERVAL, 2, 300, 1));
+		spnInterval.setBounds(520, 102, 50, 25);
+		spnInterval.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				autoRefreshInterval = (Integer) spnInterval.getValue();
+			}
+		});
+		
+		JLabel lblSeconds = new JLabel("s");
+		lblSeconds.setBounds(576, 102, 20, 25);
+		
 		JLabel lblLocation = new JLabel("Location:");
 		lblLocation.setBounds(777, 28, 52, 16);
 		JLabel lblLoc = new JLabel("<html><U><FONT COLOR=BLUE>" + cs.mLocation + "</FONT></U></html>");
@@ -267,6 +306,9 @@ public class ServerTab extends JPanel{
 		panel.add(lblPersp);
 		panel.add(lblPerspective);
 		panel.add(btnRefresh);
+		panel.add(chckbxAutoRefresh);
+		panel.add(spnInterval);
+		panel.add(lblSeconds);
 		panel.add(lblPng);
 		panel.add(lblPing);
 		panel.add(lblLocation);
@@ -276,15 +318,19 @@ public class ServerTab extends JPanel{
 			public boolean isCellEditable(int row, int column){  
 				return false;  
 			}
-			// Treats the Score column as a number so that it is not sorted as a String
+			// Sorts the Score column as a number and the Time Connected column by the time the player connected at
 			public Class<?> getColumnClass(int columnIndex) {
 				if (columnIndex == 1) {
 					return Integer.class;
+				} else if (columnIndex == 2) {
+					return Long.class;
 				}
 				return super.getColumnClass(columnIndex);
 			}
 		};
+		scoreboard = new Scoreboard(dataModel);
 		playerListTable = new JTable(dataModel);
+		playerListTable.getColumnModel().getColumn(2).setCellRenderer(new Scoreboard.ConnectedRenderer());
 		playerListTable.setBounds(437, 121, -426, 166);
 		
 		JScrollPane playerListScrollPane = new JScrollPane(playerListTable);
@@ -294,22 +340,21 @@ public class ServerTab extends JPanel{
 		playerListScrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
 		add(playerListScrollPane);
 		
-		playerListTable.setAutoCreateRowSorter(true);
-		TableRowSorter<?> trs = (TableRowSorter<?>) playerListTable.getRowSorter();
-		trs.setComparator(1, new Comparator<String>() {
+		TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<DefaultTableModel>(dataModel);
+		// The player who connected last has been connected the shortest time
+		sorter.setComparator(2, Collections.reverseOrder());
+		// Keeps the order while the scores of an auto refreshed player list change
+		sorter.setSortsOnUpdates(true);
+		playerListTable.setRowSorter(sorter);
+		
+		addHierarchyListener(new HierarchyListener() {
 			@Override
-			public int compare(String o1, String o2) {
-				int p1 = Integer.parseInt(o1);
-				int p2 = Integer.parseInt(o2);
-				if ( p1 < p2 ) {
-					return -1;
-				} else if ( p1 > p2 ) {
-					return 1;
+			public void hierarchyChanged(HierarchyEvent e) {
+				if ( (e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 ) {
+					updatePolling();
 				}
-				return 0;
-			}});
-		trs.setComparator(2, new TimeConnectedComparator());
-		
+			}
+		});
 		
 		refresh();
 	}
@@ -342,6 +387,36 @@ public class ServerTab extends JPanel{
 		sq.start();
 	}
 	
+	/**
+	 * Starts polling the player list if auto refresh is on and the tab is shown, and stops it
+	 * otherwise, such as when another tab is selected or this tab is closed.
+	 */
+	private void updatePolling() {
+		boolean poll = chckbxAutoRefresh.isSelected() && isShowing();
+		if ( poll && poller == null ) {
+			poller = new ScoreboardPoller();
+			poller.start();
+		} else if ( !poll && poller != null ) {
+			poller.stopPolling();
+			poller = null;
+		}
+	}
+	
+	/**
+	 * Hands a player list reply to the {@link Scoreboard}.
+	 * 
+	 * @param players the players of the reply
+	 * @return true if the player list changed
+	 */
+	private boolean publishPlayers(HashMap<String, SteamPlayer> players) {
+		synchronized (scoreboard) {
+			for ( SteamPlayer player : players.values() ) {
+				scoreboard.addPlayer(player.getName(), player.getScore(), player.getConnectTime());
+			}
+			return scoreboard.publish(System.currentTimeMillis());
+		}
+	}
+	
 	/**
 	 * 
 	 * Queries the server for its information.
@@ -356,58 +431,77 @@ public class ServerTab extends JPanel{
 			lblPlayers.setText(info.get("numberOfPlayers") + " / " +
 					info.get("maxPlayers"));
 			lblMapName.setText((String)info.get("mapName"));
+			Object numberOfPlayers = info.get("numberOfPlayers");
+			if ( numberOfPlayers instanceof Number ) {
+				mw.population.record(cs, ((Number) numberOfPlayers).intValue(), (String)info.get("mapName"));
+			}
 			HashMap<String, SteamPlayer> players = sq.getPlayers();
-			int numPlayers = 0;
-			for ( Object value : players.values() ) {
-				SteamPlayer player = (SteamPlayer)value;
-				float connectedTime = player.getConnectTime();
-				int hours = (int) Math.floor(connectedTime / 3600);
-				int minutes = (int) Math.floor( (connectedTime - hours*3600) / 60 );
-				int seconds = (int) Math.floor(connectedTime - hours*3600 - minutes*60);
-				String connected = hours + " h " + minutes + " m " + seconds + " s";
-				Object[] rowData = {player.getName(), "" + player.getScore(), connected};
-				dataModel.addRow(rowData);
-				numPlayers++;
+			if ( players == null ) {
+				mw.printlnMC("The server did not send its player list.");
+				return;
 			}
-			mw.printlnMC("Found " + numPlayers + " players on the server.");
+			publishPlayers(players);
+			mw.printlnMC("Found " + players.size() + " players on the server.");
 		}
 	}
 	
 	/**
 	 * 
-	 * Comparator to compare the time connected for each connected player.
+	 * Polls the player list of the server every few seconds through one {@link ServerQuery}
+	 * session and updates the rows that changed. An unchanged player list only repaints the
+	 * Time Connected column.
 	 *
 	 */
-	private class TimeConnectedComparator implements Comparator<String> {
+	private class ScoreboardPoller extends Thread {
+		
+		/** Whether or not the poller should keep running. */
+		private volatile boolean running = true;
+		
+		/**
+		 * Creates a new ScoreboardPoller.
+		 */
+		public ScoreboardPoller() {
+			super("ScoreboardPoller");
+			setDaemon(true);
+		}
+		
+		/**
+		 * Polls the player list until {@link #stopPolling()} is called.
+		 */
 		@Override
-		public int compare(String o1, String o2) {
-			String[] tokens1 = o1.split(" ");
-			String[] tokens2 = o2.split(" ");			
-			int h1 = Integer.parseInt(tokens1[0]);
-			int h2 = Integer.parseInt(tokens2[0]);
-			int m1 = Integer.parseInt(tokens1[2]);
-			int m2 = Integer.parseInt(tokens2[2]);
-			int s1 = Integer.parseInt(tokens1[4]);
-			int s2 = Integer.parseInt(tokens2[4]);
-			if ( h1 < h2 ) {
-				return -1;
-			} else if ( h1 > h2 ) {
-				return 1;
-			} else {
-				if ( m1 < m2 ) {
-					return -1;
-				} else if ( m1 > m2 ) {
-					return 1;
+		public void run() {
+			ServerQuery query = new ServerQuery(cs);
+			while ( running ) {
+				try {
+					Thread.sleep(autoRefreshInterval * 1000L);
+				} catch (InterruptedException e) {
+					break;
+				}
+				final HashMap<String, SteamPlayer> players = query.pollPlayers();
+				if ( players == null || !running ) {
+					continue;
+				}
+				if ( publishPlayers(players) ) {
+					EventQueue.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							lblPlayers.setText(players.size() + " / " + cs.mMaxPlayers);
+						}
+					});
 				} else {
-					if ( s1 < s2 ) {
-						return -1;
-					} else if ( s1 > s2 ) {
-						return 1;
-					}
+					playerListTable.repaint();
 				}
 			}
-			return 0;
-		}	
+			query.close();
+		}
+		
+		/**
+		 * Stops the poller.
+		 */
+		public void stopPolling() {
+			running = false;
+			interrupt();
+		}
 	}
 	
 }
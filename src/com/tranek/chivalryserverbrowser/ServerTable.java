@@ -1,5 +1,8 @@
 package com.tranek.chivalryserverbrowser;
+import java.awt.Color;
+import java.awt.Component;
 import java.awt.Cursor;
+import java.awt.Font;
 import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.ClipboardOwner;
@@ -10,14 +13,15 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.awt.font.TextAttribute;
+import java.util.HashMap;
 
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.ScrollPaneConstants;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableModel;
+import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableRowSorter;
 
 /**
@@ -32,10 +36,9 @@ public class ServerTable extends JScrollPane {
 	/** The JTable that contains all of the queried servers. */
 	private JTable serverListTable;
 	/** The data model for the server list table. */
-	protected TableModel dataModel;
-	/** The column headers for the server list table. */
-	private final String[] serverListColumnHeaders = {"Server Name", "IP Address:Port", "Type", "Map", "Players", "Ping",
-			"Location", "Pass", "Min Rank", "Max Rank"};
+	protected ServerTableModel dataModel;
+	/** Sorts the server list table and hides the servers that do not pass the server filters. */
+	private TableRowSorter<ServerTableModel> sorter;
 	/** A reference to the MainWindow. */
 	private MainWindow mw;
 	
@@ -46,27 +49,16 @@ public class ServerTable extends JScrollPane {
 	 */
 	public ServerTable(final ServerListInterface sl) {
 		mw = sl.getMW();
-		dataModel = new DefaultTableModel(serverListColumnHeaders, 0) {
-			public boolean isCellEditable(int row, int column){  
-				return false;  
-			}
-			// Treats the Player count, Ping, Min Rank, and Max Rank column as a number so that it is not sorted as a String
-			public Class<?> getColumnClass(int columnIndex) {
-				if (columnIndex == 4 || columnIndex == 5 || columnIndex == 8 || columnIndex == 9) {
-					return Integer.class;
-				}
-				return super.getColumnClass(columnIndex);
-			}
-		};
+		dataModel = new ServerTableModel();
 		
 		serverListTable = new JTable(dataModel);
 		serverListTable.addMouseMotionListener(new MouseMotionAdapter() {
 			@Override
 			public void mouseMoved(MouseEvent e) {
 				int row = serverListTable.rowAtPoint(e.getPoint());
-				int col = serverListTable.columnAtPoint(e.getPoint());
+				int col = serverListTable.convertColumnIndexToModel(serverListTable.columnAtPoint(e.getPoint()));
 				
-				if ( col == 1 && ((String)dataModel.getValueAt(row, col)) != null ) {
+				if ( row > -1 && col == ServerTableModel.COL_ENDPOINT ) {
 					setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
 				} else {
 					setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
@@ -78,48 +70,39 @@ public class ServerTable extends JScrollPane {
 			public void mouseClicked(MouseEvent e) {
 				final int tableRow = serverListTable.rowAtPoint(e.getPoint());
 				final int tableCol = serverListTable.columnAtPoint(e.getPoint());
+				if ( tableRow < 0 || tableCol < 0 ) {
+					return;
+				}
 				
 				// Fix by gregcau http://www.chivalrythegame.com/forums/viewtopic.php?f=69&t=10664&start=30#p99728
 				final int row = serverListTable.convertRowIndexToModel(tableRow);
 	            final int col = serverListTable.convertColumnIndexToModel(tableCol);
+	            final ChivServer cs = dataModel.getServer(row);
 				
-				if ( e.getButton() == MouseEvent.BUTTON1 && col == 1 &&
-						((String)dataModel.getValueAt(row, col)) != null ) {
+				if ( e.getButton() == MouseEvent.BUTTON1 && col == ServerTableModel.COL_ENDPOINT ) {
+					String ip = cs.mIP;
+					String port = cs.mGamePort;
+					String serverName = cs.mName;
 					
-					String stripped = ((String)dataModel.getValueAt(row, col)).substring(26);
-					stripped = stripped.split("<")[0];
-					String[] ipaddress = stripped.split(":");
-					String ip = ipaddress[0];
-					String port = ipaddress[1];
-					String serverName = (String)dataModel.getValueAt(row, 0);
-					
-					if ( ((String)dataModel.getValueAt(row, 7)).equals("Yes") ) {
+					if ( dataModel.hasPassword(row) ) {
 						String password = javax.swing.JOptionPane.showInputDialog("Please enter a password");
 						if ( password != null ) {
 							String urlstring = "steam://run/219640/en/" + ip + ":" + port + "%3fpassword=" + password;
-							mw.joinServer(urlstring, ip, port, serverName, sl);
+							mw.joinServer(urlstring, ip, port, serverName, cs);
 						}
 					} else {	
 						String urlstring = "steam://run/219640/en/" + ip + ":" + port;
-						mw.joinServer(urlstring, ip, port, serverName, sl);
+						mw.joinServer(urlstring, ip, port, serverName, cs);
 					}
 				}
 				
 				// Double click server name
-				if ( e.getButton() == MouseEvent.BUTTON1 && e.getClickCount() == 2 && col == 0 ) {
-					//String name = (String)dataModel.getValueAt(row, col);
-					String ip_port = ((String)dataModel.getValueAt(row, 1)).substring(26);
-					mw.addServerTab(ip_port, sl, false);
+				if ( e.getButton() == MouseEvent.BUTTON1 && e.getClickCount() == 2 && col == ServerTableModel.COL_NAME ) {
+					mw.addServerTab(cs, false);
 				}
 				
 				// Double click location
-				if ( e.getButton() == MouseEvent.BUTTON1 && e.getClickCount() == 2 && col == 6 ) {
-					String stripped = ((String)dataModel.getValueAt(row, 1)).substring(26);
-					stripped = stripped.split("<")[0];
-					String[] ipaddress = stripped.split(":");
-					String ip = ipaddress[0];
-					String port = ipaddress[1];
-					final ChivServer cs = mw.findChivServer(ip, port, sl);
+				if ( e.getButton() == MouseEvent.BUTTON1 && e.getClickCount() == 2 && col == ServerTableModel.COL_LOCATION ) {
 					mw.showInMap(cs);
 				}
 
@@ -127,12 +110,6 @@ public class ServerTable extends JScrollPane {
 					serverListTable.setRowSelectionInterval(tableRow, tableRow);
 					JPopupMenu rmbServerPopup = new JPopupMenu();
 					if ( sl == mw.serverListTab || sl == mw.serverListHistoryTab ) {
-						String stripped = ((String)dataModel.getValueAt(row, 1)).substring(26);
-						stripped = stripped.split("<")[0];
-						String[] ipaddress = stripped.split(":");
-						String ip = ipaddress[0];
-						String port = ipaddress[1];
-						final ChivServer cs = mw.findChivServer(ip, port, sl);
 						JMenuItem popFav = new JMenuItem("Add to favorites");
 						popFav.addActionListener(new ActionListener() {
 							public void actionPerformed(ActionEvent e) {
@@ -145,9 +122,7 @@ public class ServerTable extends JScrollPane {
 					popInfo.addActionListener(new ActionListener() {
 						@Override
 						public void actionPerformed(ActionEvent e) {
-							String stripped = ((String)dataModel.getValueAt(row, 1)).substring(26);
-							stripped = stripped.split("<")[0];
-							mw.addServerTab(stripped, sl, true);
+							mw.addServerTab(cs, true);
 						}
 					});
 					rmbServerPopup.add(popInfo);
@@ -156,7 +131,7 @@ public class ServerTable extends JScrollPane {
 						@Override
 						public void actionPerformed(ActionEvent e) {
 							Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-							StringSelection stringSelection = new StringSelection( (String)dataModel.getValueAt(row, 0) );
+							StringSelection stringSelection = new StringSelection( cs.mName );
 							clipboard.setContents(stringSelection, new ClipboardOwner() {
 								@Override
 								public void lostOwnership(Clipboard clipboard, Transferable contents) {}
@@ -169,9 +144,7 @@ public class ServerTable extends JScrollPane {
 						@Override
 						public void actionPerformed(ActionEvent e) {
 							Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-							String stripped = ((String)dataModel.getValueAt(row, 1)).substring(26);
-							stripped = stripped.split("<")[0];
-							StringSelection stringSelection = new StringSelection( stripped );
+							StringSelection stringSelection = new StringSelection( cs.mIP + ":" + cs.mGamePort );
 							clipboard.setContents(stringSelection, new ClipboardOwner() {
 								@Override
 								public void lostOwnership(Clipboard clipboard, Transferable contents) {}
@@ -183,12 +156,6 @@ public class ServerTable extends JScrollPane {
 					popShowInMap.addActionListener(new ActionListener() {
 						@Override
 						public void actionPerformed(ActionEvent e) {
-							String stripped = ((String)dataModel.getValueAt(row, 1)).substring(26);
-							stripped = stripped.split("<")[0];
-							String[] ipaddress = stripped.split(":");
-							String ip = ipaddress[0];
-							String port = ipaddress[1];
-							final ChivServer cs = mw.findChivServer(ip, port, sl);
 							mw.showInMap(cs);
 						}
 					});
@@ -210,9 +177,10 @@ public class ServerTable extends JScrollPane {
 		serverListTable.getColumnModel().getColumn(7).setMaxWidth(40); // Location
 		serverListTable.getColumnModel().getColumn(8).setPreferredWidth(30); // Min rank
 		serverListTable.getColumnModel().getColumn(9).setPreferredWidth(30); // Max rank
-		serverListTable.setAutoCreateRowSorter(true);
-		TableRowSorter<?> trs = (TableRowSorter<?>) serverListTable.getRowSorter();
-		trs.setComparator(4, new PlayerComparator());
+		serverListTable.getColumnModel().getColumn(ServerTableModel.COL_ENDPOINT).setCellRenderer(new LinkRenderer());
+		serverListTable.getColumnModel().getColumn(ServerTableModel.COL_PLAYERS).setCellRenderer(new PlayersRenderer());
+		sorter = new TableRowSorter<ServerTableModel>(dataModel);
+		serverListTable.setRowSorter(sorter);
 		
 		setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
 		setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
@@ -220,4 +188,72 @@ public class ServerTable extends JScrollPane {
 		setViewportView(serverListTable);
 	}
 	
+	/**
+	 * Shows only the servers that pass the server filters. The servers already in the table are
+	 * filtered again right away, and those added later are filtered as they are added.
+	 * 
+	 * @param sf the server filters
+	 * @see ServerFilters#toRowFilter()
+	 */
+	public void setFilters(ServerFilters sf) {
+		sorter.setRowFilter(sf.toRowFilter());
+	}
+	
+	/**
+	 * 
+	 * Renders the IP address column as a link: blue and underlined. The underlined font is
+	 * derived once and kept until the table's font changes.
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private static class LinkRenderer extends DefaultTableCellRenderer {
+		/** The font the underlined font was derived from. */
+		private Font base;
+		/** The underlined font. */
+		private Font underlined;
+		
+		@Override
+		public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+				boolean hasFocus, int row, int column) {
+			super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+			Font font = table.getFont();
+			if ( font != base ) {
+				HashMap<TextAttribute, Object> attributes = new HashMap<TextAttribute, Object>();
+				attributes.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
+				underlined = font.deriveFont(attributes);
+				base = font;
+			}
+			setFont(underlined);
+			if ( !isSelected ) {
+				setForeground(Color.BLUE);
+			}
+			return this;
+		}
+	}
+	
+	/**
+	 * 
+	 * Renders the players column as "current / maximum".
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private static class PlayersRenderer extends DefaultTableCellRenderer {
+		
+		/**
+		 * Creates a new PlayersRenderer.
+		 */
+		PlayersRenderer() {
+			setHorizontalAlignment(RIGHT);
+		}
+		
+		@Override
+		public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+				boolean hasFocus, int row, int column) {
+			super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+			int maxPlayers = ((ServerTableModel) table.getModel()).getMaxPlayers(table.convertRowIndexToModel(row));
+			setText(value + " / " + maxPlayers);
+			return this;
+		}
+	}
+	
 }
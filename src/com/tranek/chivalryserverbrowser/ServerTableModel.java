@@ -0,0 +1,446 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ *
+ * The data model of a {@link ServerTable}. Each row is a record of the {@link ChivServer} it
+ * shows and the numbers of its columns parsed once, so the cells are typed values rather than
+ * formatted strings: the players, ping and ranks are integers and the IP address column is the
+ * plain "ip:gameport" endpoint. How the cells look is left to the table's renderers.
+ * <p>
+ * The server of a row is found in constant time from the row, and the row of a server from
+ * its IP address and gameport. Adding a server that is already in the table replaces its row.
+ * <p>
+ * The server names are kept in a {@link NameIndex} so that they can be searched as the user types.
+ * <p>
+ * The numbers are kept as the Integer cells the row sorter compares, so sorting the table
+ * compares them without parsing or boxing anything.
+ * <p>
+ * The model is changed on the event dispatch thread. Query workers {@link #publish(ChivServer)}
+ * their servers, which are added in one batch per frame.
+ *
+ */
+@SuppressWarnings("serial")
+public class ServerTableModel extends AbstractTableModel {
+
+	/** The column of the server name. */
+	public static final int COL_NAME = 0;
+	/** The column of the IP address and gameport. */
+	public static final int COL_ENDPOINT = 1;
+	/** The column of the game mode. */
+	public static final int COL_TYPE = 2;
+	/** The column of the map. */
+	public static final int COL_MAP = 3;
+	/** The column of the current players. */
+	public static final int COL_PLAYERS = 4;
+	/** The column of the ping. */
+	public static final int COL_PING = 5;
+	/** The column of the location. */
+	public static final int COL_LOCATION = 6;
+	/** The column of whether or not the server has a password. */
+	public static final int COL_PASSWORD = 7;
+	/** The column of the minimum rank. */
+	public static final int COL_MIN_RANK = 8;
+	/** The column of the maximum rank. */
+	public static final int COL_MAX_RANK = 9;
+
+	/** The column headers. */
+	private static final String[] COLUMN_NAMES = {"Server Name", "IP Address:Port", "Type", "Map", "Players", "Ping",
+			"Location", "Pass", "Min Rank", "Max Rank"};
+
+	/** The rows; only the first {@link #rowCount} are used. */
+	private Row[] rows = new Row[64];
+	/** The number of rows. */
+	private int rowCount = 0;
+	/**
+	 * The open addressed hash table of the row of each server: the keys are
+	 * {@link ServerIndex#key(String, String)} plus one so that 0 is free, and the values are the rows.
+	 */
+	private long[] endpointKeys = new long[128];
+	/** The rows of {@link #endpointKeys}. */
+	private int[] endpointRows = new int[128];
+	/** The trigram index of the server names. */
+	private final NameIndex names = new NameIndex();
+	/** How many times the server names have changed; see {@link #getNamesVersion()}. */
+	private int namesVersion = 0;
+	/** Gathers the servers published by the query workers. */
+	private final RowPublisher<ChivServer> publisher;
+
+	/**
+	 * Creates a new empty ServerTableModel.
+	 */
+	public ServerTableModel() {
+		publisher = new RowPublisher<ChivServer>(new RowPublisher.Sink<ChivServer>() {
+			@Override
+			public void drain(List<ChivServer> servers) {
+				addServers(servers);
+			}
+		});
+	}
+
+	/**
+	 * Queues a server to be added on the event dispatch thread with the other servers
+	 * published in the same frame.
+	 * <p>
+	 * This method is thread safe.
+	 *
+	 * @param cs the server
+	 * @see RowPublisher
+	 */
+	public void publish(ChivServer cs) {
+		publisher.publish(cs);
+	}
+
+	/**
+	 * Adds a server to the table, or replaces its row if it is already in the table.
+	 *
+	 * @param cs the server
+	 */
+	public void addServer(ChivServer cs) {
+		addServers(Collections.singletonList(cs));
+	}
+
+	/**
+	 * Adds servers to the table, replacing the rows of those that are already in the table.
+	 * The new rows are announced with a single event.
+	 *
+	 * @param servers the servers
+	 */
+	public void addServers(List<ChivServer> servers) {
+		int first;
+		int firstUpdated = Integer.MAX_VALUE;
+		int lastUpdated = -1;
+		synchronized ( this ) {
+			first = rowCount;
+			for ( ChivServer cs : servers ) {
+				Row r = new Row(cs);
+				long key = ServerIndex.key(cs.mIP, cs.mGamePort);
+				int row = find(key);
+				if ( row > -1 ) {
+					if ( !String.valueOf(cs.mName).equals(String.valueOf(rows[row].server.mName)) ) {
+						names.add(row, cs.mName);
+					}
+					rows[row] = r;
+					if ( row < first ) {
+						firstUpdated = Math.min(firstUpdated, row);
+						lastUpdated = Math.max(lastUpdated, row);
+					}
+					continue;
+				}
+				row = rowCount;
+				if ( row == rows.length ) {
+					rows = Arrays.copyOf(rows, rows.length * 2);
+				}
+				if ( key > -1 ) {
+					insert(key, row);
+				}
+				rows[row] = r;
+				names.add(row, cs.mName);
+				rowCount++;
+			}
+			namesVersion++;
+		}
+		if ( lastUpdated > -1 ) {
+			fireTableRowsUpdated(firstUpdated, lastUpdated);
+		}
+		if ( rowCount > first ) {
+			fireTableRowsInserted(first, rowCount - 1);
+		}
+	}
+
+	/**
+	 * Removes all of the rows, along with any servers that were published but not added yet.
+	 */
+	public void clear() {
+		publisher.discard();
+		synchronized ( this ) {
+			Arrays.fill(rows, 0, rowCount, null);
+			rowCount = 0;
+			Arrays.fill(endpointKeys, 0);
+			names.clear();
+			namesVersion++;
+		}
+		fireTableDataChanged();
+	}
+
+	/**
+	 * Gets the server shown in a row.
+	 *
+	 * @param row the row in the model
+	 * @return the server
+	 */
+	public ChivServer getServer(int row) {
+		return rows[row].server;
+	}
+
+	/**
+	 * Gets the row of a server.
+	 *
+	 * @param ip the IP address of the server
+	 * @param gameport the gameport of the server
+	 * @return the row in the model; or -1 if the server is not in the table
+	 */
+	public synchronized int indexOf(String ip, String gameport) {
+		return find(ServerIndex.key(ip, gameport));
+	}
+
+	/**
+	 * Looks up the row of a server in the hash table.
+	 *
+	 * @param key the key of the server
+	 * @return the row; or -1 if the server is not in the table
+	 */
+	private int find(long key) {
+		if ( key < 0 ) {
+			return -1;
+		}
+		int mask = endpointKeys.length - 1;
+		for ( int i = hash(key) & mask; endpointKeys[i] != 0; i = (i + 1) & mask ) {
+			if ( endpointKeys[i] == key + 1 ) {
+				return endpointRows[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the row of a server that is not in the hash table yet, growing the table to keep
+	 * it at most half full.
+	 *
+	 * @param key the key of the server
+	 * @param row the row
+	 */
+	private void insert(long key, int row) {
+		if ( (rowCount + 1) * 2 > endpointKeys.length ) {
+			long[] oldKeys = endpointKeys;
+			int[] oldRows = endpointRows;
+			endpointKeys = new long[oldKeys.length * 2];
+			endpointRows = new int[oldKeys.length * 2];
+			for ( int i = 0; i < oldKeys.length; i++ ) {
+				if ( oldKeys[i] != 0 ) {
+					insert(oldKeys[i] - 1, oldRows[i]);
+				}
+			}
+		}
+		int mask = endpointKeys.length - 1;
+		int i = hash(key) & mask;
+		while ( endpointKeys[i] != 0 ) {
+			i = (i + 1) & mask;
+		}
+		endpointKeys[i] = key + 1;
+		endpointRows[i] = row;
+	}
+
+	/**
+	 * Spreads the bits of a key for the hash table.
+	 *
+	 * @param key the key
+	 * @return the hash
+	 */
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Gets the maximum players of the server in a row.
+	 *
+	 * @param row the row in the model
+	 * @return the maximum players
+	 */
+	public int getMaxPlayers(int row) {
+		return rows[row].maxPlayers;
+	}
+
+	/**
+	 * Gets whether or not the server in a row has a password.
+	 *
+	 * @param row the row in the model
+	 * @return true if the server has a password
+	 */
+	public boolean hasPassword(int row) {
+		return rows[row].password;
+	}
+
+	/**
+	 * Gets whether or not the server in a row passes the server filters.
+	 * 
+	 * @param row the row in the model
+	 * @param sf the server filters
+	 * @return true if the server passes
+	 * @see ServerFilters#toRowFilter()
+	 */
+	public boolean matches(int row, ServerFilters sf) {
+		Row r = rows[row];
+		return sf.matches(r.server.mName, r.server.mGameMode, r.players, r.maxPlayers, r.ping, r.minRank,
+				r.maxRank, r.password, r.perspective);
+	}
+
+	/**
+	 * Finds the rows whose server names contain a search term, ignoring case. A fuzzy search
+	 * also ignores everything but letters and digits and allows a few wrong characters, which
+	 * suits clan tags.
+	 * 
+	 * @param term the search term
+	 * @param fuzzy whether or not to search fuzzily
+	 * @return the rows in the model
+	 * @see NameIndex#search(String, boolean, int)
+	 */
+	public BitSet searchNames(String term, boolean fuzzy) {
+		BitSet found = names.search(term, fuzzy, rowCount);
+		if ( found == null ) {
+			// Too short for the index
+			found = new BitSet(rowCount);
+			for ( int row = 0; row < rowCount; row++ ) {
+				String name = rows[row].server.mName;
+				if ( name != null && ( fuzzy ? NameIndex.fuzzyMatches(name, term)
+						: ServerFilters.containsIgnoreCase(name, term) ) ) {
+					found.set(row);
+				}
+			}
+		} else {
+			// A replaced row keeps the trigrams of its old name, so every hit is checked against the current one
+			for ( int row = found.nextSetBit(0); row > -1; row = found.nextSetBit(row + 1) ) {
+				String name = rows[row].server.mName;
+				if ( name == null || !( fuzzy ? NameIndex.fuzzyMatches(name, term)
+						: ServerFilters.containsIgnoreCase(name, term) ) ) {
+					found.clear(row);
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Gets a number that changes whenever a server name in the table may have changed, so that
+	 * the results of {@link #searchNames(String, boolean)} can be kept until then.
+	 * 
+	 * @return the version of the server names
+	 */
+	public int getNamesVersion() {
+		return namesVersion;
+	}
+
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMN_NAMES.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return COLUMN_NAMES[column];
+	}
+
+	/**
+	 * Gets the class of a column. The players, ping and rank columns are integers so that
+	 * they are sorted as numbers.
+	 */
+	@Override
+	public Class<?> getColumnClass(int column) {
+		switch ( column ) {
+		case COL_PLAYERS:
+		case COL_PING:
+		case COL_MIN_RANK:
+		case COL_MAX_RANK:
+			return Integer.class;
+		default:
+			return String.class;
+		}
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		Row r = rows[row];
+		switch ( column ) {
+		case COL_NAME:
+			return r.server.mName;
+		case COL_ENDPOINT:
+			return r.endpoint;
+		case COL_TYPE:
+			return r.server.mGameMode;
+		case COL_MAP:
+			return r.server.mMap;
+		case COL_PLAYERS:
+			return r.players;
+		case COL_PING:
+			return r.ping;
+		case COL_LOCATION:
+			return r.server.mLocation;
+		case COL_PASSWORD:
+			return r.password ? "Yes" : "";
+		case COL_MIN_RANK:
+			return r.minRank;
+		case COL_MAX_RANK:
+			return r.maxRank;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Parses a number of a server, such as its ping, that may be missing after a failed query.
+	 *
+	 * @param value the number
+	 * @return the number; or 0 if it is missing or not a number
+	 */
+	private static int parse(String value) {
+		if ( value == null || value.equals("") ) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 *
+	 * A row of the table.
+	 *
+	 */
+	private static class Row {
+		/** The server of the row. */
+		final ChivServer server;
+		/** The IP address and gameport of the server. */
+		final String endpoint;
+		/** The current players. The sorted columns are boxed once here rather than on every comparison. */
+		final Integer players;
+		/** The maximum players. */
+		final int maxPlayers;
+		/** The ping. */
+		final Integer ping;
+		/** The minimum rank. */
+		final Integer minRank;
+		/** The maximum rank. */
+		final Integer maxRank;
+		/** Whether or not the server has a password. */
+		final boolean password;
+		/** The allowed player perspectives. */
+		final int perspective;
+
+		Row(ChivServer cs) {
+			server = cs;
+			endpoint = cs.mIP + ":" + cs.mGamePort;
+			players = parse(cs.mCurrentPlayers);
+			maxPlayers = parse(cs.mMaxPlayers);
+			ping = parse(cs.mPing);
+			minRank = parse(cs.mMinRank);
+			maxRank = parse(cs.mMaxRank);
+			password = "1".equals(cs.mHasPassword);
+			perspective = parse(cs.mPerspective);
+		}
+	}
+
+}
@@ -44,6 +44,10 @@ public class SettingsTab extends JPanel {
 	 * friends tab. Any changes to this will be reflected there and vice versa.
 	 */
 	protected JTextField tfSteamCommunityUrl;
+	/** The user's Steam Web API key. With a key, friends are looked up 100 at a time instead
+	 * of one profile at a time.
+	 */
+	protected JTextField tfSteamApiKey;
 	/** The X resolution value launch option. */
 	protected JTextField tfLaunchResX;
 	/** The Y resolution value launch option. */
@@ -82,7 +86,7 @@ public class SettingsTab extends JPanel {
 		
 		pnlSteamCommunity = new JPanel();
 		pnlSteamCommunity.setBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null));
-		pnlSteamCommunity.setBounds(22, 42, 966, 51);
+		pnlSteamCommunity.setBounds(22, 42, 966, 78);
 		add(pnlSteamCommunity);
 		pnlSteamCommunity.setLayout(null);
 		
@@ -121,6 +125,16 @@ public class SettingsTab extends JPanel {
 		pnlSteamCommunity.add(tfSteamCommunityUrl);
 		tfSteamCommunityUrl.setColumns(10);
 		
+		JLabel lblSteamApiKey = new JLabel("Steam Web API Key:");
+		lblSteamApiKey.setBounds(12, 45, 143, 16);
+		pnlSteamCommunity.add(lblSteamApiKey);
+		
+		tfSteamApiKey = new JTextField();
+		tfSteamApiKey.setToolTipText("Optional. Get a key at http://steamcommunity.com/dev/apikey");
+		tfSteamApiKey.setBounds(152, 42, 802, 22);
+		pnlSteamCommunity.add(tfSteamApiKey);
+		tfSteamApiKey.setColumns(10);
+		
 		JLabel lblLaunchOptions = new JLabel("Launch Options");
 		lblLaunchOptions.setBounds(12, 128, 100, 16);
 		add(lblLaunchOptions);
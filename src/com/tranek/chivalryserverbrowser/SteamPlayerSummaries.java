@@ -0,0 +1,167 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ *
+ * Looks up the presence of Steam users in batches through the Steam Web API's
+ * GetPlayerSummaries method. One request covers up to {@link #MAX_IDS} users, where the
+ * Steam Community XML takes one request per user. It needs the user's Steam Web API key.
+ *
+ */
+public class SteamPlayerSummaries {
+
+	/** The URL of the GetPlayerSummaries method. */
+	public static final String API_URL = "http://api.steampowered.com/ISteamUser/GetPlayerSummaries/v0002/";
+	/** The most Steam IDs the Web API accepts in one request. */
+	public static final int MAX_IDS = 100;
+	/** The Steam app ID of Chivalry: Medieval Warfare. */
+	public static final String CHIVALRY_APP_ID = "219640";
+	/** The names of the persona states, indexed by their value in the Web API. */
+	private static final String[] PERSONA_STATES = {"Offline", "Online", "Busy", "Away", "Snooze",
+		"Looking to trade", "Looking to play"};
+
+	/** The URL of the GetPlayerSummaries method to query. */
+	private final String apiUrl;
+	/** The Steam Web API key. */
+	private final String key;
+
+	/**
+	 * Creates a new SteamPlayerSummaries that queries the Steam Web API.
+	 *
+	 * @param key the Steam Web API key
+	 */
+	public SteamPlayerSummaries(String key) {
+		this(API_URL, key);
+	}
+
+	/**
+	 * Creates a new SteamPlayerSummaries that queries the given URL instead of the Steam Web API.
+	 *
+	 * @param apiUrl the URL of the GetPlayerSummaries method
+	 * @param key the Steam Web API key
+	 */
+	public SteamPlayerSummaries(String apiUrl, String key) {
+		this.apiUrl = apiUrl;
+		this.key = key;
+	}
+
+	/**
+	 * Gets the summaries of the given Steam users, {@link #MAX_IDS} per request. Users that
+	 * the Web API does not return are missing from the result.
+	 *
+	 * @param ids the Steam IDs of the users
+	 * @return the summaries by Steam ID
+	 * @throws IOException if a request fails, for example because the key is not valid
+	 * @throws JSONException if a response can not be parsed
+	 */
+	public HashMap<Long, PlayerSummary> getSummaries(List<Long> ids) throws IOException, JSONException {
+		HashMap<Long, PlayerSummary> summaries = new HashMap<Long, PlayerSummary>();
+		for ( int start = 0; start < ids.size(); start += MAX_IDS ) {
+			StringBuilder url = new StringBuilder(apiUrl);
+			url.append("?key=").append(key).append("&steamids=");
+			int end = Math.min(start + MAX_IDS, ids.size());
+			for ( int i = start; i < end; i++ ) {
+				if ( i > start ) {
+					url.append(',');
+				}
+				url.append(ids.get(i));
+			}
+			JSONObject response;
+			try {
+				response = Location.readJsonFromUrl(url.toString());
+			} catch (IOException e) {
+				// The message of the exception has the URL in it, and with it the key.
+				throw new IOException("GetPlayerSummaries request failed: " + e.getClass().getSimpleName());
+			}
+			JSONArray players = response.getJSONObject("response").getJSONArray("players");
+			for ( int i = 0; i < players.length(); i++ ) {
+				PlayerSummary ps = new PlayerSummary(players.getJSONObject(i));
+				summaries.put(ps.steamId, ps);
+			}
+		}
+		return summaries;
+	}
+
+	/**
+	 *
+	 * A data structure class for the summary of one Steam user.
+	 *
+	 */
+	public static class PlayerSummary {
+		/** The 64 bit Steam ID. */
+		protected long steamId;
+		/** The Steam nickname. */
+		protected String personaName;
+		/** The online state, 0 for offline. */
+		protected int personaState;
+		/** Whether or not the profile is public. Private profiles do not show what game they are in. */
+		protected boolean isPublic;
+		/** The app ID of the game being played; or empty if not in a game. */
+		protected String gameId;
+		/** The name of the game being played; or empty if not in a game. */
+		protected String gameExtraInfo;
+		/** The IP address and gameport of the server being played on; or empty if not on a server. */
+		protected String gameServerIp;
+
+		/**
+		 * Creates a new PlayerSummary from an entry of the Web API's players array.
+		 *
+		 * @param player the player entry
+		 * @throws JSONException if the entry has no Steam ID
+		 */
+		public PlayerSummary(JSONObject player) throws JSONException {
+			steamId = Long.parseLong(player.getString("steamid"));
+			personaName = player.optString("personaname", "");
+			personaState = player.optInt("personastate", 0);
+			isPublic = player.optInt("communityvisibilitystate", 1) == 3;
+			gameId = player.optString("gameid", "");
+			gameExtraInfo = player.optString("gameextrainfo", "");
+			gameServerIp = player.optString("gameserverip", "");
+			// The Web API reports 0.0.0.0:0 for listen servers and single player.
+			if ( gameServerIp.startsWith("0.0.0.0") ) {
+				gameServerIp = "";
+			}
+		}
+
+		/**
+		 * Gets whether or not this user is in Chivalry: Medieval Warfare.
+		 *
+		 * @return true if the user is in Chivalry
+		 */
+		public boolean isInChivalry() {
+			return gameId.equals(CHIVALRY_APP_ID);
+		}
+
+		/**
+		 * Gets whether or not this user is in any game.
+		 *
+		 * @return true if the user is in a game
+		 */
+		public boolean isInGame() {
+			return !gameId.equals("");
+		}
+
+		/**
+		 * Gets the status of this user the way the friends table shows it.
+		 *
+		 * @return the status
+		 */
+		public String getStatus() {
+			if ( isInGame() ) {
+				return gameExtraInfo.equals("") ? "In-Game" : "Playing " + gameExtraInfo;
+			}
+			if ( personaState >= 0 && personaState < PERSONA_STATES.length ) {
+				return PERSONA_STATES[personaState];
+			}
+			return "Online";
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package com.tranek.chivalryserverbrowser;
+
+/**
+ *
+ * A Steam Community state message taken apart into what the friends table shows: whether the
+ * friend is in a game, the name of the game and the IP address and gameport of the server.
+ * The message is read in one pass from the front, and only the strings handed out are allocated.
+ * Any input, however short or malformed, parses to something.
+ * <p>
+ * The state messages look like this:
+ * <pre>
+ * In-Game&lt;br/&gt;Chivalry: Medieval Warfare&lt;span class="rich_presence"&gt;&lt;/span&gt; - &lt;a class="friendBlockLinkOverlay" href="steam://connect/1.2.3.4:7777"&gt;Join&lt;/a&gt;
+ * In-Game&lt;br/&gt;Chivalry: Medieval Warfare&lt;span class="rich_presence"&gt;&lt;/span&gt; - &lt;a onclick="window.location='steam://connect/1.2.3.4:7777'"&gt;Join&lt;/a&gt;
+ * Online
+ * Offline&lt;br/&gt;Last Online 3 hrs, 2 mins ago
+ * </pre>
+ * and are empty for private profiles.
+ *
+ */
+public class SteamStateMessage {
+
+	/** The state of a private profile, which has an empty state message. */
+	public static final int PRIVATE = 0;
+	/** The state of a friend in a game. */
+	public static final int IN_GAME = 1;
+	/** The state of a friend that is offline. */
+	public static final int OFFLINE = 2;
+	/** The state of a friend that is online but not in a game, such as online, busy or away. */
+	public static final int ONLINE = 3;
+	/** The name of Chivalry: Medieval Warfare in state messages. */
+	public static final String CHIVALRY = "Chivalry: Medieval Warfare";
+
+	/** The start of the state message of a friend in a game. */
+	private static final String IN_GAME_PREFIX = "In-Game<br/>";
+	/** The start of the join link's URL. */
+	private static final String CONNECT = "steam://connect/";
+
+	/** One of {@link #PRIVATE}, {@link #IN_GAME}, {@link #OFFLINE} or {@link #ONLINE}. */
+	protected int state;
+	/** The status as the friends table shows it, without markup. */
+	protected String status;
+	/** The name of the game; or null if the friend is not in a game. */
+	protected String game;
+	/** The IP address of the server; or null if there is no join link. */
+	protected String ip;
+	/** The gameport of the server; or null if there is no join link. */
+	protected String port;
+
+	/**
+	 * Creates a new SteamStateMessage. Use {@link #parse(String)}.
+	 */
+	private SteamStateMessage() {}
+
+	/**
+	 * Parses a state message.
+	 *
+	 * @param message the state message; null is treated as empty
+	 * @return the parsed state message
+	 */
+	public static SteamStateMessage parse(String message) {
+		SteamStateMessage m = new SteamStateMessage();
+		int length = message == null ? 0 : message.length();
+		if ( length == 0 ) {
+			m.state = PRIVATE;
+			m.status = "Private profile";
+			return m;
+		}
+		if ( !message.startsWith(IN_GAME_PREFIX) ) {
+			m.state = message.startsWith("Offline") ? OFFLINE : ONLINE;
+			m.status = stripMarkup(message);
+			return m;
+		}
+
+		m.state = IN_GAME;
+		int start = IN_GAME_PREFIX.length();
+		int end = message.indexOf('<', start);
+		if ( end < 0 ) {
+			end = length;
+		}
+		m.game = message.substring(start, end).trim();
+		m.status = "Playing " + m.game;
+
+		int link = message.indexOf(CONNECT, end);
+		if ( link > -1 ) {
+			parseEndpoint(m, message, link + CONNECT.length());
+		}
+		return m;
+	}
+
+	/**
+	 * Reads an IPv4 address and port at the given index of a message, stopping at the first
+	 * character that can not belong to them. Nothing is set unless both are valid.
+	 *
+	 * @param m the state message to set the address and port of
+	 * @param message the message
+	 * @param start the index of the address
+	 */
+	private static void parseEndpoint(SteamStateMessage m, String message, int start) {
+		int i = start;
+		int length = message.length();
+		int dots = 0;
+		int digits = 0;
+		int octet = 0;
+		while ( i < length ) {
+			char c = message.charAt(i);
+			if ( c >= '0' && c <= '9' ) {
+				octet = octet * 10 + (c - '0');
+				if ( ++digits > 3 || octet > 255 ) {
+					return;
+				}
+			} else if ( c == '.' && digits > 0 && dots < 3 ) {
+				dots++;
+				digits = 0;
+				octet = 0;
+			} else {
+				break;
+			}
+			i++;
+		}
+		if ( dots != 3 || digits == 0 || i >= length || message.charAt(i) != ':' ) {
+			return;
+		}
+		int colon = i++;
+		int port = 0;
+		while ( i < length && i - colon <= 5 ) {
+			char c = message.charAt(i);
+			if ( c < '0' || c > '9' ) {
+				break;
+			}
+			port = port * 10 + (c - '0');
+			i++;
+		}
+		if ( i == colon + 1 || port > 0xFFFF || (i < length && message.charAt(i) >= '0' && message.charAt(i) <= '9') ) {
+			return;
+		}
+		m.ip = message.substring(start, colon);
+		m.port = message.substring(colon + 1, i);
+	}
+
+	/**
+	 * Cuts a status off at its first span and turns line breaks into spaces.
+	 *
+	 * @param message the status
+	 * @return the status without markup
+	 */
+	private static String stripMarkup(String message) {
+		int end = message.indexOf("<span");
+		if ( end < 0 ) {
+			end = message.length();
+		}
+		int br = message.indexOf("<br/>");
+		if ( br < 0 || br >= end ) {
+			return end == message.length() ? message : message.substring(0, end);
+		}
+		StringBuilder sb = new StringBuilder(end);
+		int from = 0;
+		while ( br > -1 && br < end ) {
+			sb.append(message, from, br).append(' ');
+			from = br + 5;
+			br = message.indexOf("<br/>", from);
+		}
+		return sb.append(message, from, end).toString();
+	}
+
+	/**
+	 * Gets the state.
+	 *
+	 * @return one of {@link #PRIVATE}, {@link #IN_GAME}, {@link #OFFLINE} or {@link #ONLINE}
+	 */
+	public int getState() {
+		return state;
+	}
+
+	/**
+	 * Gets the status as the friends table shows it.
+	 *
+	 * @return the status
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * Gets the name of the game.
+	 *
+	 * @return the name of the game; or null if the friend is not in a game
+	 */
+	public String getGame() {
+		return game;
+	}
+
+	/**
+	 * Gets whether or not the friend is in Chivalry: Medieval Warfare.
+	 *
+	 * @return true if the friend is in Chivalry
+	 */
+	public boolean isInChivalry() {
+		return CHIVALRY.equals(game);
+	}
+
+	/**
+	 * Gets the IP address of the server.
+	 *
+	 * @return the IP address; or null if there is no join link
+	 */
+	public String getIp() {
+		return ip;
+	}
+
+	/**
+	 * Gets the gameport of the server.
+	 *
+	 * @return the gameport; or null if there is no join link
+	 */
+	public String getPort() {
+		return port;
+	}
+
+	/**
+	 * Gets the IP address and gameport of the server.
+	 *
+	 * @return the IP address and gameport separated by a colon; or null if there is no join link
+	 */
+	public String getEndpoint() {
+		return ip == null ? null : ip + ":" + port;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.tranek.chivalryserverbrowser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+/**
+ *
+ * Reads the few fields the browser needs out of the Steam Community XML pages in one
+ * streaming pass. Unlike a DOM parse nothing but those fields is kept, and the reading stops
+ * as soon as they have been found. Each thread reuses its own parser factory.
+ *
+ */
+public class SteamXmlReader {
+
+	/** The parser factory of each thread. */
+	private static final ThreadLocal<XMLInputFactory> FACTORY = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			return factory;
+		}
+	};
+
+	/**
+	 * Creates a new SteamXmlReader. It only has static methods.
+	 */
+	private SteamXmlReader() {}
+
+	/**
+	 * Reads the nickname and state message of a Steam Community profile.
+	 *
+	 * @param profileUrl the URL of the profile page, without ?xml=1
+	 * @return the profile with its nickname and state message; or null if Steam returned an error
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static SteamProfile readProfile(String profileUrl) throws IOException, XMLStreamException {
+		InputStream in = new URL(profileUrl + "?xml=1").openStream();
+		try {
+			return readProfile(profileUrl, in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the nickname and state message of a Steam Community profile. A missing nickname
+	 * or state message is read as an empty string.
+	 *
+	 * @param profileUrl the URL of the profile page
+	 * @param in the profile XML
+	 * @return the profile with its nickname and state message; or null if the XML is an error
+	 * @throws XMLStreamException
+	 */
+	public static SteamProfile readProfile(String profileUrl, InputStream in) throws XMLStreamException {
+		XMLStreamReader reader = FACTORY.get().createXMLStreamReader(in);
+		try {
+			String nickname = null;
+			String stateMessage = null;
+			int depth = 0;
+			while ( reader.hasNext() && (nickname == null || stateMessage == null) ) {
+				int event = reader.next();
+				if ( event == XMLStreamConstants.END_ELEMENT ) {
+					depth--;
+				} else if ( event == XMLStreamConstants.START_ELEMENT ) {
+					depth++;
+					if ( depth != 2 ) {
+						continue;
+					}
+					String name = reader.getLocalName();
+					if ( name.equals("error") ) {
+						return null;
+					} else if ( name.equals("steamID") ) {
+						nickname = StringEscapeUtils.unescapeXml(reader.getElementText().trim());
+						depth--;
+					} else if ( name.equals("stateMessage") ) {
+						stateMessage = reader.getElementText().trim();
+						depth--;
+					}
+				}
+			}
+			return new SteamProfile(profileUrl, nickname == null ? "" : nickname,
+					stateMessage == null ? "" : stateMessage);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the Steam IDs of the friends of a Steam Community profile.
+	 *
+	 * @param profileUrl the URL of the profile page
+	 * @return the Steam IDs of the friends
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static List<Long> readFriendIds(String profileUrl) throws IOException, XMLStreamException {
+		InputStream in = new URL(profileUrl + "/friends?xml=1").openStream();
+		try {
+			return readFriendIds(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the Steam IDs out of a friends list. Reading stops at the end of the friends element.
+	 *
+	 * @param in the friends list XML
+	 * @return the Steam IDs of the friends
+	 * @throws XMLStreamException if the XML or one of the IDs is not valid
+	 */
+	public static List<Long> readFriendIds(InputStream in) throws XMLStreamException {
+		XMLStreamReader reader = FACTORY.get().createXMLStreamReader(in);
+		try {
+			List<Long> friends = new ArrayList<Long>();
+			boolean inFriends = false;
+			int depth = 0;
+			while ( reader.hasNext() ) {
+				int event = reader.next();
+				if ( event == XMLStreamConstants.END_ELEMENT ) {
+					depth--;
+					if ( inFriends && depth == 1 ) {
+						break;
+					}
+				} else if ( event == XMLStreamConstants.START_ELEMENT ) {
+					depth++;
+					if ( depth == 2 && reader.getLocalName().equals("friends") ) {
+						inFriends = true;
+					} else if ( inFriends && depth == 3 && reader.getLocalName().equals("friend") ) {
+						String id = reader.getElementText().trim();
+						depth--;
+						try {
+							friends.add(Long.parseLong(id));
+						} catch (NumberFormatException e) {
+							throw new XMLStreamException("Invalid Steam ID " + id, reader.getLocation());
+						}
+					}
+				}
+			}
+			return friends;
+		} finally {
+			reader.close();
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package test;
+import java.io.File;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteJob;
+import com.almworks.sqlite4java.SQLiteStatement;
+
+import com.tranek.chivalryserverbrowser.BrowserDatabase;
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.ServerFilters;
+
+/**
+ * Checks that BrowserDatabase gets its results right, and exits with 1 if it does not:
+ * <ul>
+ * <li>Migration 3 on a version 2 database keeps the first of the rows whose ports only differ
+ * as text, and rebuilds the tables with integer ports and unique endpoint indexes.</li>
+ * <li>A write that fails in the middle of a batch only undoes itself: the writes before and
+ * after it in the same transaction are committed and called back.</li>
+ * </ul>
+ *
+ * Usage: BrowserDatabaseCheck
+ */
+public class BrowserDatabaseCheck {
+
+	private static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		File file = new File("checkdb");
+		delete(file);
+		checkMigration(file);
+		delete(file);
+		checkFailedWrite(file);
+		delete(file);
+		System.out.println(failures + " failures.");
+		if ( failures > 0 ) {
+			System.exit(1);
+		}
+	}
+
+	private static void checkMigration(File file) throws Exception {
+		SQLiteConnection old = new SQLiteConnection(file);
+		old.open(true);
+		old.exec("CREATE TABLE schema_version (version int not null)");
+		old.exec("INSERT INTO schema_version (version) VALUES (1)");
+		old.exec("INSERT INTO schema_version (version) VALUES (2)");
+		old.exec("CREATE TABLE servers (id INTEGER PRIMARY KEY AUTOINCREMENT, ip varchar(255) not null default '', "
+				+ "queryport varchar(255) not null default '', gameport varchar(255) not null default '')");
+		old.exec("CREATE UNIQUE INDEX servers_endpoint ON servers (ip, queryport, gameport)");
+		for ( String table : new String[] {"favorite_servers", "server_history"} ) {
+			old.exec("CREATE TABLE " + table + " (id INTEGER PRIMARY KEY AUTOINCREMENT, name varchar(255) not null "
+					+ "default '', ip varchar(255) not null default '', port varchar(255) not null default '' )");
+		}
+		old.exec("CREATE TABLE settings (id INTEGER PRIMARY KEY AUTOINCREMENT, steam_url varchar(255) not null default '')");
+		String a = SyntheticServers.ip(1);
+		String b = SyntheticServers.ip(2);
+		// The same server written as "7777" and "07777" got two rows, which the text index allowed.
+		old.exec("INSERT INTO servers (ip, queryport, gameport) VALUES ('" + a + "', '27015', '7777')");
+		old.exec("INSERT INTO servers (ip, queryport, gameport) VALUES ('" + a + "', '27015', '07777')");
+		old.exec("INSERT INTO servers (ip, queryport, gameport) VALUES ('" + a + "', '27016', '7778')");
+		old.exec("INSERT INTO servers (ip, queryport, gameport) VALUES ('" + b + "', '027015', '7777')");
+		old.exec("INSERT INTO favorite_servers (name, ip, port) VALUES ('First', '" + a + "', '27015')");
+		old.exec("INSERT INTO favorite_servers (name, ip, port) VALUES ('Second', '" + a + "', '27015')");
+		old.exec("INSERT INTO favorite_servers (name, ip, port) VALUES ('Padded', '" + a + "', ' 27015')");
+		old.exec("INSERT INTO favorite_servers (name, ip, port) VALUES ('Other', '" + b + "', '27015')");
+		old.exec("INSERT INTO server_history (name, ip, port) VALUES ('Once', '" + b + "', '27015')");
+		old.exec("INSERT INTO server_history (name, ip, port) VALUES ('Twice', '" + b + "', '27015')");
+		old.dispose();
+
+		BrowserDatabase db = new BrowserDatabase(file);
+		db.start();
+		check("migrated queryport of " + a + ":7777", "27015", db.getQueryPort(a, "7777"));
+		check("migrated queryport of " + a + ":7778", "27016", db.getQueryPort(a, "7778"));
+		check("migrated queryport of " + b + ":7777", "27015", db.getQueryPort(b, "7777"));
+		check("favorites", 2, db.getFavorites().size());
+		check("history", 1, db.getHistory().size());
+		check("adding a migrated server again", false,
+				db.addServer(new ChivServer("Server", a, "27015", "7777", "", "", "", "", "", "", "", "", "", "", "", "")).complete());
+		db.stop(true).join();
+
+		SQLiteConnection migrated = new SQLiteConnection(file);
+		migrated.open(false);
+		check("server rows", 3L, count(migrated, "SELECT COUNT(*) FROM servers"));
+		check("kept the first of the duplicate servers", 1L,
+				count(migrated, "SELECT id FROM servers WHERE ip = '" + a + "' AND gameport = 7777"));
+		check("kept the first of the duplicate favorites", 1L,
+				count(migrated, "SELECT id FROM favorite_servers WHERE ip = '" + a + "' AND port = 27015"));
+		check("text ports left", 0L, count(migrated, "SELECT COUNT(*) FROM servers WHERE typeof(queryport) <> 'integer' "
+				+ "OR typeof(gameport) <> 'integer'"));
+		for ( String index : new String[] {"servers_endpoint", "favorite_servers_endpoint", "server_history_endpoint"} ) {
+			check("unique index " + index, 1L, count(migrated, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' "
+					+ "AND name = '" + index + "' AND sql LIKE 'CREATE UNIQUE INDEX%'"));
+		}
+		migrated.dispose();
+	}
+
+	private static void checkFailedWrite(File file) throws Exception {
+		BrowserDatabase db = new BrowserDatabase(file);
+		db.start();
+		final ChivServer before = SyntheticServers.server(100000);
+		final ChivServer after = SyntheticServers.server(100001);
+		final boolean[] calledBack = new boolean[2];
+		// The writes queue up behind a large one, so they are applied as one batch.
+		SQLiteJob<Integer> large = db.addServers(SyntheticServers.servers(0, 20000));
+		SQLiteJob<Boolean> first = db.addFavorite(before, new BrowserDatabase.Callback<Boolean>() {
+			@Override
+			public void done(Boolean result) {
+				calledBack[0] = true;
+			}
+		});
+		SQLiteJob<Boolean> failing = db.saveFilters("no_such_filters", new ServerFilters());
+		SQLiteJob<Boolean> last = db.addFavorite(after, new BrowserDatabase.Callback<Boolean>() {
+			@Override
+			public void done(Boolean result) {
+				calledBack[1] = true;
+			}
+		});
+		SQLiteJob<Boolean> server = db.addServer(SyntheticServers.server(100002));
+		large.complete();
+		check("write before the failed one", Boolean.TRUE, first.complete());
+		failing.complete();
+		check("failed write has its error", true, failing.getError() instanceof SQLiteException);
+		check("write after the failed one", Boolean.TRUE, last.complete());
+		check("server after the failed one", Boolean.TRUE, server.complete());
+		check("callbacks of the writes around the failed one", true, calledBack[0] && calledBack[1]);
+		check("favorites after the batch", 2, db.getFavorites().size());
+		check("server written after the failed one", SyntheticServers.queryport(100002),
+				db.getQueryPort(SyntheticServers.ip(100002), SyntheticServers.gameport(100002)));
+		db.stop(true).join();
+	}
+
+	private static long count(SQLiteConnection db, String sql) throws SQLiteException {
+		SQLiteStatement st = db.prepare(sql);
+		try {
+			return st.step() ? st.columnLong(0) : -1;
+		} finally {
+			st.dispose();
+		}
+	}
+
+	private static void check(String what, Object expected, Object actual) {
+		if ( expected == null ? actual != null : !expected.equals(actual) ) {
+			System.out.println("Wrong " + what + ": expected " + expected + ", got " + actual);
+			failures++;
+		}
+	}
+
+	private static void delete(File file) {
+		for ( String suffix : new String[] {"", "-wal", "-shm", "-journal"} ) {
+			new File(file.getPath() + suffix).delete();
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package test;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import com.tranek.chivalryserverbrowser.BrowserDatabase;
+
+
+public class DatabaseConcurrencyBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		long duration = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+		int readers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+		run("DELETE", "FULL", duration, readers);
+		run("WAL", "FULL", duration, readers);
+		run("WAL", "NORMAL", duration, readers);
+	}
+
+	private static void run(String journalMode, String synchronous, final long duration, int readers)
+			throws InterruptedException {
+		File file = new File("benchdb");
+		for ( String suffix : new String[] {"", "-wal", "-shm", "-journal"} ) {
+			new File(file.getPath() + suffix).delete();
+		}
+		final BrowserDatabase db = new BrowserDatabase(file, journalMode, synchronous);
+		db.start();
+		db.addServers(SyntheticServers.servers(0, 10000)).complete();
+
+		final long end = System.currentTimeMillis() + duration;
+		final ArrayList<Long> latencies = new ArrayList<Long>();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for ( int r = 0; r < readers; r++ ) {
+			final int seed = r;
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					ArrayList<Long> mine = new ArrayList<Long>();
+					int i = seed;
+					while ( System.currentTimeMillis() < end ) {
+						int n = (i++ * 7919) % 10000;
+						long start = System.nanoTime();
+						db.getQueryPort(SyntheticServers.ip(n), SyntheticServers.gameport(n));
+						mine.add(System.nanoTime() - start);
+					}
+					synchronized (latencies) {
+						latencies.addAll(mine);
+					}
+				}
+			};
+			threads.add(t);
+			t.start();
+		}
+
+		// A refresh worth of servers at a time, half of them new.
+		int written = 0;
+		int next = 10000;
+		while ( System.currentTimeMillis() < end ) {
+			db.addServers(SyntheticServers.servers(next - 250, next + 250)).complete();
+			next += 250;
+			written += 500;
+		}
+		for ( Thread t : threads ) {
+			t.join();
+		}
+		db.stop(true).join();
+
+		Collections.sort(latencies);
+		int size = latencies.size();
+		System.out.println(journalMode + "/" + synchronous + ": " + written * 1000L / duration + " rows written/s, "
+				+ size * 1000L / duration + " reads/s, read latency p50 " + latencies.get(size / 2) / 1000
+				+ " us, p99 " + latencies.get(size * 99 / 100) / 1000 + " us, max "
+				+ latencies.get(size - 1) / 1000 + " us");
+		for ( String suffix : new String[] {"", "-wal", "-shm", "-journal"} ) {
+			new File(file.getPath() + suffix).delete();
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.tranek.chivalryserverbrowser.FriendCache;
+import com.tranek.chivalryserverbrowser.SteamPlayerSummaries;
+import com.tranek.chivalryserverbrowser.SteamProfile;
+import com.tranek.chivalryserverbrowser.SteamXmlReader;
+
+/**
+ * Compares loading the friends of a user one profile at a time against the batched Web API
+ * lookup, both against {@link SteamApiStub}, and how much of the profile lookup a refresh
+ * through a {@link FriendCache} repeats.
+ */
+public class FriendLookupBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int friends = args.length > 0 ? Integer.parseInt(args[0]) : 250;
+		int latency = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		final SteamApiStub stub = new SteamApiStub(friends, latency);
+		String url = stub.getBaseUrl() + "/profiles/" + SteamApiStub.USER_ID;
+
+		FriendCache cache = new FriendCache();
+		refresh("Profile XML:  ", stub, url, cache);
+		refresh("Cached:       ", stub, url, cache);
+		Thread.sleep(FriendCache.IN_GAME_TTL + 1000);
+		refresh("After " + (FriendCache.IN_GAME_TTL / 1000 + 1) + " s:    ", stub, url, cache);
+
+		stub.resetRequests();
+		long start = System.nanoTime();
+		List<Long> ids = SteamXmlReader.readFriendIds(url);
+		HashMap<Long, SteamPlayerSummaries.PlayerSummary> summaries =
+				new SteamPlayerSummaries(stub.getApiUrl(), "test").getSummaries(ids);
+		long elapsed = System.nanoTime() - start;
+		System.out.println("Web API:      " + summaries.size() + " friends, " + stub.getRequests() + " requests, " +
+				elapsed / 1000000 + " ms");
+
+		stub.resetRequests();
+		try {
+			new SteamPlayerSummaries(stub.getApiUrl(), "wrong").getSummaries(ids);
+			System.out.println("Bad key:      no error!");
+		} catch ( java.io.IOException e ) {
+			System.out.println("Bad key:      " + e.getMessage());
+		}
+
+		stub.stop();
+	}
+
+	private static void refresh(String name, final SteamApiStub stub, String url, final FriendCache cache)
+			throws Exception {
+		stub.resetRequests();
+		long start = System.nanoTime();
+		List<Long> ids = SteamXmlReader.readFriendIds(url);
+		ExecutorService pool = Executors.newFixedThreadPool(32);
+		List<Future<SteamProfile>> futures = new ArrayList<Future<SteamProfile>>();
+		for ( final Long id : ids ) {
+			if ( cache.getProfile(id) != null ) {
+				continue;
+			}
+			futures.add(pool.submit(new java.util.concurrent.Callable<SteamProfile>() {
+				@Override
+				public SteamProfile call() throws Exception {
+					SteamProfile profile = SteamXmlReader.readProfile(stub.getBaseUrl() + "/profiles/" + id);
+					cache.put(id, profile);
+					return profile;
+				}
+			}));
+		}
+		for ( Future<SteamProfile> f : futures ) {
+			f.get();
+		}
+		pool.shutdown();
+		long elapsed = System.nanoTime() - start;
+		System.out.println(name + futures.size() + " of " + ids.size() + " friends fetched, " + stub.getRequests() +
+				" requests, " + elapsed / 1000000 + " ms");
+	}
+
+}
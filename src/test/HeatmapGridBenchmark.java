@@ -0,0 +1,64 @@
+package test;
+import java.util.Random;
+
+import com.tranek.chivalryserverbrowser.HeatmapGrid;
+
+/**
+ * Synthetic live refresh of the player heatmap: servers in a few dozen data centers are put in
+ * a {@link HeatmapGrid}, then in each frame some of them get a new player count. The number of
+ * bins sent to the map and the time per frame are printed, next to the number of points that
+ * rebuilding the heatmap from every marker would send.
+ *
+ * Usage: HeatmapGridBenchmark [servers] [changed servers per frame] [frames]
+ */
+public class HeatmapGridBenchmark {
+
+	public static void main(String[] args) {
+		int servers = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int perFrame = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		int frames = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		Random random = new Random(1);
+		double[][] positions = new double[servers][2];
+		for ( int i = 0; i < servers; i++ ) {
+			int center = i % 40;
+			positions[i][0] = (center * 37 % 120) - 50 + random.nextDouble() * 0.2 - 0.1;
+			positions[i][1] = (center * 71 % 340) - 170 + random.nextDouble() * 0.2 - 0.1;
+		}
+
+		HeatmapGrid grid = new HeatmapGrid();
+		for ( int i = 0; i < servers; i++ ) {
+			grid.put("n", "server" + i, positions[i][0], positions[i][1], random.nextInt(33));
+		}
+		String all = grid.takeChanges();
+		System.out.println(String.format("first frame: %d bins, %d KB", count(all), all.length() / 1024));
+
+		for ( int round = 0; round < 2; round++ ) {
+			long bins = 0;
+			long bytes = 0;
+			long start = System.nanoTime();
+			for ( int f = 0; f < frames; f++ ) {
+				for ( int c = 0; c < perFrame; c++ ) {
+					int i = random.nextInt(servers);
+					grid.put("n", "server" + i, positions[i][0], positions[i][1], random.nextInt(33));
+				}
+				String changes = grid.takeChanges();
+				bins += count(changes);
+				bytes += changes.length();
+			}
+			long nanos = System.nanoTime() - start;
+			if ( round == 1 ) {
+				System.out.println(String.format("%d changed servers per frame: %.1f bins and %d bytes sent, %.3f ms per frame,"
+						+ " instead of %d points", perFrame, bins / (double) frames, bytes / frames, nanos / 1e6 / frames, servers));
+			}
+		}
+	}
+
+	private static int count(String json) {
+		int n = 0;
+		for ( int i = json.indexOf("\"bin\""); i >= 0; i = json.indexOf("\"bin\"", i + 1) ) {
+			n++;
+		}
+		return n;
+	}
+
+}
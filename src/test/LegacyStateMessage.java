@@ -0,0 +1,73 @@
+package test;
+
+/**
+ * The state message parsing FriendQuery.FriendWorker did before SteamStateMessage, kept to
+ * compare against in {@link SteamStateMessageFuzz} and {@link SteamStateMessageBenchmark}.
+ * Returns {status, endpoint} the way the friends table showed them with all friends shown.
+ */
+public class LegacyStateMessage {
+
+	public static String[] parse(String stateMessage) {
+		if ( stateMessage.equals("") ) {
+			return new String[] {"Private profile", null};
+		}
+		if ( checkIfInGame(stateMessage) && stateMessage.contains("<span") ) {
+			String[] details = getGameDetails(stateMessage);
+			String endpoint = null;
+			if ( !details[1].equals("") ) {
+				String stripped = details[1].substring(26);
+				stripped = stripped.split("<")[0];
+				String[] ipaddress = stripped.split(":");
+				endpoint = ipaddress[0] + ":" + ipaddress[1];
+			}
+			return new String[] {details[0], endpoint};
+		}
+		String status = stateMessage;
+		if ( status.contains("<span") ) {
+			status = status.substring(0, status.indexOf("<span"));
+		}
+		if ( status.contains("<br/>") ) {
+			status = status.replace("<br/>", " ");
+		}
+		return new String[] {status, null};
+	}
+
+	public static boolean checkIfInGame(String status) {
+		boolean ingame = false;
+		if ( status.length() < 14 ) {
+			return false;
+		}
+		if ( status.substring(0, 12).equals("In-Game<br/>") ) {
+			ingame = true;
+		}
+		return ingame;
+	}
+
+	public static String[] getGameDetails(String stateMessage) {
+		String[] details = new String[2];
+		String game = stateMessage.substring(12, stateMessage.indexOf("<span class")).trim();
+		String status = "Playing " + game;
+		details[1] = "";
+		if ( game.equals("Chivalry: Medieval Warfare") ) {
+			int index = stateMessage.indexOf("href=");
+			if ( index > -1 ) {
+				String ipstr = stateMessage.substring(index);
+				ipstr = ipstr.substring(22, ipstr.indexOf(">")-1);
+				ipstr = "<html><U><FONT COLOR=BLUE>" + ipstr + "</FONT></U></html>";
+				details[1] = ipstr;
+			} else {
+				index = stateMessage.indexOf("window.location=");
+				if ( index > -1 ) {
+					String ipstr = stateMessage.substring(index);
+					ipstr = ipstr.substring(33);
+					ipstr = ipstr.substring(0, ipstr.indexOf("'"));
+					ipstr = "<html><U><FONT COLOR=BLUE>" + ipstr + "</FONT></U></html>";
+					details[1] = ipstr;
+				}
+			}
+		}
+		details[0] = status;
+		return details;
+	}
+
+}
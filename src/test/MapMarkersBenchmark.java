@@ -0,0 +1,95 @@
+package test;
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.MapMarkers;
+
+/**
+ * Synthetic map population: 3,000 servers are handed to the map either as one addMarker(...)
+ * script each with the popup HTML built in Java (the old way), or through {@link MapMarkers}.
+ * The scripts are counted instead of run, since there is no WebView here; the number of
+ * scripts is the number of JavaScript parse-and-run cycles the map would go through.
+ *
+ * Usage: MapMarkersBenchmark [servers]
+ */
+public class MapMarkersBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		List<ChivServer> servers = new ArrayList<ChivServer>();
+		List<String[]> fields = new ArrayList<String[]>();
+		for ( int i = 0; i < count; i++ ) {
+			String[] f = {"Server \"number\" <" + i + ">", "10.0." + (i >> 8 & 255) + "." + (i & 255),
+					"27015", "7777", "AOCTO-Stoneshill_p", "TO", "" + (20 + i % 200), "32",
+					"" + (i * 7 % 33), "0", "0", "60", "Germany", "0", "" + (i % 160 - 80), "" + (i % 360 - 180)};
+			fields.add(f);
+			servers.add(new ChivServer(f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7], f[8], f[9], f[10], f[11],
+					f[12], f[13], f[14], f[15]));
+		}
+
+		for ( int round = 0; round < 6; round++ ) {
+			long bytes = 0;
+			long start = System.nanoTime();
+			for ( String[] f : fields ) {
+				bytes += oldScript(f).length();
+			}
+			long nanos = System.nanoTime() - start;
+			if ( round > 0 ) {
+				System.out.println(String.format("%-22s %d scripts, %d KB, %.2f ms to build",
+						"one script per marker", count, bytes / 1024, nanos / 1e6));
+			}
+
+			final AtomicInteger scripts = new AtomicInteger();
+			final AtomicLong scriptBytes = new AtomicLong();
+			MapMarkers markers = new MapMarkers(null) {
+				@Override
+				protected void execute(String script) {
+					scripts.incrementAndGet();
+					scriptBytes.addAndGet(script.length());
+				}
+			};
+			markers.mapLoaded();
+			start = System.nanoTime();
+			markers.executeScript("clearMarkers('n')");
+			for ( ChivServer cs : servers ) {
+				markers.addMarker("n", cs);
+			}
+			nanos = System.nanoTime() - start;
+			Thread.sleep(100);
+			EventQueue.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {}
+			});
+			if ( round > 0 ) {
+				System.out.println(String.format("%-22s %d scripts, %d KB, %.2f ms to build",
+						"MapMarkers", scripts.get(), scriptBytes.get() / 1024, nanos / 1e6));
+			}
+		}
+	}
+
+	private static String oldScript(String[] f) {
+		String name = f[0], ip = f[1], queryPort = f[2], gamePort = f[3], map = f[4], ping = f[6];
+		String maxPlayers = f[7], currentPlayers = f[8], lat = f[14], lon = f[15];
+		String title = name;
+		String hasPassword = "No";
+		if ( f[9].equals("1") ) {
+			hasPassword = "Yes";
+		}
+		String html = "<p>" + name + "</p>" +
+				"<a href='javascript:joinServer(\\\"" + ip + "\\\", \\\"" + queryPort + "\\\")'>" +
+				"Connect to server: " + ip + ":" + gamePort + "</a>" +
+				"<p>Map: " + map + "</p>" +
+				"<p>Players: " + currentPlayers + " / " + maxPlayers + "</p>" +
+				"<p>Ping: " + ping + "<span style='float:right'>Password: " + hasPassword + "</span></p>";
+		html += "<a href='javascript:moreInfoTab(\\\"" + ip + ":" + gamePort +
+				"\\\", \\\"n\\\")'>More info</a>";
+		return "addMarker('" + lat + "', '" + lon + "', '" + "n" +
+				"', \"" + title + "\", \"" + html + "\", " + currentPlayers + ")";
+	}
+
+}
@@ -0,0 +1,120 @@
+package test;
+import java.util.HashSet;
+import java.util.Random;
+
+import com.tranek.chivalryserverbrowser.MarkerClusterer;
+
+/**
+ * Synthetic map of servers in a few dozen data centers. Every refresh locates each server
+ * again the way ChivServer.getLocation does: the data center's position moved a little at
+ * random, seeded from the server's address, and for one server in ten the position of
+ * another server in the data center moved again, as when the location service has no
+ * position for it. Every refresh also gives each server a new ping, some servers a new
+ * player count, and leaves a few out. For each zoom level the map is centered on a data
+ * center with a 1000 x 600 pixel view, and the markers shown, the markers put and removed by
+ * the refresh, and the time to work them out are printed, next to the time after a pan (the
+ * clusters of the zoom level are kept).
+ *
+ * With "time" as the fourth argument the randomness is seeded from the time instead, as
+ * getLocation used to do, which moves every server on every refresh and leaves it to
+ * MarkerClusterer.MOVE_TOLERANCE to keep the markers where they were.
+ *
+ * Usage: MarkerClustererBenchmark [servers] [data centers] [percent changed per refresh] [address|time]
+ */
+public class MarkerClustererBenchmark {
+
+	public static void main(String[] args) {
+		int servers = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int centers = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+		int changed = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		boolean byTime = args.length > 3 && args[3].equals("time");
+		Random random = new Random(1);
+		double[][] dc = new double[centers][2];
+		for ( int i = 0; i < centers; i++ ) {
+			dc[i][0] = random.nextDouble() * 120 - 50;
+			dc[i][1] = random.nextDouble() * 340 - 170;
+		}
+		int[] players = new int[servers];
+		for ( int i = 0; i < servers; i++ ) {
+			players[i] = i % 33;
+		}
+		MarkerClusterer clusterer = new MarkerClusterer();
+		refresh(clusterer, dc, players, null, random, byTime);
+
+		for ( int round = 0; round < 3; round++ ) {
+			for ( int zoom = 2; zoom <= 16; zoom += 2 ) {
+				double width = 1000 * 360.0 / (256 << zoom);
+				double height = 600 * 170.0 / (256 << zoom);
+				// getLocation only ever moves the servers south and west
+				double[] c = {dc[0][0] - 0.05, dc[0][1] - 0.05};
+				clusterer.setView(zoom, c[0] - height / 2, c[1] - width / 2, c[0] + height / 2, c[1] + width / 2);
+				clusterer.forgetSent();
+				String all = clusterer.takeChanges();
+
+				HashSet<String> seen = new HashSet<String>();
+				boolean[] left = new boolean[servers];
+				for ( int i = 0; i < servers; i++ ) {
+					if ( random.nextInt(100) < changed ) {
+						if ( random.nextBoolean() ) {
+							left[i] = true;
+							continue;
+						}
+						players[i] = random.nextInt(33);
+					}
+					seen.add("server" + i);
+				}
+				refresh(clusterer, dc, players, left, random, byTime);
+				clusterer.retain("n", seen);
+				long start = System.nanoTime();
+				String json = clusterer.takeChanges();
+				long refreshed = System.nanoTime() - start;
+				start = System.nanoTime();
+				clusterer.takeChanges();
+				long panned = System.nanoTime() - start;
+				if ( round == 2 ) {
+					int put = json == null ? 0 : count(json.substring(0, json.indexOf("\"remove\"")), "\"type\"");
+					int removed = json == null ? 0 : count(json.substring(json.indexOf("\"remove\"")), "\"n:");
+					System.out.println(String.format("zoom %2d: %5d markers shown, refresh puts %4d and removes %4d,"
+							+ " %6.2f ms after a refresh, %6.2f ms after a pan",
+							zoom, all == null ? 0 : count(all, "\"type\""), put, removed, refreshed / 1e6, panned / 1e6));
+				}
+				refresh(clusterer, dc, players, null, random, byTime);
+			}
+		}
+	}
+
+	private static void refresh(MarkerClusterer clusterer, double[][] dc, int[] players, boolean[] left, Random random,
+			boolean byTime) {
+		for ( int i = 0; i < players.length; i++ ) {
+			if ( left != null && left[i] ) {
+				continue;
+			}
+			String key = "server" + i;
+			double[] position = jitter(dc[i % dc.length], key, byTime);
+			if ( i % 10 == 0 ) {
+				// Located from whichever other server of the data center was found first
+				int other = i % dc.length + dc.length * random.nextInt(players.length / dc.length);
+				position = jitter(jitter(dc[i % dc.length], "server" + other, byTime), key, byTime);
+			}
+			clusterer.add("n", key, position[0], position[1], players[i],
+					"{\"type\":\"n\",\"name\":\"Server number " + i + "\",\"players\":" + players[i] + "}",
+					"{\"ping\":\"" + (20 + random.nextInt(200)) + "\"}");
+		}
+	}
+
+	private static double[] jitter(double[] base, String key, boolean byTime) {
+		Random generator = new Random(byTime ? System.nanoTime() : key.hashCode());
+		double lat = base[0] - (generator.nextDouble() * 999 + 1) / 10000;
+		double lon = base[1] - (generator.nextDouble() * 999 + 1) / 10000;
+		return new double[] {lat, lon};
+	}
+
+	private static int count(String json, String token) {
+		int n = 0;
+		for ( int i = json.indexOf(token); i >= 0; i = json.indexOf(token, i + 1) ) {
+			n++;
+		}
+		return n;
+	}
+
+}
@@ -0,0 +1,102 @@
+package test;
+import java.util.HashSet;
+
+import com.tranek.chivalryserverbrowser.MarkerClusterer;
+
+/**
+ * Checks the markers MarkerClusterer puts and removes from one refresh to the next, and exits
+ * with 1 if they are wrong. Three servers far apart are shown at a zoom level where each has
+ * its own marker, and then refreshed: with only a new ping, with a small move, with new
+ * players, with a large move, and with one of them gone.
+ *
+ * Usage: MarkerClustererCheck
+ */
+public class MarkerClustererCheck {
+
+	private static int failures = 0;
+
+	public static void main(String[] args) {
+		MarkerClusterer clusterer = new MarkerClusterer();
+		clusterer.setView(MarkerClusterer.MAX_CLUSTER_ZOOM + 1, -90, -180, 90, 180);
+		double[][] positions = {{51.0, 9.0}, {40.7, -74.0}, {-33.9, 151.2}};
+		int[] players = {10, 20, 30};
+
+		refresh(clusterer, positions, players, 50, 3);
+		String changes = clusterer.takeChanges();
+		check("first refresh", 3, 0, changes);
+		check("ping of the first refresh", true, changes != null && changes.contains("\"ping\":\"50\""));
+		check("taking the changes again", null, clusterer.takeChanges());
+
+		refresh(clusterer, positions, players, 80, 3);
+		check("refresh with only a new ping", null, clusterer.takeChanges());
+
+		positions[0] = new double[] {51.0 + MarkerClusterer.MOVE_TOLERANCE / 2, 9.0};
+		refresh(clusterer, positions, players, 80, 3);
+		check("refresh with a move within the tolerance", null, clusterer.takeChanges());
+
+		players[1] = 21;
+		refresh(clusterer, positions, players, 90, 3);
+		changes = clusterer.takeChanges();
+		check("refresh with new players", 1, 0, changes);
+		check("put with new players", true, changes != null && changes.contains("\"key\":\"n:server1\"")
+				&& changes.contains("\"players\":21") && changes.contains("\"ping\":\"90\""));
+		check("position kept within the tolerance", null, clusterer.takeChanges());
+
+		positions[2] = new double[] {-37.8, 145.0};
+		refresh(clusterer, positions, players, 90, 3);
+		changes = clusterer.takeChanges();
+		check("refresh with a large move", 1, 0, changes);
+		check("put with a large move", true, changes != null && changes.contains("\"key\":\"n:server2\"")
+				&& changes.contains("\"lat\":-37.8"));
+
+		refresh(clusterer, positions, players, 90, 2);
+		changes = clusterer.takeChanges();
+		check("refresh with a server gone", 0, 1, changes);
+		check("removed server", true, changes != null && changes.contains("\"remove\":[\"n:server2\"]"));
+
+		clusterer.forgetSent();
+		check("after the map was loaded again", 2, 0, clusterer.takeChanges());
+
+		System.out.println(failures + " failures.");
+		if ( failures > 0 ) {
+			System.exit(1);
+		}
+	}
+
+	private static void refresh(MarkerClusterer clusterer, double[][] positions, int[] players, int ping, int servers) {
+		HashSet<String> seen = new HashSet<String>();
+		for ( int i = 0; i < servers; i++ ) {
+			String key = "server" + i;
+			clusterer.add("n", key, positions[i][0], positions[i][1], players[i],
+					"{\"type\":\"n\",\"name\":\"Server number " + i + "\",\"players\":" + players[i] + "}",
+					"{\"ping\":\"" + ping + "\"}");
+			seen.add(key);
+		}
+		clusterer.retain("n", seen);
+	}
+
+	private static void check(String what, int puts, int removes, String changes) {
+		int put = changes == null ? 0 : count(changes.substring(0, changes.indexOf("\"remove\"")), "\"key\"");
+		int removed = changes == null ? 0 : count(changes.substring(changes.indexOf("\"remove\"")), "\"n:");
+		if ( put != puts || removed != removes ) {
+			System.out.println("Wrong " + what + ": expected " + puts + " puts and " + removes + " removes, got " + changes);
+			failures++;
+		}
+	}
+
+	private static void check(String what, Object expected, Object actual) {
+		if ( expected == null ? actual != null : !expected.equals(actual) ) {
+			System.out.println("Wrong " + what + ": expected " + expected + ", got " + actual);
+			failures++;
+		}
+	}
+
+	private static int count(String json, String token) {
+		int n = 0;
+		for ( int i = json.indexOf(token); i >= 0; i = json.indexOf(token, i + 1) ) {
+			n++;
+		}
+		return n;
+	}
+
+}
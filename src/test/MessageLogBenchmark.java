@@ -0,0 +1,107 @@
+package test;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.JTextArea;
+import javax.swing.text.BadLocationException;
+
+import com.tranek.chivalryserverbrowser.MessageLog;
+
+/**
+ * Prints refresh-style messages to the message center the old way (JTextArea.append after
+ * splitting the whole text to count its lines, as MainWindow.checkMCBuffer did) and through
+ * {@link MessageLog} from several worker threads. Prints the cost per message, the time the
+ * event dispatch thread spent on the MessageLog, and checks that it kept the last 30 lines.
+ *
+ * Usage: MessageLogBenchmark [messages] [threads] [microseconds between messages per thread]
+ */
+public class MessageLogBenchmark {
+
+	private static final AtomicLong edtNanos = new AtomicLong();
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		final int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		final int pause = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		// The old way gets slower as the text area's position marks pile up, so it gets fewer messages.
+		final int oldMessages = Math.min(messages, 2000);
+
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+			@Override
+			protected void dispatchEvent(AWTEvent event) {
+				long start = System.nanoTime();
+				super.dispatchEvent(event);
+				edtNanos.addAndGet(System.nanoTime() - start);
+			}
+		});
+
+		for ( int round = 0; round < 2; round++ ) {
+			JTextArea old = new JTextArea();
+			long start = System.nanoTime();
+			for ( int i = 0; i < oldMessages; i++ ) {
+				String mctext = old.getText();
+				if ( mctext.split("\\r?\\n").length > 30 ) {
+					int index = mctext.indexOf('\n');
+					if ( index > -1 ) {
+						mctext = mctext.substring(index);
+					}
+					old.setText(mctext);
+				}
+				old.append("\nQuerying server " + i + " of the master server list...");
+			}
+			long oldNanos = System.nanoTime() - start;
+
+			final MessageLog log = new MessageLog(30);
+			final JTextArea area = new JTextArea(log);
+			final CountDownLatch done = new CountDownLatch(threads);
+			edtNanos.set(0);
+			for ( int t = 0; t < threads; t++ ) {
+				final int thread = t;
+				new Thread() {
+					@Override
+					public void run() {
+						for ( int i = thread; i < messages; i += threads ) {
+							log.println("Querying server " + i + " of the master server list...");
+							long until = System.nanoTime() + pause * 1000L;
+							while ( System.nanoTime() < until ) {}
+						}
+						done.countDown();
+					}
+				}.start();
+			}
+			done.await();
+			Thread.sleep(200);
+			final String[] text = new String[1];
+			final int[] shown = new int[1];
+			EventQueue.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						text[0] = log.getText(0, log.getLength());
+						shown[0] = area.getLineCount();
+					} catch (BadLocationException e) {
+						e.printStackTrace();
+					}
+				}
+			});
+			String[] lines = text[0].split("\n", -1);
+			boolean kept = lines.length == 30 && shown[0] == 30;
+			for ( int i = 0; kept && i < lines.length; i++ ) {
+				kept = lines[i].startsWith("Querying server");
+			}
+			if ( round == 1 ) {
+				System.out.println(String.format("old checkMCBuffer + append: %.1f us per message over %d messages",
+						oldNanos / 1e3 / oldMessages, oldMessages));
+				System.out.println(String.format("MessageLog, %d threads: EDT %.2f us per message, %d lines kept%s",
+						threads, edtNanos.get() / 1e3 / messages,
+						lines.length, kept ? "" : " (WRONG)"));
+			}
+		}
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,94 @@
+package test;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.ServerTableModel;
+
+/**
+ * Searches the names of 10,000 servers one keystroke at a time, the way the server name filter
+ * is typed, with the trigram index of {@link ServerTableModel#searchNames(String, boolean)}
+ * and with the toLowerCase().contains() scan QueryWorker used. Prints the time per keystroke,
+ * checks that exact searches find the same rows as the scan, and shows what fuzzy searches
+ * for a clan tag find, also after the server with the tag is renamed.
+ *
+ * Usage: NameIndexBenchmark [servers]
+ */
+public class NameIndexBenchmark {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Random random = new Random(42);
+		String[] tags = {"[ABC]", "-=KoS=-", "{TMC}", "<FoA>", "|EU|", "(GER)", "[WOLF]", ""};
+		String[] words = {"Official", "Duel", "Server", "Ping Limit", "Classic", "Team Objective", "Last Team Standing",
+				"Free For All", "Knights", "Vanguard", "Masons", "Agatha", "EU", "US East", "Noob Friendly", "24/7", "Stoneshill",
+				"Moor", "Citadel", "Arena", "Tournament", "Community"};
+		List<ChivServer> servers = new ArrayList<ChivServer>();
+		for ( int i = 0; i < count; i++ ) {
+			StringBuilder name = new StringBuilder(tags[random.nextInt(tags.length)]);
+			for ( int w = 2 + random.nextInt(4); w > 0; w-- ) {
+				name.append(' ').append(words[random.nextInt(words.length)]);
+			}
+			name.append(" #").append(i);
+			servers.add(SyntheticServers.server(i, name.toString().trim(), 50, 10, "Germany"));
+		}
+		servers.add(new ChivServer("[ABC] Duels", "11.0.0.1", "27015", "7777", "AOCDUEL-Arena_p", "DUEL", "50", "32", "10",
+				"0", "0", "60", "Germany", "0", "51.0", "9.0"));
+		ServerTableModel model = new ServerTableModel();
+		model.addServers(servers);
+
+		String[] typed = {"official duel", "knights of", "tournament", "[wolf] vanguard", "24/7 moor"};
+		for ( int round = 0; round < 20; round++ ) {
+			long indexNanos = 0;
+			long scanNanos = 0;
+			int keystrokes = 0;
+			boolean same = true;
+			long worst = 0;
+			for ( String term : typed ) {
+				for ( int k = 1; k <= term.length(); k++ ) {
+					String prefix = term.substring(0, k);
+					long start = System.nanoTime();
+					BitSet found = model.searchNames(prefix, false);
+					long took = System.nanoTime() - start;
+					indexNanos += took;
+					worst = Math.max(worst, took);
+
+					start = System.nanoTime();
+					BitSet scanned = new BitSet(servers.size());
+					String lower = prefix.toLowerCase();
+					for ( int row = 0; row < servers.size(); row++ ) {
+						if ( model.getServer(row).toString() != null
+								&& ((String) model.getValueAt(row, ServerTableModel.COL_NAME)).toLowerCase().contains(lower) ) {
+							scanned.set(row);
+						}
+					}
+					scanNanos += System.nanoTime() - start;
+					same &= found.equals(scanned);
+					keystrokes++;
+				}
+			}
+			if ( round == 19 ) {
+				System.out.println(String.format("%d servers, %d keystrokes: index %.3f ms per keystroke (worst %.3f ms), "
+						+ "toLowerCase().contains() scan %.3f ms per keystroke; same rows: %b", servers.size(), keystrokes,
+						indexNanos / 1e6 / keystrokes, worst / 1e6, scanNanos / 1e6 / keystrokes, same));
+			}
+		}
+		for ( String term : new String[] {"abc duels", "-=ABC=-", "abd duels", "[ABC]duel"} ) {
+			long start = System.nanoTime();
+			BitSet fuzzy = model.searchNames(term, true);
+			long took = System.nanoTime() - start;
+			int abc = model.indexOf("11.0.0.1", "7777");
+			System.out.println(String.format("fuzzy \"%s\": %d rows in %.3f ms, finds [ABC] Duels: %b, exact finds it: %b", term,
+					fuzzy.cardinality(), took / 1e6, fuzzy.get(abc), model.searchNames(term, false).get(abc)));
+		}
+		// A renamed server keeps the trigrams of its old name in the index
+		model.addServer(new ChivServer("Public Arena", "11.0.0.1", "27015", "7777", "AOCDUEL-Arena_p", "DUEL", "50", "32",
+				"10", "0", "0", "60", "Germany", "0", "51.0", "9.0"));
+		int renamed = model.indexOf("11.0.0.1", "7777");
+		System.out.println("after renaming [ABC] Duels, fuzzy \"abc duels\" still finds it: "
+				+ model.searchNames("abc duels", true).get(renamed));
+	}
+
+}
@@ -0,0 +1,75 @@
+package test;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Random;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.PopulationStore;
+
+
+public class PopulationStoreBenchmark {
+
+	public static void main(String[] args) {
+		int days = args.length > 0 ? Integer.parseInt(args[0]) : 90;
+		int serverCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		long interval = 10 * 60 * 1000;
+		String[] regions = {"United States", "Germany", "United Kingdom", "Australia", "Russia", "Brazil"};
+		String[] maps = {"AOCTO-Stoneshill_p", "AOCTO-Hillside_p", "AOCFFA-Moor_p", "AOCTD-Citadel_p"};
+
+		File file = new File("benchpopulation.dat");
+		file.delete();
+		PopulationStore store = new PopulationStore(file);
+
+		ChivServer[] servers = new ChivServer[serverCount];
+		for ( int i = 0; i < serverCount; i++ ) {
+			servers[i] = SyntheticServers.server(i, "Server " + i, 50, 0, regions[i % regions.length]);
+		}
+
+		Random random = new Random(1);
+		long end = 1400000000000L;
+		long start = end - days * 24L * 3600 * 1000;
+		long samples = 0;
+		long t0 = System.nanoTime();
+		for ( long time = start; time < end; time += interval ) {
+			double hour = (time / 3600000) % 24;
+			for ( int i = 0; i < serverCount; i++ ) {
+				int base = (int) (16 + 14 * Math.sin((hour + i % regions.length * 4) / 24 * 2 * Math.PI));
+				int players = Math.max(0, base + random.nextInt(5) - 2);
+				store.record(servers[i], players, maps[(int) (time / (20 * 60 * 1000) + i) % maps.length], time);
+				samples++;
+			}
+		}
+		store.close();
+		long t1 = System.nanoTime();
+		System.out.println("Wrote " + samples + " samples in " + (t1 - t0) / 1000000 + " ms, " + file.length()
+				+ " bytes (" + String.format("%.2f", (double) file.length() / samples) + " bytes/sample)");
+
+		t0 = System.nanoTime();
+		store = new PopulationStore(file);
+		t1 = System.nanoTime();
+		System.out.println("Opened " + store.getBlockCount() + " blocks in " + (t1 - t0) / 1000000 + " ms");
+
+		int queries = 100;
+		int found = 0;
+		t0 = System.nanoTime();
+		for ( int q = 0; q < queries; q++ ) {
+			long to = end - q * 3600L * 1000 * 7;
+			int n = q * 37 % serverCount;
+			found += store.getPlayers(SyntheticServers.ip(n), SyntheticServers.queryport(n), to - 24L * 3600 * 1000, to).size();
+		}
+		t1 = System.nanoTime();
+		System.out.println("Last 24h of one server: " + (t1 - t0) / queries / 1000 + " us/query (" + found / queries
+				+ " samples each)");
+
+		t0 = System.nanoTime();
+		HashMap<String, Integer> peaks = null;
+		for ( int q = 0; q < queries; q++ ) {
+			peaks = store.getPeakHours(start, end);
+		}
+		t1 = System.nanoTime();
+		System.out.println("Peak hour per region over " + days + " days: " + (t1 - t0) / queries / 1000
+				+ " us/query " + peaks);
+		file.delete();
+	}
+
+}
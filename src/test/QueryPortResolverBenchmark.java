@@ -0,0 +1,146 @@
+package test;
+import java.io.ByteArrayOutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.List;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.QueryPortResolver;
+import com.tranek.chivalryserverbrowser.ServerIndex;
+
+/**
+ * Starts a few fake Chivalry servers on 127.0.0.1 that answer A2S_INFO after a delay, and finds
+ * the queryports of the ones that are not in the {@link ServerIndex}: one at a usual queryport,
+ * one only guessable from the offset of a known server on the same host, and one that does not
+ * exist. Compares {@link QueryPortResolver} with asking the same candidate ports one at a time.
+ *
+ * Usage: QueryPortResolverBenchmark [reply delay in ms] [per port timeout in ms for the sequential probe]
+ */
+public class QueryPortResolverBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		final int delay = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+		int sequentialTimeout = args.length > 1 ? Integer.parseInt(args[1]) : 250;
+		String ip = "127.0.0.1";
+
+		// gameport -> queryport
+		HashMap<Integer, Integer> servers = new HashMap<Integer, Integer>();
+		servers.put(7777, 27015);
+		servers.put(7778, 27016);
+		servers.put(7800, 27125);
+		servers.put(7801, 27126);
+		for ( final Integer gameport : servers.keySet() ) {
+			final DatagramSocket socket = new DatagramSocket(new InetSocketAddress(ip, servers.get(gameport)));
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					answer(socket, gameport, delay);
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+
+		ServerIndex index = new ServerIndex();
+		index.update(new ChivServer("Known", ip, "27015", "7777", "", "", "", "", "", "", "", "", "", "", "", ""));
+		index.update(new ChivServer("Known", ip, "27125", "7800", "", "", "", "", "", "", "", "", "", "", "", ""));
+
+		String[] unknown = { "7778", "7801", "7900" };
+		for ( String gameport : unknown ) {
+			List<Integer> candidates = QueryPortResolver.candidates(Integer.parseInt(gameport), index.getQueryPorts(ip));
+			long start = System.nanoTime();
+			int sequential = sequential(ip, Integer.parseInt(gameport), candidates, sequentialTimeout);
+			long sequentialMs = (System.nanoTime() - start) / 1000000;
+
+			QueryPortResolver resolver = new QueryPortResolver(index);
+			start = System.nanoTime();
+			String parallel = resolver.resolve(ip, gameport);
+			long parallelMs = (System.nanoTime() - start) / 1000000;
+			start = System.nanoTime();
+			String again = resolver.resolve(ip, gameport);
+			long againUs = (System.nanoTime() - start) / 1000;
+
+			System.out.println(String.format("gameport %s: %d candidates, sequential %d in %d ms, parallel %s in %d ms, again %s in %d us, index %s",
+					gameport, candidates.size(), sequential, sequentialMs, parallel, parallelMs, again, againUs,
+					index.getQueryPort(ip, gameport)));
+		}
+	}
+
+	/**
+	 * Asks each candidate port in turn, the way a loop over ServerQuery.getInfo() would.
+	 */
+	private static int sequential(String ip, int gameport, List<Integer> candidates, int timeout) throws Exception {
+		DatagramSocket socket = new DatagramSocket();
+		socket.setSoTimeout(timeout);
+		try {
+			byte[] buf = new byte[1400];
+			for ( Integer port : candidates ) {
+				byte[] request = request();
+				socket.send(new DatagramPacket(request, request.length, InetAddress.getByName(ip), port));
+				try {
+					DatagramPacket reply = new DatagramPacket(buf, buf.length);
+					socket.receive(reply);
+					int reported = (buf[reply.getLength() - 2] & 0xFF) | (buf[reply.getLength() - 1] & 0xFF) << 8;
+					if ( reported == gameport ) {
+						return port;
+					}
+				} catch (SocketTimeoutException e) {}
+			}
+			return -1;
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static void answer(DatagramSocket socket, int gameport, int delay) {
+		byte[] buf = new byte[1400];
+		byte[] info = info(gameport);
+		while ( true ) {
+			try {
+				DatagramPacket packet = new DatagramPacket(buf, buf.length);
+				socket.receive(packet);
+				if ( packet.getLength() < 5 || buf[4] != 'T' ) {
+					continue;
+				}
+				Thread.sleep(delay);
+				socket.send(new DatagramPacket(info, info.length, packet.getSocketAddress()));
+			} catch (Exception e) {
+				return;
+			}
+		}
+	}
+
+	private static byte[] request() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(0xFF); out.write(0xFF); out.write(0xFF); out.write(0xFF);
+		byte[] payload = "TSource Engine Query\0".getBytes();
+		out.write(payload, 0, payload.length);
+		return out.toByteArray();
+	}
+
+	private static byte[] info(int gameport) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(0xFF); out.write(0xFF); out.write(0xFF); out.write(0xFF);
+		out.write('I');
+		out.write(17);
+		for ( String s : new String[] { "Fake server " + gameport, "AOCTO-Stoneshill_p", "chivalrymedievalwarfare", "Chivalry: Medieval Warfare" } ) {
+			byte[] b = s.getBytes();
+			out.write(b, 0, b.length);
+			out.write(0);
+		}
+		out.write(0); out.write(0);
+		out.write(12); out.write(32); out.write(0); out.write('d'); out.write('w'); out.write(0); out.write(1);
+		byte[] version = "1.0.0.0".getBytes();
+		out.write(version, 0, version.length);
+		out.write(0);
+		out.write(0x80);
+		out.write(gameport & 0xFF);
+		out.write(gameport >> 8);
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,141 @@
+package test;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.DefaultTableModel;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.ServerTableModel;
+
+/**
+ * Synthetic refresh: worker threads hand servers to a server table that is sorted by players,
+ * either one EDT event and one table event per row (a DefaultTableModel row added with
+ * invokeLater) or through {@link ServerTableModel#publish(ChivServer)}. A timing event queue
+ * adds up the time the event dispatch thread spends, and the EDT time per 1,000 rows is printed.
+ *
+ * Usage: RowPublisherBenchmark [rows] [workers] [microseconds between rows per worker]
+ */
+public class RowPublisherBenchmark {
+
+	private static final AtomicLong edtNanos = new AtomicLong();
+	private static final AtomicLong edtEvents = new AtomicLong();
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		final int workers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		final int pause = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+			@Override
+			protected void dispatchEvent(AWTEvent event) {
+				long start = System.nanoTime();
+				super.dispatchEvent(event);
+				edtNanos.addAndGet(System.nanoTime() - start);
+				edtEvents.incrementAndGet();
+			}
+		});
+
+		final List<ChivServer> servers = new ArrayList<ChivServer>();
+		for ( int i = 0; i < rows; i++ ) {
+			servers.add(SyntheticServers.server(i, "Server number " + i, 20 + i % 200, i * 7 % 33, "Germany"));
+		}
+
+		for ( int round = 0; round < 2; round++ ) {
+			final DefaultTableModel old = new DefaultTableModel(new String[] {"Server Name", "IP Address:Port", "Type", "Map",
+					"Players", "Ping", "Location", "Pass", "Min Rank", "Max Rank"}, 0);
+			final JTable oldTable = sortedTable(old);
+			run("per row invokeLater", rows, workers, pause, new Sink() {
+				@Override
+				public void add(final int i) {
+					EventQueue.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							old.addRow(new Object[] {"Server number " + i, "<html><U><FONT COLOR=BLUE>10.0.0.0:7777</FONT></U></html>",
+									"TO", "AOCTO-Stoneshill_p", (i * 7 % 33) + " / 32", 20 + i % 200, "Germany", "", 0, 60});
+						}
+					});
+				}
+			}, oldTable);
+
+			final ServerTableModel model = new ServerTableModel();
+			JTable table = sortedTable(model);
+			run("RowPublisher", rows, workers, pause, new Sink() {
+				@Override
+				public void add(int i) {
+					model.publish(servers.get(i));
+				}
+			}, table);
+		}
+	}
+
+	private static JTable sortedTable(javax.swing.table.TableModel model) throws Exception {
+		final JTable[] table = new JTable[1];
+		final javax.swing.table.TableModel m = model;
+		EventQueue.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				table[0] = new JTable(m);
+				table[0].setAutoCreateRowSorter(true);
+				List<RowSorter.SortKey> keys = new ArrayList<RowSorter.SortKey>();
+				keys.add(new RowSorter.SortKey(4, SortOrder.DESCENDING));
+				table[0].getRowSorter().setSortKeys(keys);
+			}
+		});
+		return table[0];
+	}
+
+	private static void run(String name, final int rows, final int workers, final int pause, final Sink sink,
+			final JTable table) throws Exception {
+		edtNanos.set(0);
+		edtEvents.set(0);
+		final CountDownLatch done = new CountDownLatch(workers);
+		long start = System.nanoTime();
+		for ( int w = 0; w < workers; w++ ) {
+			final int worker = w;
+			new Thread() {
+				@Override
+				public void run() {
+					for ( int i = worker; i < rows; i += workers ) {
+						sink.add(i);
+						if ( pause > 0 ) {
+							long until = System.nanoTime() + pause * 1000L;
+							while ( System.nanoTime() < until ) {}
+						}
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		done.await();
+		while ( true ) {
+			final int[] count = new int[1];
+			EventQueue.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					count[0] = table.getRowCount();
+				}
+			});
+			if ( count[0] == rows ) {
+				break;
+			}
+			Thread.sleep(5);
+		}
+		long wall = (System.nanoTime() - start) / 1000000;
+		System.out.println(String.format("%-20s %d rows in %d ms: EDT busy %d ms (%.2f ms per 1,000 rows) in %d events",
+				name, rows, wall, edtNanos.get() / 1000000, edtNanos.get() / 1e6 / rows * 1000, edtEvents.get()));
+	}
+
+	private interface Sink {
+		void add(int i);
+	}
+
+}
@@ -0,0 +1,123 @@
+package test;
+import java.awt.EventQueue;
+import java.lang.management.ManagementFactory;
+
+import javax.swing.table.DefaultTableModel;
+
+import com.tranek.chivalryserverbrowser.NumberCell;
+import com.tranek.chivalryserverbrowser.Scoreboard;
+
+/**
+ * Synthetic auto refresh of a full server: each poll hands the same player list to the table,
+ * either by clearing the table and adding every row again (the old refresh) or through a
+ * {@link Scoreboard}, with one poll in ten changing a score. The players stay connected, so their
+ * connect times grow by a second per poll. The time and bytes allocated per
+ * poll on the polling thread are printed, plus the table events that reached the model.
+ *
+ * Usage: ScoreboardBenchmark [players] [polls]
+ */
+public class ScoreboardBenchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		final int players = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		final int polls = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		final String[] names = new String[players];
+		final int[] scores = new int[players];
+		final float[] times = new float[players];
+		for ( int i = 0; i < players; i++ ) {
+			names[i] = "Player number " + i;
+			scores[i] = i * 13 % 200;
+			times[i] = 60 + i * 97;
+		}
+
+		for ( int round = 0; round < 2; round++ ) {
+			final DefaultTableModel old = model();
+			final int[] oldEvents = events(old);
+			run(round == 1, "clear and re-add", polls, oldEvents, new Poll() {
+				@Override
+				public void poll(int p, long now) {
+					old.setRowCount(0);
+					for ( int i = 0; i < players; i++ ) {
+						old.addRow(new Object[] {names[i], scores[i], NumberCell.duration((int) times[i] + p)});
+					}
+				}
+			});
+
+			final DefaultTableModel model = model();
+			final int[] newEvents = events(model);
+			final Scoreboard scoreboard = new Scoreboard(model);
+			run(round == 1, "Scoreboard", polls, newEvents, new Poll() {
+				@Override
+				public void poll(int p, long now) {
+					if ( p % 10 == 9 ) {
+						scores[p % players]++;
+					}
+					for ( int i = 0; i < players; i++ ) {
+						scoreboard.addPlayer(names[i], scores[i], times[i] + p);
+					}
+					scoreboard.publish(now);
+				}
+			});
+			run(round == 1, "Scoreboard unchanged", polls, newEvents, new Poll() {
+				@Override
+				public void poll(int p, long now) {
+					for ( int i = 0; i < players; i++ ) {
+						scoreboard.addPlayer(names[i], scores[i], times[i] + p);
+					}
+					scoreboard.publish(now);
+				}
+			});
+		}
+	}
+
+	private static DefaultTableModel model() throws Exception {
+		final DefaultTableModel[] model = new DefaultTableModel[1];
+		EventQueue.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				model[0] = new DefaultTableModel(new String[] {"Player Name", "Score", "Time Connected"}, 0);
+			}
+		});
+		return model[0];
+	}
+
+	private static int[] events(DefaultTableModel model) {
+		final int[] events = new int[1];
+		model.addTableModelListener(new javax.swing.event.TableModelListener() {
+			@Override
+			public void tableChanged(javax.swing.event.TableModelEvent e) {
+				events[0]++;
+			}
+		});
+		return events;
+	}
+
+	private static void run(boolean print, String name, int polls, int[] events, Poll poll) throws Exception {
+		events[0] = 0;
+		long bytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+		long start = System.nanoTime();
+		long now = System.currentTimeMillis();
+		for ( int p = 0; p < polls; p++ ) {
+			poll.poll(p, now + p * 1000L);
+		}
+		long nanos = System.nanoTime() - start;
+		bytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes;
+		EventQueue.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {}
+		});
+		if ( print ) {
+			System.out.println(String.format("%-22s %.2f us and %d bytes per poll, %.1f table events per poll",
+					name, nanos / 1e3 / polls, bytes / polls, events[0] / (double) polls));
+		}
+	}
+
+	private interface Poll {
+		void poll(int p, long now);
+	}
+
+}
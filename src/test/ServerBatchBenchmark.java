@@ -0,0 +1,62 @@
+package test;
+import java.io.File;
+import java.util.Vector;
+
+import com.almworks.sqlite4java.SQLiteJob;
+
+import com.tranek.chivalryserverbrowser.BrowserDatabase;
+import com.tranek.chivalryserverbrowser.ChivServer;
+
+
+public class ServerBatchBenchmark {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int singles = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+		Vector<ChivServer> servers = SyntheticServers.servers(0, count);
+
+		File file = new File("benchdb");
+		file.delete();
+		BrowserDatabase db = new BrowserDatabase(file);
+		db.start();
+
+		long start = System.nanoTime();
+		for ( int i = 0; i < singles; i++ ) {
+			db.addServer(servers.get(i)).complete();
+		}
+		long perRow = System.nanoTime() - start;
+		System.out.println("One transaction per server: " + singles + " servers in " + perRow / 1000000 + " ms ("
+				+ perRow / singles / 1000 + " us/server)");
+
+		start = System.nanoTime();
+		SQLiteJob<Boolean> last = null;
+		for ( int i = singles; i < 2 * singles; i++ ) {
+			last = db.addServer(servers.get(i));
+		}
+		last.complete();
+		long queued = System.nanoTime() - start;
+		System.out.println("Queued single writes: " + singles + " servers in " + queued / 1000000 + " ms ("
+				+ queued / singles / 1000 + " us/server)");
+
+		start = System.nanoTime();
+		int added = db.addServers(servers).complete();
+		long batch = System.nanoTime() - start;
+		System.out.println("Batched: " + count + " servers (" + added + " new) in " + batch / 1000000 + " ms ("
+				+ batch / count / 1000 + " us/server)");
+
+		start = System.nanoTime();
+		added = db.addServers(servers).complete();
+		batch = System.nanoTime() - start;
+		System.out.println("Batched again, all existing: " + count + " servers (" + added + " new) in "
+				+ batch / 1000000 + " ms");
+
+		try {
+			db.stop(true).join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,86 @@
+package test;
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.TableRowSorter;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.ServerFilters;
+import com.tranek.chivalryserverbrowser.ServerTableModel;
+
+/**
+ * Fills a sorted server table with the results of a synthetic refresh and times changing the
+ * filters on it: each filter is turned into a row filter and the sorter filters and sorts every
+ * row again, as happens when a FiltersPanel field is edited. Before, each of these edits was a
+ * network refresh of every server.
+ *
+ * Usage: ServerFiltersBenchmark [rows]
+ */
+public class ServerFiltersBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		final ServerTableModel model = new ServerTableModel();
+		final List<ChivServer> servers = new ArrayList<ChivServer>();
+		String[] modes = {"TO", "LTS", "DUEL", "FFA", "TDM", "CTF", "KOTH"};
+		for ( int i = 0; i < rows; i++ ) {
+			String name = (i % 25 == 0 ? "Official Duel Server " : "Community Server ") + i + (i % 7 == 0 ? " [EU]" : "");
+			servers.add(SyntheticServers.server(i, name, "AOC-Map_p", modes[i % modes.length], 20 + i % 200, i * 7 % 33,
+					i % 10 == 0, i % 30, 30 + i % 40, "Germany", i % 3));
+		}
+		final ServerFilters[] filters = {
+			new ServerFilters("", "All", false, -1, -1, -1, false, false, false, 0, 8),
+			new ServerFilters("eu", "All", false, -1, -1, -1, false, false, false, 0, 8),
+			new ServerFilters("", "TO", false, -1, -1, 100, true, false, false, 0, 8),
+			new ServerFilters("", "All", true, 5, 60, -1, true, true, false, 1, 8),
+			new ServerFilters("", "All", false, -1, -1, -1, false, false, true, 0, 8),
+			new ServerFilters("server 12", "All", false, -1, -1, 150, false, false, false, 0, 8),
+		};
+		final JTable[] table = new JTable[1];
+		EventQueue.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				model.addServers(servers);
+				table[0] = new JTable(model);
+				TableRowSorter<ServerTableModel> sorter = new TableRowSorter<ServerTableModel>(model);
+				List<RowSorter.SortKey> keys = new ArrayList<RowSorter.SortKey>();
+				keys.add(new RowSorter.SortKey(ServerTableModel.COL_PLAYERS, SortOrder.DESCENDING));
+				sorter.setSortKeys(keys);
+				table[0].setRowSorter(sorter);
+			}
+		});
+
+		for ( int round = 0; round < 3; round++ ) {
+			for ( final ServerFilters sf : filters ) {
+				final long[] nanos = new long[1];
+				final int[] shown = new int[1];
+				EventQueue.invokeAndWait(new Runnable() {
+					@SuppressWarnings("unchecked")
+					@Override
+					public void run() {
+						long start = System.nanoTime();
+						((TableRowSorter<ServerTableModel>) table[0].getRowSorter()).setRowFilter(sf.toRowFilter());
+						nanos[0] = System.nanoTime() - start;
+						shown[0] = table[0].getRowCount();
+					}
+				});
+				int expected = 0;
+				for ( ChivServer cs : servers ) {
+					if ( sf.matches(cs) ) {
+						expected++;
+					}
+				}
+				if ( round == 2 ) {
+					System.out.println(String.format("%d rows re-filtered and sorted in %.2f ms: %d shown%s", rows,
+							nanos[0] / 1e6, shown[0], shown[0] == expected ? "" : " (expected " + expected + ")"));
+				}
+			}
+		}
+	}
+
+}
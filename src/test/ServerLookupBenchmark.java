@@ -0,0 +1,39 @@
+package test;
+import java.io.File;
+
+import com.tranek.chivalryserverbrowser.BrowserDatabase;
+
+
+public class ServerLookupBenchmark {
+
+	public static void main(String[] args) {
+		int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+		File file = new File("benchdb");
+		file.delete();
+		BrowserDatabase db = new BrowserDatabase(file);
+		db.start();
+
+		int rows = 0;
+		for ( int size : new int[] {1000, 10000, 100000} ) {
+			db.addServers(SyntheticServers.servers(rows, size)).complete();
+			rows = size;
+
+			long start = System.nanoTime();
+			for ( int i = 0; i < lookups; i++ ) {
+				int n = (i * 7919) % size;
+				db.getQueryPort(SyntheticServers.ip(n), SyntheticServers.gameport(n));
+			}
+			long elapsed = System.nanoTime() - start;
+			System.out.println(size + " rows: " + elapsed / lookups / 1000 + " us/lookup");
+		}
+
+		try {
+			db.stop(true).join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		file.delete();
+	}
+
+}
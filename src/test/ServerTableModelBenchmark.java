@@ -0,0 +1,102 @@
+package test;
+import java.util.Vector;
+
+import javax.swing.table.DefaultTableModel;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.ServerTableModel;
+
+/**
+ * Fills the server table the old way, with a DefaultTableModel of formatted Object[] rows, and
+ * with {@link ServerTableModel}, from the same servers. Prints the heap each model keeps per row
+ * and the time to find the server of a clicked row: parsing the HTML link and scanning the list
+ * of servers, or asking the model.
+ */
+public class ServerTableModelBenchmark {
+
+	private static final String[] HEADERS = {"Server Name", "IP Address:Port", "Type", "Map", "Players", "Ping",
+			"Location", "Pass", "Min Rank", "Max Rank"};
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		String[][] values = new String[count][];
+		Vector<ChivServer> servers = new Vector<ChivServer>();
+		for ( int i = 0; i < count; i++ ) {
+			String[] v = {"Server number " + i, "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255),
+					"" + (27015 + i % 8), "" + (7777 + i % 8), "AOCTO-Stoneshill_p", "TO", "" + (20 + i % 200), "32",
+					"" + (i % 33), i % 10 == 0 ? "1" : "0", "0", "60", "Germany", "0", "51.0", "9.0"};
+			values[i] = v;
+			servers.add(new ChivServer(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8], v[9], v[10], v[11],
+					v[12], v[13], v[14], v[15]));
+		}
+
+		long before = usedHeap();
+		DefaultTableModel old = fillOld(values);
+		long oldBytes = usedHeap() - before;
+
+		before = usedHeap();
+		ServerTableModel model = new ServerTableModel();
+		for ( ChivServer cs : servers ) {
+			model.addServer(cs);
+		}
+		long newBytes = usedHeap() - before;
+
+		System.out.println(String.format("retained per row: DefaultTableModel %d B, ServerTableModel %d B",
+				oldBytes / count, newBytes / count));
+
+		int lookups = 20000;
+		long start = System.nanoTime();
+		int found = 0;
+		for ( int i = 0; i < lookups; i++ ) {
+			int row = (i * 7919) % count;
+			String stripped = ((String) old.getValueAt(row, 1)).substring(26);
+			stripped = stripped.split("<")[0];
+			String[] ipaddress = stripped.split(":");
+			if ( find(ipaddress[0], ipaddress[1], values) != null ) {
+				found++;
+			}
+		}
+		long oldNs = (System.nanoTime() - start) / lookups;
+		start = System.nanoTime();
+		for ( int i = 0; i < lookups; i++ ) {
+			int row = (i * 7919) % count;
+			if ( model.getServer(row) != null ) {
+				found++;
+			}
+		}
+		long newNs = (System.nanoTime() - start) / lookups;
+		System.out.println(String.format("row to server: HTML parse + scan %d ns, model %d ns (%d found)", oldNs, newNs, found));
+		System.out.println(old.getRowCount() + model.getRowCount());
+	}
+
+	private static DefaultTableModel fillOld(String[][] values) {
+		DefaultTableModel model = new DefaultTableModel(HEADERS, 0);
+		for ( String[] v : values ) {
+			Object[] rowData = {v[0], "<html><U><FONT COLOR=BLUE>" + v[1] + ":" + v[3] + "</FONT></U></html>",
+					v[5], v[4], v[8] + " / " + v[7], Integer.parseInt(v[6]), v[12], v[9].equals("1") ? "Yes" : "",
+					Integer.parseInt(v[10]), Integer.parseInt(v[11])};
+			model.addRow(rowData);
+		}
+		return model;
+	}
+
+	/** Scans the servers the way MainWindow.findChivServer does. */
+	private static String[] find(String ip, String gameport, String[][] values) {
+		for ( String[] v : values ) {
+			if ( v[1].equals(ip) && v[3].equals(gameport) ) {
+				return v;
+			}
+		}
+		return null;
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime rt = Runtime.getRuntime();
+		for ( int i = 0; i < 4; i++ ) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}
@@ -0,0 +1,129 @@
+package test;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+import com.tranek.chivalryserverbrowser.NumberCell;
+import com.tranek.chivalryserverbrowser.ServerTableModel;
+
+/**
+ * Sorts a 64-player scoreboard by score and by time connected, and a 3,000-row server list by
+ * players and by ping, both with the old string cells and string-parsing comparators and with
+ * the precomputed sort keys. Prints the time and the bytes allocated per sort; what is left for
+ * the sort keys is the sorter's own per-sort arrays, not the comparisons.
+ *
+ * Usage: SortKeyBenchmark [players] [servers]
+ */
+public class SortKeyBenchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) {
+		int players = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int servers = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+
+		DefaultTableModel oldBoard = scoreboard(new String[] {"Player Name", "Score", "Time Connected"}, Integer.class, String.class);
+		DefaultTableModel newBoard = scoreboard(new String[] {"Player Name", "Score", "Time Connected"}, Integer.class, NumberCell.class);
+		for ( int i = 0; i < players; i++ ) {
+			int score = (i * 37) % 400;
+			int seconds = (i * 997) % 20000;
+			oldBoard.addRow(new Object[] {"Player " + i, "" + score, seconds / 3600 + " h " + seconds % 3600 / 60 + " m " + seconds % 60 + " s"});
+			newBoard.addRow(new Object[] {"Player " + i, score, NumberCell.duration(seconds)});
+		}
+		TableRowSorter<TableModel> oldBoardSorter = new TableRowSorter<TableModel>(oldBoard);
+		oldBoardSorter.setComparator(1, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				return Integer.compare(Integer.parseInt(o1), Integer.parseInt(o2));
+			}
+		});
+		oldBoardSorter.setComparator(2, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				String[] t1 = o1.split(" ");
+				String[] t2 = o2.split(" ");
+				int c = Integer.compare(Integer.parseInt(t1[0]), Integer.parseInt(t2[0]));
+				if ( c == 0 ) {
+					c = Integer.compare(Integer.parseInt(t1[2]), Integer.parseInt(t2[2]));
+				}
+				if ( c == 0 ) {
+					c = Integer.compare(Integer.parseInt(t1[4]), Integer.parseInt(t2[4]));
+				}
+				return c;
+			}
+		});
+		TableRowSorter<TableModel> newBoardSorter = new TableRowSorter<TableModel>(newBoard);
+
+		DefaultTableModel oldList = new DefaultTableModel(new String[] {"Server Name", "IP Address:Port", "Type", "Map",
+				"Players", "Ping", "Location", "Pass", "Min Rank", "Max Rank"}, 0) {
+			@Override
+			public Class<?> getColumnClass(int column) {
+				return column == 5 || column == 8 || column == 9 ? Integer.class : String.class;
+			}
+		};
+		ServerTableModel newList = new ServerTableModel();
+		List<ChivServer> list = new ArrayList<ChivServer>();
+		for ( int i = 0; i < servers; i++ ) {
+			int current = i * 7 % 33;
+			int ping = 20 + i * 13 % 300;
+			oldList.addRow(new Object[] {"Server " + i, "10.0.0.0:7777", "TO", "AOCTO-Stoneshill_p", current + " / 32",
+					ping, "Germany", "", 0, 60});
+			list.add(SyntheticServers.server(i, "Server " + i, ping, current, "Germany"));
+		}
+		newList.addServers(list);
+		TableRowSorter<TableModel> oldListSorter = new TableRowSorter<TableModel>(oldList);
+		oldListSorter.setComparator(4, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				return Integer.compare(Integer.parseInt(o1.split(" ")[0]), Integer.parseInt(o2.split(" ")[0]));
+			}
+		});
+		TableRowSorter<ServerTableModel> newListSorter = new TableRowSorter<ServerTableModel>(newList);
+
+		for ( int round = 0; round < 3; round++ ) {
+			boolean print = round == 2;
+			run(print, "scoreboard by score, strings", oldBoardSorter, 1, 2000);
+			run(print, "scoreboard by score, keys", newBoardSorter, 1, 2000);
+			run(print, "scoreboard by time, strings", oldBoardSorter, 2, 2000);
+			run(print, "scoreboard by time, keys", newBoardSorter, 2, 2000);
+			run(print, "server list by players, strings", oldListSorter, 4, 50);
+			run(print, "server list by players, keys", newListSorter, ServerTableModel.COL_PLAYERS, 50);
+			run(print, "server list by ping, keys", newListSorter, ServerTableModel.COL_PING, 50);
+		}
+	}
+
+	private static DefaultTableModel scoreboard(String[] headers, final Class<?> score, final Class<?> time) {
+		return new DefaultTableModel(headers, 0) {
+			@Override
+			public Class<?> getColumnClass(int column) {
+				return column == 1 ? score : column == 2 ? time : String.class;
+			}
+		};
+	}
+
+	private static void run(boolean print, String name, TableRowSorter<?> sorter, int column, int sorts) {
+		long bytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+		long start = System.nanoTime();
+		for ( int i = 0; i < sorts; i++ ) {
+			List<RowSorter.SortKey> keys = new ArrayList<RowSorter.SortKey>();
+			keys.add(new RowSorter.SortKey(column, i % 2 == 0 ? SortOrder.ASCENDING : SortOrder.DESCENDING));
+			sorter.setSortKeys(keys);
+		}
+		long nanos = System.nanoTime() - start;
+		bytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes;
+		if ( print ) {
+			System.out.println(String.format("%-34s %5d rows: %8.1f us, %9d B allocated per sort", name,
+					sorter.getModelRowCount(), nanos / 1e3 / sorts, bytes / sorts));
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the Steam Community XML pages and the GetPlayerSummaries Web API method.
+ * The user 76561197960265728 has the given number of friends with Steam IDs counting up from
+ * 76561197960265729. Every third friend is on a Chivalry server, every seventh is private.
+ * Each request waits for the given latency before it is answered and is counted.
+ */
+public class SteamApiStub {
+
+	public static final long USER_ID = 76561197960265728L;
+
+	private final HttpServer server;
+	private final int friends;
+	private final int latency;
+	private final AtomicInteger requests = new AtomicInteger();
+
+	public SteamApiStub(int friends, int latency) throws IOException {
+		this.friends = friends;
+		this.latency = latency;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests.incrementAndGet();
+				try {
+					Thread.sleep(SteamApiStub.this.latency);
+				} catch (InterruptedException e) {
+				}
+				String path = exchange.getRequestURI().getPath();
+				String query = exchange.getRequestURI().getQuery();
+				String body;
+				String type = "text/xml";
+				int status = 200;
+				if ( path.startsWith("/ISteamUser/GetPlayerSummaries/") ) {
+					if ( query == null || !query.contains("key=test") ) {
+						status = 403;
+						body = "<html><body>Forbidden</body></html>";
+						type = "text/html";
+					} else {
+						body = summaries(query.substring(query.indexOf("steamids=") + 9).split("&")[0]);
+						type = "application/json";
+					}
+				} else if ( path.equals("/profiles/" + USER_ID) ) {
+					body = "<profile><steamID64>" + USER_ID + "</steamID64><steamID><![CDATA[Stub User]]></steamID></profile>";
+				} else if ( path.equals("/profiles/" + USER_ID + "/friends") ) {
+					body = friendsList();
+				} else if ( path.startsWith("/profiles/") ) {
+					body = profile(Long.parseLong(path.substring(10)));
+				} else {
+					status = 404;
+					body = "";
+				}
+				byte[] bytes = body.getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", type);
+				exchange.sendResponseHeaders(status, bytes.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(bytes);
+				os.close();
+			}
+		});
+		server.setExecutor(Executors.newFixedThreadPool(64));
+		server.start();
+	}
+
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	public String getApiUrl() {
+		return getBaseUrl() + "/ISteamUser/GetPlayerSummaries/v0002/";
+	}
+
+	public int getRequests() {
+		return requests.get();
+	}
+
+	public void resetRequests() {
+		requests.set(0);
+	}
+
+	public void stop() {
+		server.stop(0);
+		System.exit(0);
+	}
+
+	private String friendsList() {
+		StringBuilder sb = new StringBuilder("<friendsList><steamID64>" + USER_ID + "</steamID64><friends>");
+		for ( int i = 1; i <= friends; i++ ) {
+			sb.append("<friend>").append(USER_ID + i).append("</friend>");
+		}
+		return sb.append("</friends></friendsList>").toString();
+	}
+
+	private String profile(long id) {
+		int n = (int) (id - USER_ID);
+		String state;
+		if ( n % 7 == 0 ) {
+			state = "";
+		} else if ( n % 3 == 0 ) {
+			state = "In-Game<br/>Chivalry: Medieval Warfare<span class=\"rich_presence\"></span> - " +
+					"<a class=\"friendBlockLinkOverlay\" href=\"steam://connect/" + serverIp(n) + "\">Join</a>";
+		} else {
+			state = "Online";
+		}
+		return "<profile><steamID64>" + id + "</steamID64><steamID><![CDATA[Friend " + n + "]]></steamID>" +
+				"<stateMessage><![CDATA[" + state + "]]></stateMessage></profile>";
+	}
+
+	private String summaries(String ids) {
+		StringBuilder sb = new StringBuilder("{\"response\":{\"players\":[");
+		boolean first = true;
+		for ( String s : ids.split(",") ) {
+			long id = Long.parseLong(s);
+			int n = (int) (id - USER_ID);
+			if ( n < 1 || n > friends ) {
+				continue;
+			}
+			if ( !first ) {
+				sb.append(',');
+			}
+			first = false;
+			sb.append("{\"steamid\":\"").append(id).append("\",\"personaname\":\"Friend ").append(n)
+				.append("\",\"personastate\":1,\"communityvisibilitystate\":").append(n % 7 == 0 ? 1 : 3);
+			if ( n % 7 != 0 && n % 3 == 0 ) {
+				sb.append(",\"gameid\":\"219640\",\"gameextrainfo\":\"Chivalry: Medieval Warfare\",\"gameserverip\":\"")
+					.append(serverIp(n)).append('"');
+			}
+			sb.append('}');
+		}
+		return sb.append("]}}").toString();
+	}
+
+	private static String serverIp(int n) {
+		return "10.0." + (n / 250) + "." + (n % 250 + 1) + ":7777";
+	}
+
+	public static void main(String[] args) throws IOException {
+		int friends = args.length > 0 ? Integer.parseInt(args[0]) : 250;
+		SteamApiStub stub = new SteamApiStub(friends, 0);
+		System.out.println("Profile: " + stub.getBaseUrl() + "/profiles/" + USER_ID);
+		System.out.println("Web API: " + stub.getApiUrl() + " (key: test)");
+	}
+
+}
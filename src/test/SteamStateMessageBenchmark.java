@@ -0,0 +1,65 @@
+package test;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.tranek.chivalryserverbrowser.SteamStateMessage;
+
+/**
+ * Parses the saved state messages in src/test/xml/state_messages.txt with the old parsing in
+ * {@link LegacyStateMessage} and with SteamStateMessage. Prints the time and the bytes allocated
+ * per message after a warm up.
+ */
+public class SteamStateMessageBenchmark {
+
+	private static final int WARMUP = 200000;
+	private static final int ITERATIONS = 1000000;
+
+	public static void main(String[] args) throws Exception {
+		File file = new File(args.length > 0 ? args[0] : "src/test/xml/state_messages.txt");
+		final List<String> corpus = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+		final String[] messages = corpus.toArray(new String[corpus.size()]);
+
+		run("Legacy", messages, new Parse() {
+			@Override
+			public Object parse(String message) {
+				try {
+					return LegacyStateMessage.parse(message);
+				} catch (RuntimeException e) {
+					return null;
+				}
+			}
+		});
+		run("SteamStateMessage", messages, new Parse() {
+			@Override
+			public Object parse(String message) {
+				return SteamStateMessage.parse(message);
+			}
+		});
+	}
+
+	private static void run(String name, String[] messages, Parse parse) {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		int sink = 0;
+		for ( int i = 0; i < WARMUP; i++ ) {
+			sink += parse.parse(messages[i % messages.length]) == null ? 0 : 1;
+		}
+		long bytes = bean.getThreadAllocatedBytes(tid);
+		long start = System.nanoTime();
+		for ( int i = 0; i < ITERATIONS; i++ ) {
+			sink += parse.parse(messages[i % messages.length]) == null ? 0 : 1;
+		}
+		long elapsed = System.nanoTime() - start;
+		bytes = bean.getThreadAllocatedBytes(tid) - bytes;
+		System.out.println(String.format("%-18s %6d ns/op %6d B/op (%d)", name, elapsed / ITERATIONS,
+				bytes / ITERATIONS, sink));
+	}
+
+	private interface Parse {
+		Object parse(String message);
+	}
+
+}
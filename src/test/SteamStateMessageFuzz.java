@@ -0,0 +1,157 @@
+package test;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import com.tranek.chivalryserverbrowser.SteamStateMessage;
+
+/**
+ * Checks SteamStateMessage against the saved state messages in src/test/xml/state_messages.txt
+ * and the old parsing in {@link LegacyStateMessage}, then fuzzes it with mutated copies of
+ * them. Every input has to parse without an exception to a consistent result, and every saved
+ * message has to parse the way the old parsing did, except for the changes in
+ * {@link #intendedChange(String, SteamStateMessage, String[])}.
+ */
+public class SteamStateMessageFuzz {
+
+	private static final String[] TOKENS = {"<", ">", "/", ":", ".", "'", "\"", " ", "0", "9", "255", "256",
+		"99999", "65536", "<br/>", "<span", "<span class", "In-Game<br/>", "steam://connect/", "href=",
+		"window.location=", "Chivalry: Medieval Warfare", "Offline"};
+
+	public static void main(String[] args) throws Exception {
+		File file = new File(args.length > 0 ? args[0] : "src/test/xml/state_messages.txt");
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+		List<String> corpus = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+
+		int failures = 0;
+		int intended = 0;
+		for ( String message : corpus ) {
+			SteamStateMessage m = SteamStateMessage.parse(message);
+			String[] legacy = LegacyStateMessage.parse(message);
+			boolean endpointComparable = legacy[1] == null || legacy[1].matches("[0-9.]+:[0-9]+");
+			if ( !m.getStatus().equals(legacy[0]) ||
+					(endpointComparable && !equal(m.isInChivalry() ? m.getEndpoint() : null, legacy[1])) ) {
+				if ( intendedChange(message, m, legacy) ) {
+					intended++;
+				} else {
+					System.out.println("Differs from legacy: " + message);
+					System.out.println("  new:    " + m.getStatus() + " | " + m.getEndpoint());
+					System.out.println("  legacy: " + legacy[0] + " | " + legacy[1]);
+					failures++;
+				}
+			}
+			failures += check(message) ? 0 : 1;
+		}
+
+		Random random = new Random(seed);
+		int legacyThrew = 0;
+		for ( int i = 0; i < iterations; i++ ) {
+			String message = mutate(corpus.get(random.nextInt(corpus.size())), random);
+			if ( !check(message) ) {
+				failures++;
+			}
+			try {
+				LegacyStateMessage.parse(message);
+			} catch (RuntimeException e) {
+				legacyThrew++;
+			}
+		}
+		System.out.println(intended + " of " + corpus.size() + " saved messages differ from the old parsing as intended.");
+		System.out.println("Seed " + seed + ": " + iterations + " inputs, " + failures + " failures. " +
+				"The old parsing threw on " + legacyThrew + ".");
+		if ( failures > 0 ) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The allowed differences from the old parsing: a game other than Chivalry without rich
+	 * presence used to show the raw "In-Game" message and now shows "Playing <game>" like any
+	 * other game.
+	 */
+	private static boolean intendedChange(String message, SteamStateMessage m, String[] legacy) {
+		return m.getState() == SteamStateMessage.IN_GAME && !m.isInChivalry() && legacy[1] == null
+				&& !message.contains("<span") && m.getStatus().equals("Playing " + m.getGame())
+				&& legacy[0].equals(message.replace("<br/>", " "));
+	}
+
+	private static String mutate(String message, Random random) {
+		StringBuilder sb = new StringBuilder(message);
+		int mutations = 1 + random.nextInt(4);
+		for ( int i = 0; i < mutations; i++ ) {
+			int at = sb.length() == 0 ? 0 : random.nextInt(sb.length() + 1);
+			switch ( random.nextInt(5) ) {
+			case 0:
+				sb.setLength(at);
+				break;
+			case 1:
+				sb.delete(at, Math.min(sb.length(), at + 1 + random.nextInt(8)));
+				break;
+			case 2:
+				sb.insert(at, (char) random.nextInt(128));
+				break;
+			case 3:
+				sb.insert(at, TOKENS[random.nextInt(TOKENS.length)]);
+				break;
+			default:
+				int from = sb.length() == 0 ? 0 : random.nextInt(sb.length());
+				sb.insert(at, sb.substring(from, Math.min(sb.length(), from + random.nextInt(16))));
+				break;
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean check(String message) {
+		SteamStateMessage m;
+		try {
+			m = SteamStateMessage.parse(message);
+		} catch (RuntimeException e) {
+			System.out.println("Threw " + e + " on: " + message);
+			return false;
+		}
+		String problem = null;
+		boolean inGame = message.startsWith("In-Game<br/>");
+		if ( m.getStatus() == null ) {
+			problem = "no status";
+		} else if ( inGame != (m.getState() == SteamStateMessage.IN_GAME) ) {
+			problem = "wrong state " + m.getState();
+		} else if ( inGame != (m.getGame() != null) ) {
+			problem = "game without being in game";
+		} else if ( message.isEmpty() != (m.getState() == SteamStateMessage.PRIVATE) ) {
+			problem = "wrong private state";
+		} else if ( (m.getIp() == null) != (m.getPort() == null) ) {
+			problem = "half an endpoint";
+		} else if ( m.getIp() != null && !validEndpoint(m.getIp(), m.getPort()) ) {
+			problem = "invalid endpoint " + m.getEndpoint();
+		} else if ( m.getIp() != null && !message.contains("steam://connect/" + m.getEndpoint()) ) {
+			problem = "endpoint not in message " + m.getEndpoint();
+		}
+		if ( problem != null ) {
+			System.out.println(problem + ": " + message);
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean validEndpoint(String ip, String port) {
+		String[] octets = ip.split("\\.", -1);
+		if ( octets.length != 4 ) {
+			return false;
+		}
+		for ( String octet : octets ) {
+			if ( !octet.matches("[0-9]{1,3}") || Integer.parseInt(octet) > 255 ) {
+				return false;
+			}
+		}
+		return port.matches("[0-9]{1,5}") && Integer.parseInt(port) <= 65535;
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+}
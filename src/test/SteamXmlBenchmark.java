@@ -0,0 +1,88 @@
+package test;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.tranek.chivalryserverbrowser.SteamXmlReader;
+
+/**
+ * Parses the saved profile and friends list XML in src/test/xml the way XMLData2 did, with a new
+ * DocumentBuilder and a full DOM per page, and with {@link SteamXmlReader}. Prints the time and
+ * the bytes allocated per parse after a warm up.
+ */
+public class SteamXmlBenchmark {
+
+	private static final int WARMUP = 20000;
+	private static final int ITERATIONS = 50000;
+
+	public static void main(String[] args) throws Exception {
+		File dir = new File(args.length > 0 ? args[0] : "src/test/xml");
+		final byte[] profile = Files.readAllBytes(new File(dir, "profile.xml").toPath());
+		final byte[] friends = Files.readAllBytes(new File(dir, "friends.xml").toPath());
+
+		run("DOM profile", new Parse() {
+			@Override
+			public Object parse() throws Exception {
+				Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+						.parse(new ByteArrayInputStream(profile)).getDocumentElement();
+				return ((Element) root.getElementsByTagName("steamID").item(0)).getTextContent() +
+						((Element) root.getElementsByTagName("stateMessage").item(0)).getTextContent();
+			}
+		});
+		run("StAX profile", new Parse() {
+			@Override
+			public Object parse() throws Exception {
+				return SteamXmlReader.readProfile("", new ByteArrayInputStream(profile));
+			}
+		});
+		run("DOM friends", new Parse() {
+			@Override
+			public Object parse() throws Exception {
+				Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+						.parse(new ByteArrayInputStream(friends)).getDocumentElement();
+				NodeList list = root.getElementsByTagName("friend");
+				long sum = 0;
+				for ( int i = 0; i < list.getLength(); i++ ) {
+					sum += Long.parseLong(list.item(i).getTextContent());
+				}
+				return sum;
+			}
+		});
+		run("StAX friends", new Parse() {
+			@Override
+			public Object parse() throws Exception {
+				InputStream in = new ByteArrayInputStream(friends);
+				return SteamXmlReader.readFriendIds(in);
+			}
+		});
+	}
+
+	private static void run(String name, Parse parse) throws Exception {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		for ( int i = 0; i < WARMUP; i++ ) {
+			parse.parse();
+		}
+		long bytes = bean.getThreadAllocatedBytes(tid);
+		long start = System.nanoTime();
+		for ( int i = 0; i < ITERATIONS; i++ ) {
+			parse.parse();
+		}
+		long elapsed = System.nanoTime() - start;
+		bytes = bean.getThreadAllocatedBytes(tid) - bytes;
+		System.out.println(String.format("%-14s %8.1f us/op %10d ops/s %10d B/op", name,
+				elapsed / 1000.0 / ITERATIONS, ITERATIONS * 1000000000L / elapsed, bytes / ITERATIONS));
+	}
+
+	private interface Parse {
+		Object parse() throws Exception;
+	}
+
+}
@@ -0,0 +1,72 @@
+package test;
+import java.util.Vector;
+
+import com.tranek.chivalryserverbrowser.ChivServer;
+
+/**
+ * The synthetic servers the benchmarks and checks in this package run on. Server n is at
+ * 10.a.b.c, the address spelled out by the low 24 bits of n, and uses one of eight queryports
+ * and gameports, so every n up to 16 million is a server of its own.
+ */
+public class SyntheticServers {
+
+	/** The map of the servers that are not given one. */
+	public static final String MAP = "AOCTO-Stoneshill_p";
+
+	/**
+	 * Gets the IP address of server n.
+	 */
+	public static String ip(int n) {
+		return "10." + (n >> 16 & 255) + "." + (n >> 8 & 255) + "." + (n & 255);
+	}
+
+	/**
+	 * Gets the queryport of server n.
+	 */
+	public static String queryport(int n) {
+		return String.valueOf(27015 + n % 8);
+	}
+
+	/**
+	 * Gets the gameport of server n.
+	 */
+	public static String gameport(int n) {
+		return String.valueOf(7777 + n % 8);
+	}
+
+	/**
+	 * Gets server n: "Server n", a Team Objective server with 16 of 32 players and a ping of 50.
+	 */
+	public static ChivServer server(int n) {
+		return server(n, "Server " + n, 50, 16, "");
+	}
+
+	/**
+	 * Gets server n with a name, ping, number of players and location of its own.
+	 */
+	public static ChivServer server(int n, String name, int ping, int players, String location) {
+		return server(n, name, MAP, "TO", ping, players, false, 0, 60, location, 0);
+	}
+
+	/**
+	 * Gets server n with every field that the filters look at given.
+	 */
+	public static ChivServer server(int n, String name, String map, String type, int ping, int players,
+			boolean password, int minRank, int maxRank, String location, int perspective) {
+		return new ChivServer(name, ip(n), queryport(n), gameport(n), map, type, String.valueOf(ping), "32",
+				String.valueOf(players), password ? "1" : "0", String.valueOf(minRank), String.valueOf(maxRank),
+				location, String.valueOf(perspective), "51.0", "9.0");
+	}
+
+	/**
+	 * Gets servers from to to - 1, made by {@link #server(int)}.
+	 */
+	public static Vector<ChivServer> servers(int from, int to) {
+		Vector<ChivServer> servers = new Vector<ChivServer>();
+		for ( int n = from; n < to; n++ ) {
+			servers.add(server(n));
+		}
+		return servers;
+	}
+
+}